@@ -0,0 +1,68 @@
+package com.hlpr98.webscraper.benchmarks;
+
+import com.hlpr98.webscraper.model.entities.EntityWithTitle;
+import com.hlpr98.webscraper.model.net.Response;
+import com.hlpr98.webscraper.parser.EntityJsonPageParser;
+import com.hlpr98.webscraper.parser.ProductHTMLPageParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the bodies the way the workers hand them over, i.e. as a stream of bytes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Payloads.Size size;
+
+    private EntityJsonPageParser entityParser;
+    private ProductHTMLPageParser productParser;
+    private URL entityURL;
+    private URL productURL;
+    private byte[] entityBody;
+    private byte[] productBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.entityParser = new EntityJsonPageParser();
+        this.productParser = new ProductHTMLPageParser();
+        this.entityURL = new URL(Payloads.ENTITY_URL);
+        this.productURL = new URL(Payloads.PRODUCT_URL);
+        this.entityBody = Payloads.entityJson(this.size);
+        this.productBody = Payloads.productHtml(this.size);
+
+        // fail fast, rather than measuring the parsing of a page which doesn't yield the entity
+        if (entityJson() == null || productHtml() == null) {
+            throw new IllegalStateException("The payloads are not parsed into entities");
+        }
+    }
+
+    @Benchmark
+    public EntityWithTitle entityJson() throws IOException {
+        return this.entityParser.parse(response(this.entityURL, this.entityBody));
+    }
+
+    @Benchmark
+    public EntityWithTitle productHtml() throws IOException {
+        return this.productParser.parse(response(this.productURL, this.productBody));
+    }
+
+    private static Response response(URL url, byte[] body) {
+        return Response.builder()
+                .url(url)
+                .body(new ByteArrayInputStream(body))
+                .charset(StandardCharsets.UTF_8)
+                .build();
+    }
+}
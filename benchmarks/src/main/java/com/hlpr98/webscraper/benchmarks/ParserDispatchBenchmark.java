@@ -0,0 +1,114 @@
+package com.hlpr98.webscraper.benchmarks;
+
+import com.hlpr98.webscraper.model.net.Response;
+import com.hlpr98.webscraper.model.net.ResponseType;
+import com.hlpr98.webscraper.parser.ResponseParser;
+import com.hlpr98.webscraper.parser.ResponseParserFactory;
+import com.hlpr98.webscraper.parser.ResponseParserIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Routing of the urls to their parsers, with the parsers of the application ({@link ResponseParserFactory}) and with
+ * many parsers registered ({@link ResponseParserIndex}). The urls are cycled through, so that the first, the last and
+ * none of the registered parsers are hit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserDispatchBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ManyParsers {
+
+        @Param({"10", "100", "1000"})
+        public int parserCount;
+
+        private ResponseParserIndex index;
+        private String[] urls;
+        private int next;
+
+        @Setup
+        public void setUp() {
+            List<ResponseParser<?>> parsers = new ArrayList<>();
+            for (int i = 0; i < this.parserCount; i++) {
+                parsers.add(new PathParser(i));
+            }
+            this.index = new ResponseParserIndex(parsers);
+            this.urls = new String[]{
+                    "https://www.example.com/a/b/type0-slug-12345.json",
+                    "https://www.example.com/a/b/type" + (this.parserCount - 1) + "-slug-12345.json",
+                    "https://www.example.com/a/b/unknown-slug-12345.json?page=" // a new miss every time
+            };
+        }
+
+        private String nextURL() {
+            int i = this.next++ % this.urls.length;
+            return i == 2 ? this.urls[i] + this.next : this.urls[i];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ApplicationParsers {
+        private int next;
+
+        private String nextURL() {
+            return this.next++ % 2 == 0 ? Payloads.ENTITY_URL : Payloads.PRODUCT_URL;
+        }
+    }
+
+    @Benchmark
+    public Object manyParsers(ManyParsers state) throws MalformedURLException {
+        try {
+            return state.index.getParser(state.nextURL());
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object applicationParsers(ApplicationParsers state) throws MalformedURLException {
+        return ResponseParserFactory.getParser(state.nextURL());
+    }
+    /**
+     * A parser of the paths like <code>/type{id}-{slug}.json</code>
+     */
+    private static class PathParser extends ResponseParser<String> {
+        private final Pattern pattern;
+        private final Set<String> literals;
+
+        PathParser(int id) {
+            super(String.class);
+            this.pattern = Pattern.compile(".*/type" + id + "-(?<slug>[^/]+)\\.json$", Pattern.CASE_INSENSITIVE);
+            this.literals = Set.of("/type" + id + "-", ".json");
+        }
+
+        @Override
+        public String parse(Response response) {
+            return response.getResponse();
+        }
+
+        @Override
+        public Pattern pathPattern() {
+            return this.pattern;
+        }
+
+        @Override
+        public Set<String> pathLiterals() {
+            return this.literals;
+        }
+
+        @Override
+        public ResponseType responseType() {
+            return ResponseType.JSON;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.hlpr98.webscraper.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Synthetic response bodies of the pages handled by the parsers. Besides the fields the parsers extract, the bodies
+ * are padded with unrelated content, as the real pages are.
+ */
+public final class Payloads {
+
+    public static final String ENTITY_URL = "https://www.example.com/sub-path-1/entity-slug-0614a3a0-5716-4690-8bde-9a60177b5946.json";
+    public static final String PRODUCT_URL = "https://www.example.com/sub-path-1/product-slug12312.html";
+
+    /**
+     * The approximate sizes of the bodies
+     */
+    public enum Size {
+        SMALL(512),
+        MEDIUM(16 * 1024),
+        LARGE(1024 * 1024);
+
+        private final int bytes;
+
+        Size(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private Payloads() {
+    }
+
+    /**
+     * @return a json entity, with the title first and then an array of unrelated items
+     */
+    public static byte[] entityJson(Size size) {
+        StringBuilder json = new StringBuilder(size.bytes + 128)
+                .append("{\"title\":\"My Entity Title\",\"items\":[");
+        for (int i = 0; json.length() < size.bytes; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                    .append(",\"name\":\"item-").append(i)
+                    .append("\",\"price\":").append(i * 0.25)
+                    .append(",\"tags\":[\"a\",\"b\"]}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a html product page, with the title at the top and then unrelated sections
+     */
+    public static byte[] productHtml(Size size) {
+        StringBuilder html = new StringBuilder(size.bytes + 128)
+                .append("<!DOCTYPE html><html><head><meta charset=\"UTF-8\"><title>Product</title></head><body>")
+                .append("<h1 class=\"product-title\" data-id=\"0614a3a0-5716-4690-8bde-9a60177b5946\">My Product Title</h1>");
+        for (int i = 0; html.length() < size.bytes; i++) {
+            html.append("<div class=\"section\" id=\"s").append(i).append("\"><h2>Section ").append(i)
+                    .append("</h2><p>Some <b>description</b> of the section, with a <a href=\"/link-").append(i)
+                    .append("\">link</a>.</p><ul><li>one</li><li>two</li></ul></div>");
+        }
+        return html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package com.hlpr98.webscraper.benchmarks;
+
+import com.hlpr98.webscraper.util.RetryingHTTPClient;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Round trips through {@link RetryingHTTPClient#execute} against an in-process HTTP stub, i.e. the overhead of the
+ * client and the JDK HTTP stack without the network. The <code>flaky</code> endpoint fails every other request with a
+ * 503, so that every call goes through one retry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class RetryingHTTPClientBenchmark {
+
+    @Param({"SMALL", "MEDIUM"})
+    public Payloads.Size size;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private RetryingHTTPClient<InputStream> client;
+    private HttpRequest okRequest;
+    private HttpRequest flakyRequest;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] body = Payloads.entityJson(this.size);
+        AtomicLong flakyCalls = new AtomicLong();
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/ok", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.createContext("/flaky", exchange -> {
+            if (flakyCalls.getAndIncrement() % 2 == 0) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.serverExecutor = Executors.newFixedThreadPool(4);
+        this.server.setExecutor(this.serverExecutor);
+        this.server.start();
+
+        this.client = RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofInputStream())
+                .withHttpClient(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build())
+                .withMaxAttempts(3)
+                .withRetryDelay(Duration.ZERO)
+                .build();
+
+        String base = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + this.server.getAddress().getPort();
+        this.okRequest = HttpRequest.newBuilder(URI.create(base + "/ok")).GET().build();
+        this.flakyRequest = HttpRequest.newBuilder(URI.create(base + "/flaky")).GET().build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public long ok() throws IOException {
+        return consume(this.client.execute(this.okRequest).join());
+    }
+
+    @Benchmark
+    public long flaky() throws IOException {
+        return consume(this.client.execute(this.flakyRequest).join());
+    }
+
+    private static long consume(HttpResponse<InputStream> response) throws IOException {
+        try (InputStream body = response.body()) {
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
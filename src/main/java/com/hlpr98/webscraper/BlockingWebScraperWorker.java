@@ -0,0 +1,196 @@
+package com.hlpr98.webscraper;
+
+import com.hlpr98.webscraper.cache.ValidatorCache;
+import com.hlpr98.webscraper.metrics.DomainMetrics;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.parser.IResponseParser;
+import com.hlpr98.webscraper.util.AdaptiveConcurrencyLimit;
+import com.hlpr98.webscraper.util.RetryingHTTPClient;
+import com.hlpr98.webscraper.util.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A worker which scrapes each url as plain blocking code, fetch, retry and parse, on a thread of its own. It is meant
+ * to run on virtual threads (see {@link WebScraperWorkerFactory.Engine#VIRTUAL_THREADS}), where a blocked thread costs
+ * next to nothing.
+ * <p>
+ * The concurrency limit of the domain, fixed or adapted by an {@link AdaptiveConcurrencyLimit}, is awaited before the
+ * fetch of each url and held until its response is parsed, and the rate limit is honoured by sleeping until the next
+ * permit. With {@link #fetch(String, IResponseParser)} the permit is
+ * held until the caller parses the response, on a thread of its own. The results are the same as the ones of
+ * {@link WebScraperWorker}, i.e. the failures are wrapped in a {@link CompletionException}.
+ */
+@Slf4j
+public class BlockingWebScraperWorker implements IWebScraperWorker {
+
+    private final RetryingHTTPClient<InputStream> client;
+    private final int maxConcurrentRequests;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final ReentrantLock lock;
+    private final Condition belowLimit;
+    private int inFlightRequests;
+    private int waitingURLs;
+    private final TokenBucket rateLimiter;
+    private final DomainMetrics metrics;
+    private final ValidatorCache cache;
+    private final Executor parseExecutor;
+    private final Executor executor;
+
+    /**
+     * @param client                the HTTP client
+     * @param maxConcurrentRequests the maximum number of requests in flight at a time
+     * @param concurrencyLimit      the limit of requests in flight adapted to the domain, which should listen to the
+     *                              client, or <b>NULL</b> if limited by <code>maxConcurrentRequests</code> only
+     * @param rateLimiter           the rate limiter for sending requests, or <b>NULL</b> if not rate limited
+     * @param metrics               the metrics of the domain of the worker, or <b>NULL</b> if not recorded
+     * @param cache                 the cache of the validators of the urls, or <b>NULL</b> if not cached
+     * @param parseExecutor         the executor the responses of {@link #submit(String, IResponseParser)} are parsed
+     *                              on, or <b>NULL</b> if parsed on the thread of the url
+     * @param executor              the executor starting a thread per url, ex: a virtual thread per task executor
+     */
+    public BlockingWebScraperWorker(RetryingHTTPClient<InputStream> client, int maxConcurrentRequests,
+                                    AdaptiveConcurrencyLimit concurrencyLimit, TokenBucket rateLimiter,
+                                    DomainMetrics metrics, ValidatorCache cache, Executor parseExecutor,
+                                    Executor executor) {
+        this.client = client;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.concurrencyLimit = concurrencyLimit;
+        // a lock rather than a monitor, so that the waiting virtual threads don't pin their carriers
+        this.lock = new ReentrantLock(true);
+        this.belowLimit = this.lock.newCondition();
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+        this.cache = cache;
+        this.parseExecutor = parseExecutor;
+        this.executor = executor;
+        if (metrics != null) {
+            metrics.registerWorkerGauges(this::getInFlightRequests, this::getWaitingURLs);
+            if (concurrencyLimit != null) {
+                metrics.registerConcurrencyLimitGauge(concurrencyLimit::getLimit);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<WebScrapingResult> submit(String url, IResponseParser<?> parser) {
+        return this.parseExecutor != null
+                ? fetch(url, parser).thenApplyAsync(FetchedResponse::parse, this.parseExecutor)
+                : CompletableFuture.supplyAsync(() -> fetchBlocking(url, parser).parse(), this.executor);
+    }
+
+    @Override
+    public CompletableFuture<FetchedResponse> fetch(String url, IResponseParser<?> parser) {
+        return CompletableFuture.supplyAsync(() -> fetchBlocking(url, parser), this.executor);
+    }
+
+    /**
+     * Fetches the url once the concurrency limit and the rate limit allow it. The slot in the concurrency limit is
+     * released once the response is parsed.
+     */
+    private FetchedResponse fetchBlocking(String url, IResponseParser<?> parser) {
+        try {
+            acquire();
+            try {
+                awaitRateLimit();
+            } catch (InterruptedException ex) {
+                release();
+                throw ex;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new FetchedResponse(url, parser, null, new CompletionException(ex), this.metrics, this.cache,
+                    result -> {
+                    });
+        }
+
+        long startNanos = System.nanoTime();
+        Consumer<WebScrapingResult> onParsed = result -> {
+            release();
+            if (this.metrics != null) {
+                this.metrics.onScraped(System.nanoTime() - startNanos, result);
+            }
+        };
+        try {
+            HttpResponse<InputStream> response = this.client.send(WebScraperWorker.createRequest(url, this.cache));
+            return new FetchedResponse(url, parser, response, null, this.metrics, this.cache, onParsed);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new FetchedResponse(url, parser, null, new CompletionException(ex), this.metrics, this.cache,
+                    onParsed);
+        } catch (Exception ex) {
+            return new FetchedResponse(url, parser, null, new CompletionException(ex), this.metrics, this.cache,
+                    onParsed);
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            this.waitingURLs++;
+            try {
+                while (this.inFlightRequests >= getConcurrencyLimit()) {
+                    this.belowLimit.await();
+                }
+            } finally {
+                this.waitingURLs--;
+            }
+            this.inFlightRequests++;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void release() {
+        this.lock.lock();
+        try {
+            this.inFlightRequests--;
+            // the adaptive limit could have grown by more than the slot released
+            this.belowLimit.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private int getConcurrencyLimit() {
+        return this.concurrencyLimit != null
+                ? Math.min(this.maxConcurrentRequests, this.concurrencyLimit.getLimit())
+                : this.maxConcurrentRequests;
+    }
+
+    private long getInFlightRequests() {
+        this.lock.lock();
+        try {
+            return this.inFlightRequests;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private long getWaitingURLs() {
+        this.lock.lock();
+        try {
+            return this.waitingURLs;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void awaitRateLimit() throws InterruptedException {
+        if (this.rateLimiter == null) {
+            return;
+        }
+        for (long waitNanos = this.rateLimiter.tryAcquire(); waitNanos > 0; waitNanos = this.rateLimiter.tryAcquire()) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.hlpr98.webscraper;
+
+import com.hlpr98.webscraper.cache.ValidatorCache;
+import com.hlpr98.webscraper.metrics.DomainMetrics;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.parser.IResponseParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The response of an url fetched by a worker, whose body is not parsed yet. The body is received whole, bounded in
+ * size, before the response is handed over, hence parsing it never blocks on the connection whichever thread it runs
+ * on. The decoding of a compressed body is left to the parse.
+ * <p>
+ * The url counts against the concurrency limit of its worker until it is parsed, so every response fetched should be
+ * parsed exactly once, or discarded if its result is not wanted anymore.
+ */
+public class FetchedResponse {
+
+    private final String url;
+    private final IResponseParser<?> parser;
+    private final HttpResponse<InputStream> response;
+    private final Throwable exception;
+    private final DomainMetrics metrics;
+    private final ValidatorCache cache;
+    private final Consumer<WebScrapingResult> onParsed;
+    private final AtomicBoolean parsed = new AtomicBoolean();
+
+    /**
+     * @param url       the url
+     * @param parser    the parser of the response of the url
+     * @param response  the response, or <b>NULL</b> if the url could not be fetched
+     * @param exception the exception the url could not be fetched with, or <b>NULL</b> if fetched
+     * @param metrics   the metrics of the domain, or <b>NULL</b> if not recorded
+     * @param cache     the cache of the validators, or <b>NULL</b> if not cached
+     * @param onParsed  called with the result once the response is parsed, ex: to admit the next url of the worker
+     */
+    FetchedResponse(String url, IResponseParser<?> parser, HttpResponse<InputStream> response, Throwable exception,
+                    DomainMetrics metrics, ValidatorCache cache, Consumer<WebScrapingResult> onParsed) {
+        this.url = url;
+        this.parser = parser;
+        this.response = response;
+        this.exception = exception;
+        this.metrics = metrics;
+        this.cache = cache;
+        this.onParsed = onParsed;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Reads and parses the body of the response on the calling thread. The failures, of fetching or of parsing, are
+     * wrapped in a {@link CompletionException} in the result.
+     *
+     * @return the result, never <b>NULL</b>
+     * @throws IllegalStateException if the response is already parsed
+     */
+    public WebScrapingResult parse() {
+        if (!this.parsed.compareAndSet(false, true)) {
+            throw new IllegalStateException("Response of " + this.url + " is already parsed");
+        }
+
+        WebScrapingResult result;
+        if (this.exception != null) {
+            result = WebScrapingResult.builder().exception(this.exception).build();
+        } else {
+            try {
+                result = WebScraperWorker.parseResponse(this.url, this.response, this.parser, this.metrics, this.cache);
+            } catch (RuntimeException ex) {
+                result = WebScrapingResult.builder().exception(new CompletionException(ex)).build();
+            }
+        }
+        this.onParsed.accept(result);
+        return result;
+    }
+
+    /**
+     * Gives up the response without parsing it, ex: when the scraping it was fetched for failed, so that the url no
+     * longer counts against the concurrency limit of its worker. The url is recorded as failed with a
+     * {@link CancellationException}. A response already parsed or discarded is left as is.
+     */
+    public void discard() {
+        if (!this.parsed.compareAndSet(false, true)) {
+            return;
+        }
+        if (this.response != null) {
+            try {
+                this.response.body().close();
+            } catch (IOException ex) {
+                // the body is in memory, there is nothing to release
+            }
+        }
+        this.onParsed.accept(WebScrapingResult.builder()
+                .exception(new CancellationException("Response of " + this.url + " is discarded"))
+                .build());
+    }
+}
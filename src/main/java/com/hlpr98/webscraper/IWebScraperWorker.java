@@ -0,0 +1,40 @@
+package com.hlpr98.webscraper;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.parser.IResponseParser;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * A worker scrapes the urls of a domain, within the concurrency and rate limits of the domain.
+ */
+public interface IWebScraperWorker extends BiConsumer<String, IResponseParser> {
+
+    @Override
+    default void accept(String url, IResponseParser parser) {
+        submit(url, parser);
+    }
+
+    /**
+     * Scrapes the url asynchronously. The worker doesn't hold on to the url or its result once it is scraped.
+     *
+     * @param url    the url
+     * @param parser the parser of the response of the url
+     * @return a completable future of the result, which never completes exceptionally
+     */
+    default CompletableFuture<WebScrapingResult> submit(String url, IResponseParser<?> parser) {
+        return fetch(url, parser).thenApply(FetchedResponse::parse);
+    }
+
+    /**
+     * Fetches the url asynchronously, without parsing the body of the response. The url holds its slot in the
+     * concurrency limit of the worker until the response is parsed, so a caller which parses slowly throttles the
+     * fetching of the domain.
+     *
+     * @param url    the url
+     * @param parser the parser of the response of the url
+     * @return a completable future of the response to be parsed, which never completes exceptionally
+     */
+    CompletableFuture<FetchedResponse> fetch(String url, IResponseParser<?> parser);
+}
@@ -1,34 +1,51 @@
 package com.hlpr98.webscraper;
 
-import com.hlpr98.webscraper.model.domain.WebScrapingResult;
-import com.hlpr98.webscraper.parser.ResponseParser;
-import com.hlpr98.webscraper.parser.ResponseParserFactory;
+import com.hlpr98.webscraper.cache.ValidatorCache;
+import com.hlpr98.webscraper.cluster.ClusterCoordinator;
+import com.hlpr98.webscraper.cluster.ClusterNode;
+import com.hlpr98.webscraper.input.RecrawlScheduler;
+import com.hlpr98.webscraper.input.URLDeduplicator;
+import com.hlpr98.webscraper.input.URLSource;
+import com.hlpr98.webscraper.metrics.JmxMetrics;
+import com.hlpr98.webscraper.metrics.MetricsRegistry;
+import com.hlpr98.webscraper.metrics.PrometheusExporter;
+import com.hlpr98.webscraper.parser.ParseExecutor;
+import com.hlpr98.webscraper.pipeline.ScrapePipeline;
+import com.hlpr98.webscraper.service.ScrapeService;
+import com.hlpr98.webscraper.sink.ConsoleResultSink;
+import com.hlpr98.webscraper.sink.JournalingResultSink;
+import com.hlpr98.webscraper.sink.NdjsonFileResultSink;
+import com.hlpr98.webscraper.sink.ResultSink;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.cli.*;
 
+import javax.management.JMException;
+import java.io.Closeable;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.http.HttpClient;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static java.util.Objects.requireNonNull;
+import java.util.Locale;
 
 /**
- * The entry point of this application.
- * <p>
- * TODO: Convert this into a service or a command line tool
+ * The entry point of this application. It scrapes the urls given on the command line, or serves the jobs submitted over
+ * HTTP with <code>--serve</code> (see {@link ScrapeService}).
  */
 @Slf4j
 public class WebScraper {
 
+    private static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+    private static final int DEFAULT_MAX_JOBS = 4;
+    private static final long DEFAULT_MAX_QUEUED_URLS = 1_000_000;
+    private static final Duration METRICS_FILE_INTERVAL = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_RECRAWL_INTERVAL = Duration.ofDays(1);
+    private static final Duration DEFAULT_RECRAWL_MIN_INTERVAL = Duration.ofHours(1);
+    private static final Duration DEFAULT_RECRAWL_MAX_INTERVAL = Duration.ofDays(30);
     private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
 
     public static void main(String[] args) throws MalformedURLException {
@@ -38,85 +55,212 @@ public class WebScraper {
 
         Options options = new Options();
         options.addOption("u", "urls", true, "List of urls to parse");
-        options.addOption("f", "filepath", true, "File containing a list of urls to parse");
+        options.addOption("f", "filepath", true, "File containing a list of urls to parse (plain or gzip, '-' for stdin)");
+        options.addOption("m", "max-in-flight", true, "Maximum number of urls being fetched or waiting to be parsed at a time (default: " + DEFAULT_MAX_IN_FLIGHT + ")");
+        options.addOption("o", "output", true, "File to write the results to as NDJSON (default: standard output)");
+        options.addOption("e", "engine", true, "The engine the urls are scraped on: completable-future (default) or virtual-threads (needs the java21 build)");
+        options.addOption(null, "parse-threads", true, "Number of threads the responses are parsed on (default: number of processors)");
+        options.addOption(null, "dedup", true, "How the duplicate urls are dropped, after canonicalization: auto (default, exact up to " + URLDeduplicator.DEFAULT_EXACT_LIMIT + " urls then a Bloom filter), exact, bloom or none (not with --recrawl)");
+        options.addOption(null, "journal", true, "File to journal the urls done in, so that the run could be resumed");
+        options.addOption(null, "resume", false, "Resume the run of the journal: skip the urls which succeeded, scrape again the ones which failed and append to the output");
+        options.addOption(null, "cache", true, "File to cache the ETag/Last-Modified of the urls in, along with their entities, for conditional requests on the next runs");
+        options.addOption(null, "coordinator", true, "Port to listen at for the nodes, to spread the urls over them by domain instead of scraping them in this process");
+        options.addOption(null, "bind", true, "Address the coordinator listens at for the nodes, the service for the clients, and the metrics server (default: the loopback address, i.e. the peers of this host only)");
+        options.addOption(null, "join", true, "host:port of the coordinator to join as a node and scrape the urls sent by it");
+        options.addOption(null, "node-id", true, "The unique id of the node, the domains assigned to a node depend on it (default: pid@hostname)");
+        options.addOption(null, "metrics-file", true, "File to write the metrics to in the Prometheus text format, every " + METRICS_FILE_INTERVAL.toSeconds() + "s");
+        options.addOption(null, "metrics-port", true, "Port to serve the metrics at /metrics in the Prometheus text format");
+        options.addOption(null, "recrawl", false, "Keep scraping the urls again, each at an interval adapted to how often its content changes, until stopped");
+        options.addOption(null, "recrawl-interval", true, "Interval in seconds the urls are scraped again at first (default: " + DEFAULT_RECRAWL_INTERVAL.toSeconds() + ")");
+        options.addOption(null, "recrawl-min-interval", true, "Minimum interval in seconds of the urls whose content keeps changing (default: " + DEFAULT_RECRAWL_MIN_INTERVAL.toSeconds() + ")");
+        options.addOption(null, "recrawl-max-interval", true, "Maximum interval in seconds of the urls whose content doesn't change (default: " + DEFAULT_RECRAWL_MAX_INTERVAL.toSeconds() + ")");
+        options.addOption(null, "recrawl-rate", true, "Maximum number of urls scraped per second when recrawling (default: unlimited)");
+        options.addOption(null, "serve", true, "Port to serve the scraping jobs submitted over HTTP at /jobs, instead of scraping the given urls");
+        options.addOption(null, "max-jobs", true, "Maximum number of jobs scraped at a time when serving, the other ones wait (default: " + DEFAULT_MAX_JOBS + ")");
+        options.addOption(null, "max-queued-urls", true, "Maximum number of urls queued or being scraped over all the jobs when serving, past which jobs are refused (default: " + DEFAULT_MAX_QUEUED_URLS + ")");
 
         CommandLineParser parser = new DefaultParser();
         try {
             CommandLine cmd = parser.parse(options, args);
             String urls = cmd.getOptionValue("urls", "");
             String filepath = cmd.getOptionValue("filepath", "");
+            String output = cmd.getOptionValue("output", "");
+            WebScraperWorkerFactory.Engine engine = WebScraperWorkerFactory.Engine.valueOf(
+                    cmd.getOptionValue("engine", "completable-future").toUpperCase(Locale.ROOT).replace('-', '_'));
+            int parseThreads = Integer.parseInt(cmd.getOptionValue("parse-threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            String dedup = cmd.getOptionValue("dedup", "auto");
+            String journalFile = cmd.getOptionValue("journal", "");
+            boolean resume = cmd.hasOption("resume");
+            String cacheFile = cmd.getOptionValue("cache", "");
+            int coordinatorPort = Integer.parseInt(cmd.getOptionValue("coordinator", "-1"));
+            String bind = cmd.getOptionValue("bind", "");
+            String join = cmd.getOptionValue("join", "");
+            String nodeId = cmd.getOptionValue("node-id", ManagementFactory.getRuntimeMXBean().getName());
+            String metricsFile = cmd.getOptionValue("metrics-file", "");
+            int metricsPort = Integer.parseInt(cmd.getOptionValue("metrics-port", "-1"));
+            int maxInFlight = Integer.parseInt(cmd.getOptionValue("max-in-flight", String.valueOf(DEFAULT_MAX_IN_FLIGHT)));
+            boolean recrawl = cmd.hasOption("recrawl");
+            Duration recrawlInterval = Duration.ofSeconds(Long.parseLong(cmd.getOptionValue("recrawl-interval",
+                    String.valueOf(DEFAULT_RECRAWL_INTERVAL.toSeconds()))));
+            Duration recrawlMinInterval = Duration.ofSeconds(Long.parseLong(cmd.getOptionValue("recrawl-min-interval",
+                    String.valueOf(DEFAULT_RECRAWL_MIN_INTERVAL.toSeconds()))));
+            Duration recrawlMaxInterval = Duration.ofSeconds(Long.parseLong(cmd.getOptionValue("recrawl-max-interval",
+                    String.valueOf(DEFAULT_RECRAWL_MAX_INTERVAL.toSeconds()))));
+            double recrawlRate = Double.parseDouble(cmd.getOptionValue("recrawl-rate", "0"));
+            int servePort = Integer.parseInt(cmd.getOptionValue("serve", "-1"));
+            int maxJobs = Integer.parseInt(cmd.getOptionValue("max-jobs", String.valueOf(DEFAULT_MAX_JOBS)));
+            long maxQueuedURLs = Long.parseLong(cmd.getOptionValue("max-queued-urls",
+                    String.valueOf(DEFAULT_MAX_QUEUED_URLS)));
 
-            if (urls.isEmpty() && filepath.isEmpty()) {
+            if (urls.isEmpty() && filepath.isEmpty() && join.isEmpty() && servePort < 0) {
                 throw new IllegalArgumentException("Require filename or an url");
             }
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("Maximum number of urls in flight should be positive");
+            }
+            if (resume && journalFile.isEmpty()) {
+                throw new IllegalArgumentException("Require a journal to resume from");
+            }
+            if (recrawl && !journalFile.isEmpty()) {
+                throw new IllegalArgumentException("A recrawl never ends, it could not be journaled");
+            }
+            if (recrawl && coordinatorPort >= 0) {
+                // the coordinator batches the urls per node, which would hold the due urls back
+                throw new IllegalArgumentException("A recrawl runs in a single process");
+            }
+            if (recrawl && dedup.equalsIgnoreCase("none")) {
+                // the schedule holds each url once, a duplicate would be lost from it once scraped
+                throw new IllegalArgumentException("A recrawl needs its urls deduplicated");
+            }
+            if (servePort >= 0 && (maxJobs <= 0 || maxQueuedURLs <= 0)) {
+                throw new IllegalArgumentException("Maximum numbers of jobs and queued urls should be positive");
+            }
 
-            List<String> urlList = null;
-            if (!urls.isEmpty()) {
-                urlList = List.of(urls.split(","));
-            } else {
-                String path = requireNonNull(WebScraper.class.getResource(filepath)).getPath();
-                String urlsInFile = Files.readString(Path.of(path), StandardCharsets.UTF_8);
-
-                urlList = List.of(urlsInFile.split("\n"));
+            MetricsRegistry metricsRegistry = new MetricsRegistry();
+            try {
+                JmxMetrics.register(metricsRegistry);
+            } catch (JMException e) {
+                log.warn("Exception while registering metrics with JMX", e);
             }
 
-            Map<String, WebScrapingResult> urlVsScrapedObject = scrapeURLs(urlList);
-            persist(urlVsScrapedObject);
+            try (Closeable metricsFileExporter = !metricsFile.isEmpty()
+                    ? PrometheusExporter.toFile(metricsRegistry, Path.of(metricsFile), METRICS_FILE_INTERVAL)
+                    : null;
+                 Closeable metricsServer = metricsPort >= 0
+                         ? PrometheusExporter.serve(metricsRegistry, listenAddress(bind, metricsPort))
+                         : null;
+                 ValidatorCache validatorCache = !cacheFile.isEmpty() ? ValidatorCache.open(Path.of(cacheFile)) : null;
+                 ParseExecutor parseExecutor = new ParseExecutor(parseThreads, metricsRegistry)) {
+                WebScraperWorkerFactory workerFactory = WebScraperWorkerFactory.builder(HTTP_CLIENT)
+                        .withMetricsRegistry(metricsRegistry)
+                        .withEngine(engine)
+                        .withValidatorCache(validatorCache)
+                        .withParseExecutor(parseExecutor)
+                        .build();
+                if (!join.isEmpty()) {
+                    new ClusterNode(addressOf(join), nodeId, workerFactory).run();
+                    return;
+                }
+                if (servePort >= 0) {
+                    ScrapeService service = new ScrapeService(listenAddress(bind, servePort), workerFactory,
+                            maxJobs, maxQueuedURLs, maxInFlight);
+                    Runtime.getRuntime().addShutdownHook(new Thread(service::close, "scrape-service-shutdown"));
+                    service.awaitClose();
+                    return;
+                }
+
+                try (ResultSink sink = journaled(!output.isEmpty()
+                        ? new NdjsonFileResultSink(Path.of(output), resume)
+                        : new ConsoleResultSink(), journalFile, resume);
+                     URLSource source = skipDone(deduplicated(!urls.isEmpty()
+                             ? URLSource.fromList(List.of(urls.split(",")))
+                             : URLSource.fromPath(filepath), dedup), sink)) {
+                    if (coordinatorPort >= 0) {
+                        try (ClusterCoordinator coordinator =
+                                     new ClusterCoordinator(listenAddress(bind, coordinatorPort))) {
+                            coordinator.scrape(source, maxInFlight, sink);
+                        }
+                    } else if (recrawl) {
+                        RecrawlScheduler scheduler = new RecrawlScheduler(recrawlInterval, recrawlMinInterval,
+                                recrawlMaxInterval, recrawlRate, metricsRegistry);
+                        scheduler.addAll(source);
+                        log.info("Recrawling {} urls", scheduler.size());
+                        scrapeURLs(scheduler.source(), maxInFlight, scheduler.reschedulingSink(sink), workerFactory);
+                    } else {
+                        scrapeURLs(source, maxInFlight, sink, workerFactory);
+                    }
+                    log.info("Skipped {} duplicate urls and {} urls done before", source.getDuplicates(), source.getSkipped());
+                }
+            }
         } catch (ParseException e) {
             log.error("Exception while parsing arguments", e);
             System.exit(1);
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scraping", e);
         }
     }
 
-    private static Map<String, WebScrapingResult> scrapeURLs(List<String> urls) throws MalformedURLException {
-        if (urls == null || urls.isEmpty()) {
-            return null;
-        }
-        WebScraperWorkerFactory workerFactory = new WebScraperWorkerFactory(HTTP_CLIENT);
+    /**
+     * The address to listen at, the loopback one unless another one is given, as the peers are not authenticated
+     */
+    private static InetSocketAddress listenAddress(String bind, int port) {
+        return !bind.isEmpty()
+                ? new InetSocketAddress(bind, port)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
 
-        for (String url : urls) {
-            WebScraperWorker worker = workerFactory.getWorker(url);
-            ResponseParser parser = ResponseParserFactory.getParser(url);
-            worker.accept(url, parser);
+    private static InetSocketAddress addressOf(String hostAndPort) {
+        int separator = hostAndPort.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Require host:port of the coordinator, got: " + hostAndPort);
         }
+        return new InetSocketAddress(hostAndPort.substring(0, separator),
+                Integer.parseInt(hostAndPort.substring(separator + 1)));
+    }
+
+    private static ResultSink journaled(ResultSink sink, String journalFile, boolean resume) throws IOException {
+        return !journalFile.isEmpty() ? new JournalingResultSink(Path.of(journalFile), sink, resume) : sink;
+    }
+
+    private static URLSource skipDone(URLSource source, ResultSink sink) {
+        return sink instanceof JournalingResultSink ? source.skipping(((JournalingResultSink) sink)::isSucceeded) : source;
+    }
 
-        List<CompletableFuture<Map<String, WebScrapingResult>>> futures = new ArrayList<>();
-        workerFactory.getAllWorkers().forEach(w -> futures.add(w.scrape()));
-
-        Map<String, WebScrapingResult> result = new ConcurrentHashMap<>();
-        CompletableFuture
-                .allOf(futures.toArray(new CompletableFuture[0]))
-                .thenApply(v -> {
-                    futures.forEach(f -> {
-                        Map<String, WebScrapingResult> urlVsObject = f.join();
-                        result.putAll(urlVsObject);
-                    });
-                    return null;
-                })
-                .join(); // blocking call
-
-        return result;
+    private static URLSource deduplicated(URLSource source, String dedup) {
+        switch (dedup.toLowerCase(Locale.ROOT)) {
+            case "none":
+                return source;
+            case "exact":
+                return source.deduplicated(URLDeduplicator.exact());
+            case "bloom":
+                return source.deduplicated(URLDeduplicator.bloom(URLDeduplicator.DEFAULT_EXACT_LIMIT,
+                        URLDeduplicator.DEFAULT_FALSE_POSITIVE_RATE));
+            case "auto":
+                return source.deduplicated(URLDeduplicator.adaptive());
+            default:
+                throw new IllegalArgumentException("Unknown dedup mode: " + dedup);
+        }
     }
 
     /**
-     * Handle persistence mechanisms
+     * Scrapes the urls of the source and hands over the result of each url to the sink as soon as it is scraped.
+     * <p>
+     * The urls are fetched, parsed and handed over to the sink by the stages of a {@link ScrapePipeline}, which take
+     * items from each other only when they have room for them, hence the memory consumed doesn't grow with the size of
+     * the source nor with the stages falling behind each other.
      *
-     * @param urlVsScrapedResult
+     * @param source        the source of urls
+     * @param maxInFlight   the maximum number of urls being fetched or waiting to be parsed
+     * @param sink          the sink of the results
+     * @param workerFactory the factory of the workers of the domains
      */
-    private static void persist(Map<String, WebScrapingResult> urlVsScrapedResult) {
-        System.out.println("Scraped data");
-
-        for (Map.Entry<String, WebScrapingResult> resultSet : urlVsScrapedResult.entrySet()) {
-            String url = resultSet.getKey();
-            WebScrapingResult result = resultSet.getValue();
-
-            if (result.getException() == null) {
-                System.out.println("URL: " + url + " Entity: " + result.getParsedEntity());
-            } else {
-                System.out.println("URL: " + url + " Error: " + result.getException());
-            }
-        }
+    private static void scrapeURLs(URLSource source, int maxInFlight, ResultSink sink,
+                                   WebScraperWorkerFactory workerFactory)
+            throws MalformedURLException, InterruptedException {
+        new ScrapePipeline(workerFactory, maxInFlight).run(source, sink);
     }
 }
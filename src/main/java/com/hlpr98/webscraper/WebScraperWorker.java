@@ -1,85 +1,363 @@
 package com.hlpr98.webscraper;
 
+import com.hlpr98.webscraper.cache.ValidatorCache;
+import com.hlpr98.webscraper.metrics.DomainMetrics;
 import com.hlpr98.webscraper.model.domain.WebScrapingResult;
 import com.hlpr98.webscraper.model.net.Response;
 import com.hlpr98.webscraper.parser.IResponseParser;
+import com.hlpr98.webscraper.util.AdaptiveConcurrencyLimit;
 import com.hlpr98.webscraper.util.RetryingHTTPClient;
+import com.hlpr98.webscraper.util.TokenBucket;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.http.HttpRequest;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.http.HttpResponse;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.BiConsumer;
-import java.util.function.Function;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Each worker handle a set of urls. It makes request to each url and parses the response with the provided parser.
+ * <p>
+ * The accepted urls are kept in an admission queue and a request is sent only when both the concurrency limit and the
+ * rate limit of the worker allow it. The concurrency limit is either fixed, or adapted to the latency and the failures
+ * of the domain by an {@link AdaptiveConcurrencyLimit}. The queue is drained without blocking: on completion of a request, or by a delayed
+ * task when the rate limit is hit. An url holds its slot in the concurrency limit until its response is parsed, see
+ * {@link #fetch(String, IResponseParser)}.
+ * <p>
+ * If a {@link ValidatorCache} is provided, the requests of the cached urls are conditional, and the entity cached is
+ * returned when the page is not modified.
  */
 @Slf4j
-public class WebScraperWorker implements BiConsumer<String, IResponseParser> {
+public class WebScraperWorker implements IWebScraperWorker {
 
-    private final RetryingHTTPClient<String> client;
-    private final Map<String, IResponseParser<?>> urlVsParser;
-    private final Map<String, CompletableFuture<WebScrapingResult>> urlVsParsingTask;
+    private static final int HTTP_NOT_MODIFIED = 304;
 
-    public WebScraperWorker(RetryingHTTPClient<String> client) {
-        this.client = client;
-        this.urlVsParser = new HashMap<>();
-        this.urlVsParsingTask = new HashMap<>();
+    private final RetryingHTTPClient<InputStream> client;
+    private final int maxConcurrentRequests;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final TokenBucket rateLimiter;
+    private final DomainMetrics metrics;
+    private final ValidatorCache cache;
+    private final Executor parseExecutor;
+    private final Deque<PendingTask> admissionQueue;
+    private int inFlightRequests;
+    private boolean drainScheduled;
+
+    private WebScraperWorker(Builder builder) {
+        this.client = builder.client;
+        this.maxConcurrentRequests = builder.maxConcurrentRequests;
+        this.concurrencyLimit = builder.concurrencyLimit;
+        this.rateLimiter = builder.rateLimiter;
+        this.metrics = builder.metrics;
+        this.cache = builder.cache;
+        this.parseExecutor = builder.parseExecutor;
+        this.admissionQueue = new ArrayDeque<>();
+        if (this.metrics != null) {
+            this.metrics.registerWorkerGauges(this::getInFlightRequests, this::getQueuedURLs);
+            if (this.concurrencyLimit != null) {
+                this.metrics.registerConcurrencyLimitGauge(this.concurrencyLimit::getLimit);
+            }
+        }
+    }
+
+    /**
+     * @param client the HTTP client
+     * @return a builder of a worker sending its requests with the client, without limit unless set
+     */
+    public static Builder builder(RetryingHTTPClient<InputStream> client) {
+        return new Builder(client);
     }
 
     @Override
-    public void accept(String url, IResponseParser parser) {
-        this.urlVsParser.put(url, parser);
-        this.urlVsParsingTask.put(url, createTask(url, parser));
+    public CompletableFuture<WebScrapingResult> submit(String url, IResponseParser<?> parser) {
+        return this.parseExecutor != null
+                ? fetch(url, parser).thenApplyAsync(FetchedResponse::parse, this.parseExecutor)
+                : fetch(url, parser).thenApply(FetchedResponse::parse);
+    }
+
+    @Override
+    public CompletableFuture<FetchedResponse> fetch(String url, IResponseParser<?> parser) {
+        CompletableFuture<FetchedResponse> task = new CompletableFuture<>();
+        synchronized (this.admissionQueue) {
+            this.admissionQueue.add(new PendingTask(url, parser, task));
+        }
+        drain();
+        return task;
     }
 
     /**
-     * Scrapes the urls under its purview asynchronously
-     * @return a completable future of Map&lt;url, result&gt;
+     * Admits as many queued urls as the concurrency and rate limits allow. If the rate limit is hit, a drain is
+     * scheduled for when the next permit would be available.
      */
-    public CompletableFuture<Map<String, WebScrapingResult>> scrape() {
-        return CompletableFuture.allOf(this.urlVsParsingTask.values().toArray(new CompletableFuture[0]))
-                .thenApply(v -> {
-                    Map<String, WebScrapingResult> urlVsParsedObject = new HashMap<>();
-                    this.urlVsParsingTask.forEach((url, task) -> {
-                        urlVsParsedObject.put(url, task.join());
-                    });
-                    return urlVsParsedObject;
-                });
+    private void drain() {
+        List<PendingTask> admitted = new ArrayList<>();
+        synchronized (this.admissionQueue) {
+            while (!this.admissionQueue.isEmpty() && this.inFlightRequests < getConcurrencyLimit()) {
+                if (this.rateLimiter != null) {
+                    long waitNanos = this.rateLimiter.tryAcquire();
+                    if (waitNanos > 0) {
+                        scheduleDrain(waitNanos);
+                        break;
+                    }
+                }
+                this.inFlightRequests++;
+                admitted.add(this.admissionQueue.poll());
+            }
+        }
+
+        admitted.forEach(this::start);
+    }
+
+    private void scheduleDrain(long delayNanos) {
+        if (this.drainScheduled) {
+            return;
+        }
+        this.drainScheduled = true;
+        CompletableFuture.runAsync(() -> {
+            synchronized (this.admissionQueue) {
+                this.drainScheduled = false;
+            }
+            drain();
+        }, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS));
+    }
+
+    private void start(PendingTask pendingTask) {
+        long startNanos = System.nanoTime();
+        Consumer<WebScrapingResult> onParsed = result -> {
+            synchronized (this.admissionQueue) {
+                this.inFlightRequests--;
+            }
+            drain();
+            if (this.metrics != null) {
+                this.metrics.onScraped(System.nanoTime() - startNanos, result);
+            }
+        };
+        HttpRequest request;
+        try {
+            request = createRequest(pendingTask.url, this.cache);
+        } catch (IllegalArgumentException ex) {
+            // ex: an url which URL accepts but URI doesn't, the url gives its slot back right away
+            synchronized (this.admissionQueue) {
+                this.inFlightRequests--;
+            }
+            pendingTask.task.complete(new FetchedResponse(pendingTask.url, pendingTask.parser, null,
+                    new CompletionException(ex), this.metrics, this.cache, result -> {
+                    }));
+            drain();
+            return;
+        }
+        this.client.execute(request)
+                .thenApply(res -> new FetchedResponse(pendingTask.url, pendingTask.parser, res, null,
+                        this.metrics, this.cache, onParsed))
+                .exceptionally(ex -> new FetchedResponse(pendingTask.url, pendingTask.parser, null, ex,
+                        this.metrics, this.cache, onParsed))
+                .thenAccept(pendingTask.task::complete);
+    }
+
+    private int getConcurrencyLimit() {
+        return this.concurrencyLimit != null
+                ? Math.min(this.maxConcurrentRequests, this.concurrencyLimit.getLimit())
+                : this.maxConcurrentRequests;
+    }
+
+    private long getInFlightRequests() {
+        synchronized (this.admissionQueue) {
+            return this.inFlightRequests;
+        }
+    }
+
+    private long getQueuedURLs() {
+        synchronized (this.admissionQueue) {
+            return this.admissionQueue.size();
+        }
     }
 
+    /**
+     * Creates the request of the url, conditional on the validators cached if any
+     *
+     * @param cache the cache of the validators, or <b>NULL</b> if not cached
+     */
     // TODO: handle other HTTP methods
-    private CompletableFuture<WebScrapingResult> createTask(String url, IResponseParser<?> parser) {
-        HttpRequest req = HttpRequest.newBuilder()
+    static HttpRequest createRequest(String url, ValidatorCache cache) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .uri(URI.create(url))
-                .GET()
-                .build();
-
-        return this.client.execute(req)
-                .thenApply((res) -> {
-                    try {
-                        Response response = Response.fromHTTPResponse(res);
-                        WebScrapingResult result = WebScrapingResult.builder()
-                                .parsedEntity(parser.parse(response))
-                                .build();
-
-                        return CompletableFuture.completedFuture(result);
-                    } catch (MalformedURLException ex) {
-                        throw new RuntimeException("Exception while reading response body of " + url, ex);
-                    } catch (IOException ex) {
-                        log.error("Exception while parsing response of {}", url, ex);
-                        throw new RuntimeException("Exception while parsing response of " + url, ex);
-                    }
-                })
-                .exceptionally(ex -> {
-                    WebScrapingResult result = WebScrapingResult.builder().exception(ex).build();
-                    return CompletableFuture.completedFuture(result);
-                })
-                .thenCompose(Function.identity());
+                .GET();
+
+        ValidatorCache.Entry cached = cache != null ? cache.get(url) : null;
+        if (cached != null) {
+            if (cached.getETag() != null) {
+                builder.header("If-None-Match", cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                builder.header("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses the streamed body of the response, and closes it. If the page is not modified since it was cached, the
+     * entity cached is returned instead, without reading the body. Else the validators of the response, if any, are
+     * cached along with the entity parsed.
+     *
+     * @param metrics the metrics of the domain, or <b>NULL</b> if not recorded
+     * @param cache   the cache of the validators, or <b>NULL</b> if not cached
+     * @throws RuntimeException if the body could not be read or parsed
+     */
+    static WebScrapingResult parseResponse(String url, HttpResponse<InputStream> res, IResponseParser<?> parser,
+                                           DomainMetrics metrics, ValidatorCache cache) {
+        try (InputStream body = res.body()) {
+            ValidatorCache.Entry cached = cache != null ? cache.get(url) : null;
+            if (res.statusCode() == HTTP_NOT_MODIFIED && cached != null) {
+                return WebScrapingResult.builder()
+                        .parsedEntity(readCached(cache, cached))
+                        .build();
+            }
+
+            Response response = Response.fromHTTPStreamResponse(res);
+            Object parsed = parse(parser, response, metrics);
+            if (cache != null && parsed != null) {
+                putCached(cache, url, res, parsed);
+            }
+            return WebScrapingResult.builder()
+                    .parsedEntity(parsed)
+                    .build();
+        } catch (MalformedURLException ex) {
+            throw new RuntimeException("Exception while reading response body of " + url, ex);
+        } catch (IOException ex) {
+            log.error("Exception while parsing response of {}", url, ex);
+            throw new RuntimeException("Exception while parsing response of " + url, ex);
+        }
+    }
+
+    /**
+     * Reads the entity cached. If it could not be read, the url is dropped from the cache so that it is fetched afresh
+     * the next time.
+     */
+    private static Object readCached(ValidatorCache cache, ValidatorCache.Entry cached) {
+        try {
+            return cache.getEntity(cached);
+        } catch (IOException ex) {
+            try {
+                cache.remove(cached.getUrl());
+            } catch (IOException removeEx) {
+                ex.addSuppressed(removeEx);
+            }
+            throw new RuntimeException("Exception while reading cached entity of " + cached.getUrl(), ex);
+        }
+    }
+
+    private static void putCached(ValidatorCache cache, String url, HttpResponse<InputStream> res, Object parsed) {
+        String eTag = res.headers().firstValue("ETag").orElse(null);
+        String lastModified = res.headers().firstValue("Last-Modified").orElse(null);
+        if (eTag == null && lastModified == null) {
+            return;
+        }
+
+        try {
+            cache.put(url, eTag, lastModified, parsed);
+        } catch (IOException ex) {
+            log.warn("Exception while caching the validators of {}", url, ex);
+        }
+    }
+
+    private static Object parse(IResponseParser<?> parser, Response response, DomainMetrics metrics) throws IOException {
+        if (metrics == null) {
+            return parser.parse(response);
+        }
+
+        long startNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object parsed = parser.parse(response);
+            failed = false;
+            return parsed;
+        } finally {
+            metrics.onParsed(parser.getClass(), System.nanoTime() - startNanos, failed);
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PendingTask {
+        private final String url;
+        private final IResponseParser<?> parser;
+        private final CompletableFuture<FetchedResponse> task;
+    }
+
+    public static final class Builder {
+        private final RetryingHTTPClient<InputStream> client;
+        private int maxConcurrentRequests = Integer.MAX_VALUE;
+        private AdaptiveConcurrencyLimit concurrencyLimit;
+        private TokenBucket rateLimiter;
+        private DomainMetrics metrics;
+        private ValidatorCache cache;
+        private Executor parseExecutor;
+
+        private Builder(RetryingHTTPClient<InputStream> client) {
+            this.client = client;
+        }
+
+        /**
+         * The maximum number of requests in flight at a time
+         */
+        public Builder withMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Adapts the limit of requests in flight to the domain, up to the maximum. The limit should listen to the
+         * client. If <b>NULL</b>, the requests are limited by the maximum only.
+         */
+        public Builder withConcurrencyLimit(AdaptiveConcurrencyLimit concurrencyLimit) {
+            this.concurrencyLimit = concurrencyLimit;
+            return this;
+        }
+
+        /**
+         * The rate limiter for sending requests, or <b>NULL</b> if not rate limited
+         */
+        public Builder withRateLimiter(TokenBucket rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * The metrics of the domain of the worker, or <b>NULL</b> if not recorded
+         */
+        public Builder withMetrics(DomainMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * The cache of the validators of the urls, or <b>NULL</b> if not cached
+         */
+        public Builder withCache(ValidatorCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * The executor the responses of {@link #submit(String, IResponseParser)} are parsed on, or <b>NULL</b> if
+         * parsed on the thread completing the request
+         */
+        public Builder withParseExecutor(Executor parseExecutor) {
+            this.parseExecutor = parseExecutor;
+            return this;
+        }
+
+        public WebScraperWorker build() {
+            return new WebScraperWorker(this);
+        }
     }
 }
@@ -1,13 +1,26 @@
 package com.hlpr98.webscraper;
 
+import com.hlpr98.webscraper.cache.ValidatorCache;
+import com.hlpr98.webscraper.metrics.CountingBodyHandler;
+import com.hlpr98.webscraper.metrics.DomainMetrics;
+import com.hlpr98.webscraper.metrics.MetricsRegistry;
+import com.hlpr98.webscraper.parser.ParseExecutor;
+import com.hlpr98.webscraper.util.AdaptiveConcurrencyLimit;
+import com.hlpr98.webscraper.util.BackoffStrategy;
+import com.hlpr98.webscraper.util.BufferingBodyHandler;
+import com.hlpr98.webscraper.util.CircuitBreaker;
+import com.hlpr98.webscraper.util.DeadlineExceededException;
+import com.hlpr98.webscraper.util.HedgingPolicy;
+import com.hlpr98.webscraper.util.RetryBudget;
 import com.hlpr98.webscraper.util.RetryingHTTPClient;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
+import com.hlpr98.webscraper.util.ThreadPerTaskExecutorProvider;
+import com.hlpr98.webscraper.util.TokenBucket;
+import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
@@ -15,6 +28,10 @@ import java.time.Duration;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Handles creation and provision of scrapping working for a given url.
@@ -27,68 +44,593 @@ import java.util.Map;
  *     <li>Etc.</li>
  * </ul>
  * <p>
- * TODO: Add support for domain level parallelism
+ * The parallelism and the rate of requests of each domain are bounded as per its {@link HTTPClientConfiguration}.
+ * The domains whose configuration doesn't set any setting of the HTTP client, ex: its {@link HttpClient.Version}, share
+ * the HTTP client of the factory. The other ones share an HTTP client per distinct settings, hence an HTTP/2 origin
+ * multiplexes the requests of its worker over the connections of that client.
+ * If a {@link MetricsRegistry} is provided, the requests, retries, bytes received and parsing of each domain are
+ * recorded in it (see {@link DomainMetrics}).
+ * <p>
+ * The workers run on one of the {@link Engine}s, all the workers of a factory on the same one. If a
+ * {@link ValidatorCache} is provided, all the workers share it for their conditional requests, and if a
+ * {@link ParseExecutor} is provided, all the workers parse the responses on it.
  */
 @Slf4j
 public class WebScraperWorkerFactory {
 
-    private static final HTTPClientConfiguration defaultHTTPClientConfiguration = new HTTPClientConfiguration("", 5, Duration.ofSeconds(10));
-    private final Map<String, WebScraperWorker> domainVsWorker;
+    private static final HTTPClientConfiguration defaultHTTPClientConfiguration = HTTPClientConfiguration.builder()
+            .domain("")
+            .maxAttempts(5)
+            .retryDelay(Duration.ofSeconds(1))
+            .maxRetryDelay(Duration.ofSeconds(30))
+            .retryBudgetRatio(0.2)
+            .maxConcurrentRequests(64)
+            .adaptiveConcurrency(true)
+            .circuitBreakerFailureRate(0.5)
+            .circuitBreakerSlowCallRate(0.8)
+            .slowCallDuration(Duration.ofSeconds(10))
+            .requestTimeout(Duration.ofSeconds(30))
+            .deadline(Duration.ofMinutes(2))
+            .build();
+
+    /**
+     * The number of retries a worker could make before its retry budget is topped up by its requests
+     */
+    private static final int RETRY_BUDGET_RESERVE = 100;
+
+    /**
+     * The concurrency limit an adaptive one starts with, before growing towards the maximum of the domain
+     */
+    private static final int INITIAL_ADAPTIVE_CONCURRENCY = 8;
+
+    /**
+     * The number of last attempts the failure and slow call rates of a circuit breaker are measured over
+     */
+    private static final int CIRCUIT_BREAKER_WINDOW = 20;
+
+    /**
+     * The number of probe attempts sent by a half-open circuit breaker
+     */
+    private static final int CIRCUIT_BREAKER_PROBES = 3;
+
+    /**
+     * The time a circuit breaker stays open, if not configured
+     */
+    private static final Duration DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = Duration.ofSeconds(30);
+
+    /**
+     * The maximum share of hedges over the requests, if not configured
+     */
+    private static final double DEFAULT_HEDGE_BUDGET_RATIO = 0.05;
+
+    /**
+     * The maximum number of attempts of each url, if not configured
+     */
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /**
+     * The maximum size of a response body as received, if not configured. The bodies are received whole, even the
+     * ones of the parsers which stop early, hence a few MiB, ample for a page.
+     */
+    private static final int DEFAULT_MAX_BODY_BYTES = 4 << 20;
+
+    /**
+     * The maximum size of a response body once decoded, if not configured
+     */
+    private static final long DEFAULT_MAX_DECODED_BYTES = 128L << 20;
+
+    private final Map<String, IWebScraperWorker> domainVsWorker;
     private final Map<String, HTTPClientConfiguration> domainSpecificHTTPClientConfigs;
     private final HttpClient httpClient;
+    private final Map<HTTPClientSettings, HttpClient> settingsVsHttpClient;
+    private final MetricsRegistry metricsRegistry;
+    private final Engine engine;
+    private final ValidatorCache validatorCache;
+    private final ParseExecutor parseExecutor;
+    private final ExecutorService threadPerTaskExecutor;
 
+    /**
+     * Creates a factory whose workers run on {@link Engine#COMPLETABLE_FUTURE}, without metrics, cache nor parse
+     * executor. See {@link #builder(HttpClient)} for the other ones.
+     *
+     * @param httpClient            the HTTP client shared by the workers whose configuration doesn't set its settings
+     * @param domainSpecificConfigs the configurations of the domains which don't use the default one
+     */
     public WebScraperWorkerFactory(HttpClient httpClient, HTTPClientConfiguration... domainSpecificConfigs) {
-        this.httpClient = httpClient;
-        this.domainVsWorker = new HashMap<>();
-        this.domainSpecificHTTPClientConfigs = new HashMap<>();
-        if (domainSpecificConfigs != null) {
-            for (HTTPClientConfiguration configuration : domainSpecificConfigs) {
-                this.domainSpecificHTTPClientConfigs.put(configuration.getDomain(), configuration);
-            }
-        }
+        this(builder(httpClient).withDomainConfigurations(domainSpecificConfigs));
     }
 
-    public WebScraperWorker getWorker(String url) throws MalformedURLException {
-        String domain = new URL(url).getHost();
-        if (domainVsWorker.containsKey(domain)) {
-            return domainVsWorker.get(domain);
-        }
+    private WebScraperWorkerFactory(Builder builder) {
+        this.httpClient = builder.httpClient;
+        this.settingsVsHttpClient = new ConcurrentHashMap<>();
+        this.metricsRegistry = builder.metricsRegistry;
+        this.engine = builder.engine;
+        this.validatorCache = builder.validatorCache;
+        this.parseExecutor = builder.parseExecutor;
+        this.threadPerTaskExecutor = this.engine == Engine.VIRTUAL_THREADS
+                ? ThreadPerTaskExecutorProvider.load().newThreadPerTaskExecutor("scraper")
+                : null;
+        this.domainVsWorker = new ConcurrentHashMap<>();
+        this.domainSpecificHTTPClientConfigs = new HashMap<>(builder.domainSpecificConfigs);
+    }
+
+    /**
+     * @param httpClient the HTTP client shared by the workers whose configuration doesn't set its settings
+     * @return a builder of a factory whose workers run on {@link Engine#COMPLETABLE_FUTURE}, with the default
+     * configuration for every domain, unless set
+     */
+    public static Builder builder(HttpClient httpClient) {
+        return new Builder(httpClient);
+    }
 
-        HTTPClientConfiguration configuration = defaultHTTPClientConfiguration;
-        if (this.domainSpecificHTTPClientConfigs.containsKey(domain)) {
-            configuration = this.domainSpecificHTTPClientConfigs.get(domain);
+    /**
+     * The worker of the domain of the url, created on first use. It is safe to call from several threads, ex: by the
+     * pipelines of concurrent jobs, and a domain gets one worker whichever thread asks first.
+     */
+    public IWebScraperWorker getWorker(String url) throws MalformedURLException {
+        URL parsed = new URL(url);
+        try {
+            // the requests are built from URIs, which are stricter than URLs, ex: about spaces
+            parsed.toURI();
+        } catch (URISyntaxException ex) {
+            throw (MalformedURLException) new MalformedURLException(ex.getMessage()).initCause(ex);
         }
-        WebScraperWorker worker = createWorker(configuration);
-        this.domainVsWorker.put(domain, worker);
-        return worker;
+        String domain = parsed.getHost();
+        return this.domainVsWorker.computeIfAbsent(domain, key -> createWorker(key,
+                this.domainSpecificHTTPClientConfigs.getOrDefault(key, defaultHTTPClientConfiguration)));
     }
 
-    public Collection<WebScraperWorker> getAllWorkers() {
+    public Collection<IWebScraperWorker> getAllWorkers() {
         return this.domainVsWorker.values();
     }
 
-    private WebScraperWorker createWorker(HTTPClientConfiguration configuration) {
-        RetryingHTTPClient<String> client = RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofString())
+    /**
+     * @return the executor the responses are parsed on, or <b>NULL</b> if parsed on the threads completing the requests
+     */
+    public ParseExecutor getParseExecutor() {
+        return this.parseExecutor;
+    }
+
+    /**
+     * The HTTP client of the configuration: the one of the factory if the configuration doesn't set any of its settings,
+     * else the one shared by the configurations with the same settings. The settings not set are the ones of the
+     * client of the factory.
+     */
+    HttpClient getHttpClient(HTTPClientConfiguration configuration) {
+        HTTPClientSettings settings = new HTTPClientSettings(configuration.getVersion(),
+                configuration.getConnectTimeout(), configuration.getExecutor());
+        if (settings.equals(HTTPClientSettings.NONE)) {
+            return this.httpClient;
+        }
+        return this.settingsVsHttpClient.computeIfAbsent(settings, this::createHttpClient);
+    }
+
+    private HttpClient createHttpClient(HTTPClientSettings settings) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(settings.getVersion() != null ? settings.getVersion() : this.httpClient.version())
+                .followRedirects(this.httpClient.followRedirects());
+        Optional<Duration> connectTimeout = settings.getConnectTimeout() != null
+                ? Optional.of(settings.getConnectTimeout())
+                : this.httpClient.connectTimeout();
+        connectTimeout.ifPresent(builder::connectTimeout);
+        Optional<Executor> executor = settings.getExecutor() != null
+                ? Optional.of(settings.getExecutor())
+                : this.httpClient.executor();
+        executor.ifPresent(builder::executor);
+
+        log.info("Created HTTP client with {}", settings);
+        return builder.build();
+    }
+
+    private IWebScraperWorker createWorker(String domain, HTTPClientConfiguration configuration) {
+        Duration retryDelay = configuration.getRetryDelay() != null
+                ? configuration.getRetryDelay()
+                : RetryingHTTPClient.DEFAULT_RETRY_DELAY;
+        Duration maxRetryDelay = configuration.getMaxRetryDelay() != null
+                ? configuration.getMaxRetryDelay()
+                : retryDelay;
+        RetryBudget retryBudget = configuration.getRetryBudgetRatio() > 0
+                ? new RetryBudget(configuration.getRetryBudgetRatio(), RETRY_BUDGET_RESERVE)
+                : null;
+
+        DomainMetrics metrics = this.metricsRegistry != null ? new DomainMetrics(this.metricsRegistry, domain) : null;
+        HttpResponse.BodyHandler<InputStream> bodyHandler = new BufferingBodyHandler(
+                configuration.getMaxBodyBytes() > 0 ? configuration.getMaxBodyBytes() : DEFAULT_MAX_BODY_BYTES);
+        if (metrics != null) {
+            bodyHandler = new CountingBodyHandler<>(bodyHandler, metrics.receivedBytes());
+        }
+        long maxDecodedBytes = configuration.getMaxDecodedBytes() > 0
+                ? configuration.getMaxDecodedBytes()
+                : DEFAULT_MAX_DECODED_BYTES;
+
+        int maxConcurrentRequests = configuration.getMaxConcurrentRequests() > 0
+                ? configuration.getMaxConcurrentRequests()
+                : Integer.MAX_VALUE;
+        AdaptiveConcurrencyLimit concurrencyLimit = configuration.isAdaptiveConcurrency()
+                ? new AdaptiveConcurrencyLimit(INITIAL_ADAPTIVE_CONCURRENCY, 1, maxConcurrentRequests)
+                : null;
+
+        CircuitBreaker circuitBreaker = null;
+        if (configuration.getCircuitBreakerFailureRate() > 0) {
+            circuitBreaker = new CircuitBreaker(domain, configuration.getCircuitBreakerFailureRate(),
+                    configuration.getCircuitBreakerSlowCallRate(), configuration.getSlowCallDuration(),
+                    CIRCUIT_BREAKER_WINDOW,
+                    configuration.getCircuitBreakerOpenDuration() != null
+                            ? configuration.getCircuitBreakerOpenDuration()
+                            : DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION,
+                    CIRCUIT_BREAKER_PROBES);
+            if (metrics != null) {
+                metrics.registerCircuitBreakerGauge(circuitBreaker);
+            }
+        }
+
+        double hedgeBudgetRatio = configuration.getHedgeBudgetRatio() > 0
+                ? configuration.getHedgeBudgetRatio()
+                : DEFAULT_HEDGE_BUDGET_RATIO;
+        HedgingPolicy hedgingPolicy = null;
+        if (configuration.getHedgePercentile() > 0) {
+            hedgingPolicy = HedgingPolicy.percentile(configuration.getHedgePercentile(), configuration.getHedgeDelay(),
+                    hedgeBudgetRatio);
+        } else if (configuration.getHedgeDelay() != null) {
+            hedgingPolicy = HedgingPolicy.fixedDelay(configuration.getHedgeDelay(), hedgeBudgetRatio);
+        }
+
+        RetryingHTTPClient<InputStream> client = RetryingHTTPClient
+                .decompressingBuilder(bodyHandler, maxDecodedBytes,
+                        metrics != null ? metrics.decodedBytes()::add : null)
                 .withMaxAttempts(configuration.getMaxAttempts())
-                .withRetryDelay(configuration.getRetryDelay())
-                .withRetryOnResponse((resp) -> resp.statusCode() >= 500) // handle TOO MANY REQUESTS
+                .withBackoff(BackoffStrategy.decorrelatedJitter(retryDelay, maxRetryDelay))
+                .withRetryBudget(retryBudget)
+                .withMaxRetryAfter(maxRetryDelay)
+                .withRetryOnResponse((resp) -> resp.statusCode() >= 500 || resp.statusCode() == 429)
                 .withThrowWhenRetryOnResponseExceeded(true)
-                .withHttpClient(this.httpClient)
+                .withHttpClient(getHttpClient(configuration))
+                .withRequestTimeout(configuration.getRequestTimeout())
+                .withDeadline(configuration.getDeadline())
+                .withListener(metrics)
+                .withListener(concurrencyLimit)
+                .withCircuitBreaker(circuitBreaker)
+                .withHedging(hedgingPolicy)
+                .build();
+
+        TokenBucket rateLimiter = configuration.getRequestsPerSecond() > 0
+                ? new TokenBucket(configuration.getRequestsPerSecond(), configuration.getBurst())
+                : null;
+
+        if (this.engine == Engine.VIRTUAL_THREADS) {
+            return new BlockingWebScraperWorker(client, maxConcurrentRequests, concurrencyLimit, rateLimiter, metrics,
+                    this.validatorCache, this.parseExecutor, this.threadPerTaskExecutor);
+        }
+        return WebScraperWorker.builder(client)
+                .withMaxConcurrentRequests(maxConcurrentRequests)
+                .withConcurrencyLimit(concurrencyLimit)
+                .withRateLimiter(rateLimiter)
+                .withMetrics(metrics)
+                .withCache(this.validatorCache)
+                .withParseExecutor(this.parseExecutor)
                 .build();
+    }
+
+    /**
+     * The ways the workers run the scraping of the urls
+     */
+    public enum Engine {
+        /**
+         * The urls are scraped as chains of completable futures, without blocking any thread. See {@link WebScraperWorker}
+         */
+        COMPLETABLE_FUTURE,
+
+        /**
+         * Each url is scraped as blocking code on a virtual thread of its own. It needs the build of the
+         * <code>java21</code> profile. See {@link BlockingWebScraperWorker}
+         */
+        VIRTUAL_THREADS
+    }
+
+    public static final class Builder {
+        private final HttpClient httpClient;
+        private MetricsRegistry metricsRegistry;
+        private Engine engine = Engine.COMPLETABLE_FUTURE;
+        private ValidatorCache validatorCache;
+        private ParseExecutor parseExecutor;
+        private final Map<String, HTTPClientConfiguration> domainSpecificConfigs = new HashMap<>();
+
+        private Builder(HttpClient httpClient) {
+            this.httpClient = httpClient;
+        }
+
+        /**
+         * The registry to record the metrics of the workers in, or <b>NULL</b> if not recorded
+         */
+        public Builder withMetricsRegistry(MetricsRegistry metricsRegistry) {
+            this.metricsRegistry = metricsRegistry;
+            return this;
+        }
+
+        /**
+         * The engine the workers run on
+         */
+        public Builder withEngine(Engine engine) {
+            this.engine = engine;
+            return this;
+        }
 
-        return new WebScraperWorker(client);
+        /**
+         * The cache of the validators of the urls, or <b>NULL</b> if not cached
+         */
+        public Builder withValidatorCache(ValidatorCache validatorCache) {
+            this.validatorCache = validatorCache;
+            return this;
+        }
+
+        /**
+         * The executor the responses are parsed on, or <b>NULL</b> if parsed on the threads completing the requests
+         */
+        public Builder withParseExecutor(ParseExecutor parseExecutor) {
+            this.parseExecutor = parseExecutor;
+            return this;
+        }
+
+        /**
+         * Configures the domain of the configuration with it rather than the default one. The last configuration of a
+         * domain wins.
+         */
+        public Builder withDomainConfiguration(HTTPClientConfiguration configuration) {
+            this.domainSpecificConfigs.put(configuration.getDomain(), configuration);
+            return this;
+        }
+
+        /**
+         * Configures the domain of each configuration with it, see {@link #withDomainConfiguration}
+         */
+        public Builder withDomainConfigurations(HTTPClientConfiguration... configurations) {
+            if (configurations != null) {
+                for (HTTPClientConfiguration configuration : configurations) {
+                    withDomainConfiguration(configuration);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @throws UnsupportedOperationException if the engine is not supported by the build
+         */
+        public WebScraperWorkerFactory build() {
+            return new WebScraperWorkerFactory(this);
+        }
     }
 
+    /**
+     * The configuration of the worker of a domain. The builder validates it once built, through the constructor with
+     * all the fields, and fills in {@link #maxAttempts} if not set.
+     */
     @Getter
     @Setter
+    @lombok.Builder
     @NoArgsConstructor
-    @AllArgsConstructor
     public static class HTTPClientConfiguration {
-        // TODO: add validation
 
         private String domain;
-        private int maxAttempts;
+
+        /**
+         * The maximum number of attempts of each url, the first one included. 5 if not set.
+         */
+        @lombok.Builder.Default
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+        /**
+         * The minimum delay between two attempts. The delays grow, with jitter, up to {@link #maxRetryDelay}. If
+         * <b>NULL</b>, {@link RetryingHTTPClient#DEFAULT_RETRY_DELAY}.
+         */
         private Duration retryDelay;
 
+        /**
+         * The maximum delay between two attempts, including the ones asked for with Retry-After. If <b>NULL</b>, the
+         * {@link #retryDelay}.
+         */
+        private Duration maxRetryDelay;
+
+        /**
+         * The maximum share of retries over the requests made to the domain. Non-positive values mean unbounded.
+         */
+        private double retryBudgetRatio;
+
+        /**
+         * The maximum number of requests in flight to the domain at a time. Non-positive values mean unbounded.
+         */
+        private int maxConcurrentRequests;
+
+        /**
+         * If the number of requests in flight is adapted to the latency and the failures of the domain, up to
+         * {@link #maxConcurrentRequests}, see {@link AdaptiveConcurrencyLimit}. Else it is fixed at the maximum.
+         */
+        private boolean adaptiveConcurrency;
+
+        /**
+         * The rate of failed attempts, i.e. exceptions, 429 and 5xx responses, at which the circuit breaker of the domain
+         * opens, see {@link CircuitBreaker}. Non-positive values mean no circuit breaker.
+         */
+        private double circuitBreakerFailureRate;
+
+        /**
+         * The rate of attempts slower than {@link #slowCallDuration} at which the circuit breaker of the domain opens.
+         * Non-positive values mean the breaker doesn't open on slow attempts.
+         */
+        private double circuitBreakerSlowCallRate;
+
+        /**
+         * The duration past which an attempt is slow for the circuit breaker, and fails the probes of a half-open one
+         */
+        private Duration slowCallDuration;
+
+        /**
+         * The time the circuit breaker of the domain stays open, failing the urls fast, before probing the domain again.
+         * <b>NULL</b> means 30 seconds.
+         */
+        private Duration circuitBreakerOpenDuration;
+
+        /**
+         * The percentile of the latencies of the domain, ex: 0.95, after which an attempt which has not answered is
+         * hedged with a second identical one, see {@link HedgingPolicy}. Non-positive values mean a fixed delay of
+         * {@link #hedgeDelay}, if any.
+         */
+        private double hedgePercentile;
+
+        /**
+         * The delay after which an attempt which has not answered is hedged, or the minimum one if hedged as per
+         * {@link #hedgePercentile}. <b>NULL</b> along with a non-positive percentile means no hedging.
+         */
+        private Duration hedgeDelay;
+
+        /**
+         * The maximum share of hedges over the requests made to the domain. Non-positive values mean 0.05.
+         */
+        private double hedgeBudgetRatio;
+
+        /**
+         * The sustained rate of requests sent to the domain. Non-positive values mean no rate limit.
+         */
+        private double requestsPerSecond;
+
+        /**
+         * The number of requests that could be sent at once, over the sustained rate, after a period of inactivity.
+         */
+        private int burst;
+
+        /**
+         * The preferred version of HTTP. {@link HttpClient.Version#HTTP_2} multiplexes the requests over a few
+         * connections with the origins which support it, and falls back to HTTP/1.1 with the other ones.
+         * {@link HttpClient.Version#HTTP_1_1} opens a connection per concurrent request, bounded by
+         * {@link #maxConcurrentRequests}. <b>NULL</b> means the version of the HTTP client of the factory.
+         */
+        private HttpClient.Version version;
+
+        /**
+         * The timeout to establish a connection. <b>NULL</b> means the one of the HTTP client of the factory.
+         */
+        private Duration connectTimeout;
+
+        /**
+         * The timeout of each attempt, until the headers of the response are received. <b>NULL</b> means no timeout.
+         */
+        private Duration requestTimeout;
+
+        /**
+         * The time budget of each url, across all of its attempts and the delays between them, and the reading of its
+         * response. No retry is made if it could not finish in time, and the url fails with a
+         * {@link DeadlineExceededException}. <b>NULL</b> means no deadline.
+         */
+        private Duration deadline;
+
+        /**
+         * The maximum size of a response body as received, i.e. before it is decoded. The bodies are received whole
+         * before their responses are parsed, even for the parsers which stop early, and a larger one fails its url.
+         * Non-positive values mean 4 MiB.
+         */
+        private int maxBodyBytes;
+
+        /**
+         * The maximum size of a response body once decoded, so that a small compressed body can't decode to a huge
+         * one. A larger one fails its url while it is parsed. Non-positive values mean 128 MiB.
+         */
+        private long maxDecodedBytes;
+
+        /**
+         * The executor of the HTTP client, which completes the exchanges. <b>NULL</b> means the one of the HTTP client
+         * of the factory.
+         */
+        private Executor executor;
+
+        /**
+         * Called by the builder once built
+         *
+         * @throws IllegalArgumentException if the domain is <b>NULL</b>, there is no attempt, a rate is above 1, a
+         *                                  duration is negative, or a timeout is not positive
+         */
+        public HTTPClientConfiguration(String domain, int maxAttempts, Duration retryDelay, Duration maxRetryDelay,
+                                       double retryBudgetRatio, int maxConcurrentRequests, boolean adaptiveConcurrency,
+                                       double circuitBreakerFailureRate, double circuitBreakerSlowCallRate,
+                                       Duration slowCallDuration, Duration circuitBreakerOpenDuration,
+                                       double hedgePercentile, Duration hedgeDelay, double hedgeBudgetRatio,
+                                       double requestsPerSecond, int burst, HttpClient.Version version,
+                                       Duration connectTimeout, Duration requestTimeout, Duration deadline,
+                                       int maxBodyBytes, long maxDecodedBytes, Executor executor) {
+            if (domain == null) {
+                throw new IllegalArgumentException("Domain should not be null");
+            }
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Maximum attempts should be at least 1: " + maxAttempts);
+            }
+            requireAtMostOne("Retry budget ratio", retryBudgetRatio);
+            requireAtMostOne("Circuit breaker failure rate", circuitBreakerFailureRate);
+            requireAtMostOne("Circuit breaker slow call rate", circuitBreakerSlowCallRate);
+            requireAtMostOne("Hedge budget ratio", hedgeBudgetRatio);
+            if (hedgePercentile >= 1) {
+                throw new IllegalArgumentException("Hedge percentile should be below 1: " + hedgePercentile);
+            }
+            requireNonNegative("Retry delay", retryDelay);
+            requireNonNegative("Maximum retry delay", maxRetryDelay);
+            requireNonNegative("Slow call duration", slowCallDuration);
+            requireNonNegative("Circuit breaker open duration", circuitBreakerOpenDuration);
+            requireNonNegative("Hedge delay", hedgeDelay);
+            requirePositive("Connect timeout", connectTimeout);
+            requirePositive("Request timeout", requestTimeout);
+            requirePositive("Deadline", deadline);
+
+            this.domain = domain;
+            this.maxAttempts = maxAttempts;
+            this.retryDelay = retryDelay;
+            this.maxRetryDelay = maxRetryDelay;
+            this.retryBudgetRatio = retryBudgetRatio;
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            this.circuitBreakerFailureRate = circuitBreakerFailureRate;
+            this.circuitBreakerSlowCallRate = circuitBreakerSlowCallRate;
+            this.slowCallDuration = slowCallDuration;
+            this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+            this.hedgePercentile = hedgePercentile;
+            this.hedgeDelay = hedgeDelay;
+            this.hedgeBudgetRatio = hedgeBudgetRatio;
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            this.version = version;
+            this.connectTimeout = connectTimeout;
+            this.requestTimeout = requestTimeout;
+            this.deadline = deadline;
+            this.maxBodyBytes = maxBodyBytes;
+            this.maxDecodedBytes = maxDecodedBytes;
+            this.executor = executor;
+        }
+
+        private static void requireAtMostOne(String name, double rate) {
+            if (rate > 1) {
+                throw new IllegalArgumentException(name + " should be at most 1: " + rate);
+            }
+        }
+
+        private static void requireNonNegative(String name, Duration duration) {
+            if (duration != null && duration.isNegative()) {
+                throw new IllegalArgumentException(name + " should not be negative: " + duration);
+            }
+        }
+
+        private static void requirePositive(String name, Duration duration) {
+            if (duration != null && (duration.isNegative() || duration.isZero())) {
+                throw new IllegalArgumentException(name + " should be positive: " + duration);
+            }
+        }
+    }
+
+    /**
+     * The settings of an HTTP client taken from a {@link HTTPClientConfiguration}, the configurations with equal
+     * settings share an HTTP client
+     */
+    @Value
+    private static class HTTPClientSettings {
+        private static final HTTPClientSettings NONE = new HTTPClientSettings(null, null, null);
+
+        HttpClient.Version version;
+        Duration connectTimeout;
+        Executor executor;
     }
 }
@@ -0,0 +1,332 @@
+package com.hlpr98.webscraper.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hlpr98.webscraper.parser.ResponseParserFactory;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An on-disk cache of the HTTP validators (ETag and Last-Modified) of the urls, along with the entity parsed from the
+ * response carrying them. It lets a recurring scrape send conditional requests, and reuse the cached entity when the
+ * page is not modified (304) instead of downloading and parsing it again.
+ * <p>
+ * The entries are appended as json lines to a single file, and only their validators and their position in the file
+ * are kept in memory. The entity is read back from the file on a hit, and bound only to the class of the entities of
+ * a registered parser (see {@link ResponseParserFactory#getEntityClass(String)}). A removed url is appended as a
+ * tombstone, so that it stays removed once the cache is reopened. The superseded entries and the tombstones are dropped
+ * from the file once they take more bytes than the live entries, and at least 1 MiB, so that a recrawl which caches the
+ * same urls again and again keeps the file within twice its live entries. They are dropped as well when the cache is
+ * closed, whatever their size.
+ */
+@Slf4j
+public class ValidatorCache implements Closeable {
+
+    private static final long MIN_COMPACTED_BYTES = 1 << 20;
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries;
+    // the entities are read under the read lock, the file is appended to and compacted under the write lock
+    private final ReadWriteLock lock;
+    private FileChannel channel;
+    private long liveBytes;
+    private int generation;
+
+    private ValidatorCache(Path path) throws IOException {
+        this.path = path;
+        this.objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.entries = new ConcurrentHashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+        long length = load();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.truncate(length);
+        this.channel.position(length);
+    }
+
+    /**
+     * Opens the cache stored in the file, or creates an empty one if the file doesn't exist
+     */
+    public static ValidatorCache open(Path path) throws IOException {
+        return new ValidatorCache(path);
+    }
+
+    /**
+     * @return the cached validators of the url, or <b>NULL</b> if not cached
+     */
+    public Entry get(String url) {
+        return this.entries.get(url);
+    }
+
+    /**
+     * @return the number of urls cached
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Reads the entity cached along with the validators. The entry could be one got before the file was compacted, as
+     * long as the url is still cached with the same validators.
+     *
+     * @param entry the entry of the url
+     * @return the entity
+     * @throws IOException if the entity could not be read back
+     */
+    public Object getEntity(Entry entry) throws IOException {
+        ByteBuffer buffer;
+        this.lock.readLock().lock();
+        try {
+            Entry current = entry.generation == this.generation ? entry : moved(entry);
+            buffer = read(current, current.length);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        JsonNode record = this.objectMapper.readTree(buffer.array());
+        String typeName = record.path("type").asText();
+        Class<?> type = ResponseParserFactory.getEntityClass(typeName);
+        if (type == null) {
+            throw new IOException("Unknown type of cached entity of " + entry.url + ": " + typeName);
+        }
+        return this.objectMapper.treeToValue(record.get("entity"), type);
+    }
+
+    /**
+     * Caches the validators of the url along with its entity, replacing the ones cached before if any
+     *
+     * @param url          the url
+     * @param eTag         the ETag of the response, or <b>NULL</b>
+     * @param lastModified the Last-Modified of the response, or <b>NULL</b>
+     * @param entity       the entity parsed from the response
+     */
+    public void put(String url, String eTag, String lastModified, Object entity) throws IOException {
+        ObjectNode record = this.objectMapper.createObjectNode()
+                .put("url", url)
+                .put("eTag", eTag)
+                .put("lastModified", lastModified)
+                .put("type", entity.getClass().getName());
+        record.set("entity", this.objectMapper.valueToTree(entity));
+        byte[] line = (this.objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        this.lock.writeLock().lock();
+        try {
+            long offset = append(line);
+            Entry previous = this.entries.put(url,
+                    new Entry(url, eTag, lastModified, offset, line.length - 1, this.generation));
+            this.liveBytes += line.length - recordLength(previous);
+            compactIfWasteful();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the url from the cache, ex: when its cached entity could not be read back
+     */
+    public void remove(String url) throws IOException {
+        ObjectNode record = this.objectMapper.createObjectNode()
+                .put("url", url)
+                .put("removed", true);
+        byte[] line = (this.objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        this.lock.writeLock().lock();
+        try {
+            append(line);
+            this.liveBytes -= recordLength(this.entries.remove(url));
+            compactIfWasteful();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            this.channel.force(false);
+            if (deadBytes() > this.liveBytes) {
+                compact();
+            }
+            this.channel.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the validators and the positions of the entries in the file. A truncated last line, ex: of a crash while
+     * writing it, is skipped.
+     *
+     * @return the length of the file up to the end of its last complete line
+     */
+    private long load() throws IOException {
+        if (!Files.exists(this.path)) {
+            return 0;
+        }
+
+        long lineStart = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(this.path))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                loadRecord(line.toByteArray(), lineStart);
+                line.reset();
+                lineStart = offset;
+            }
+        }
+        return lineStart;
+    }
+
+    private void loadRecord(byte[] line, long offset) {
+        try {
+            JsonNode record = this.objectMapper.readTree(line);
+            String url = record.path("url").asText();
+            if (record.path("removed").asBoolean()) {
+                this.liveBytes -= recordLength(this.entries.remove(url));
+            } else {
+                Entry previous = this.entries.put(url, new Entry(url, textOrNull(record, "eTag"),
+                        textOrNull(record, "lastModified"), offset, line.length, this.generation));
+                this.liveBytes += line.length + 1 - recordLength(previous);
+            }
+        } catch (IOException e) {
+            log.warn("Skipping corrupt cache entry at offset {} of {}", offset, this.path);
+        }
+    }
+
+    /**
+     * Compacts the file once the dead entries take more bytes than the live ones, and at least
+     * {@link #MIN_COMPACTED_BYTES}, holding the write lock. A failed compaction leaves the file as it is.
+     */
+    private void compactIfWasteful() throws IOException {
+        long deadBytes = deadBytes();
+        if (deadBytes >= MIN_COMPACTED_BYTES && deadBytes > this.liveBytes) {
+            compact();
+        }
+    }
+
+    private long deadBytes() throws IOException {
+        return this.channel.position() - this.liveBytes;
+    }
+
+    /**
+     * Rewrites the file with only the live entries, and moves them to their offsets in the new file, holding the write
+     * lock
+     */
+    private void compact() throws IOException {
+        Path temporary = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        Map<String, Entry> moved = new HashMap<>();
+        long length = 0;
+        try (FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Entry entry : this.entries.values()) {
+                ByteBuffer buffer = read(entry, entry.length + 1);
+                while (buffer.hasRemaining()) {
+                    compacted.write(buffer);
+                }
+                moved.put(entry.url, new Entry(entry.url, entry.eTag, entry.lastModified, length, entry.length,
+                        this.generation + 1));
+                length += entry.length + 1;
+            }
+            compacted.force(false);
+        }
+        Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(length);
+        log.info("Compacted validator cache {} from {} to {} bytes", this.path, this.channel.position(), length);
+        this.channel.close();
+        this.channel = channel;
+        this.entries.putAll(moved);
+        this.generation++;
+    }
+
+    /**
+     * @return the entry of the url in the compacted file, if the url is still cached with the same validators
+     */
+    private Entry moved(Entry entry) throws IOException {
+        Entry current = this.entries.get(entry.url);
+        if (current == null || !Objects.equals(current.eTag, entry.eTag)
+                || !Objects.equals(current.lastModified, entry.lastModified)) {
+            throw new IOException("Cache entry is superseded and compacted: " + entry.url);
+        }
+        return current;
+    }
+
+    /**
+     * @return the bytes of the entry in the file, ready to be read from the buffer
+     */
+    private ByteBuffer read(Entry entry, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, entry.offset + buffer.position()) < 0) {
+                throw new EOFException("Cache entry is truncated: " + entry.url);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Appends the line at the end of the file, holding the write lock
+     *
+     * @return the offset of the line
+     */
+    private long append(byte[] line) throws IOException {
+        long offset = this.channel.position();
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+        return offset;
+    }
+
+    /**
+     * @return the bytes of the entry in the file along with its line break, or 0 if there is no entry
+     */
+    private static long recordLength(Entry entry) {
+        return entry != null ? entry.length + 1 : 0;
+    }
+
+    private static String textOrNull(JsonNode record, String field) {
+        JsonNode value = record.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    /**
+     * The validators of a url, and the position of its entry in the file
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final String url;
+        private final String eTag;
+        private final String lastModified;
+        private final long offset;
+        private final int length;
+        @Getter(AccessLevel.NONE)
+        private final int generation;
+    }
+}
@@ -0,0 +1,359 @@
+package com.hlpr98.webscraper.cluster;
+
+import com.hlpr98.webscraper.input.URLSource;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.parser.ResponseParserFactory;
+import com.hlpr98.webscraper.sink.ResultSink;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads the scraping of the urls over the nodes (see {@link ClusterNode}) which join it over a socket. The domains
+ * are assigned to the nodes by a {@link ConsistentHashRing}, so all the urls of a domain go to a single node and are
+ * scraped by its single worker of the domain, within the limits of the domain.
+ * <p>
+ * The urls are read from the source only when there is room in the window of urls in flight over the whole cluster,
+ * and are sent to the nodes in batches. The results sent back by the nodes are handed over to the sink.
+ * <p>
+ * The domains are rebalanced as the nodes join and leave: the urls read afterwards go to the new owners of their
+ * domains, and the urls in flight on a node which leaves (or dies) are sent again to the new owners. Hence each url is
+ * scraped at least once.
+ * <p>
+ * The nodes are not authenticated, hence the coordinator should listen at an address reachable only by them, ex: the
+ * loopback one for the nodes of the same host. The entities received are bound only to the classes of the entities of
+ * the registered parsers (see {@link ResponseParserFactory#getEntityClass(String)}), the other ones are kept as json.
+ * <p>
+ * A sink which throws fails the scraping: no url is read from the source afterwards, and the results received later
+ * are dropped.
+ */
+@Slf4j
+public class ClusterCoordinator implements Closeable {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long WAIT_MILLIS = 100;
+
+    private final ServerSocket serverSocket;
+    private final int batchSize;
+    private final ConsistentHashRing<Node> ring;
+    private final Map<String, Node> idVsNode;
+    private final BlockingQueue<Message.Task> orphans;
+    private final Thread acceptor;
+    private volatile ResultSink sink;
+    private volatile Semaphore inFlight;
+    private volatile RuntimeException sinkFailure;
+    private volatile boolean closed;
+    private long nextTaskId;
+
+    public ClusterCoordinator(InetSocketAddress address) throws IOException {
+        this(address, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Starts listening for the nodes
+     *
+     * @param address   the address to listen at for the nodes
+     * @param batchSize the maximum number of urls sent to a node at once
+     */
+    public ClusterCoordinator(InetSocketAddress address, int batchSize) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address);
+        this.batchSize = batchSize;
+        this.ring = new ConsistentHashRing<>();
+        this.idVsNode = new HashMap<>();
+        this.orphans = new LinkedBlockingQueue<>();
+        this.acceptor = new Thread(this::acceptLoop, "cluster-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+        log.info("Coordinator listening for nodes at {}", this.serverSocket.getLocalSocketAddress());
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) this.serverSocket.getLocalSocketAddress();
+    }
+
+    public synchronized int getNodeCount() {
+        return this.idVsNode.size();
+    }
+
+    /**
+     * Scrapes the urls of the source over the nodes, and hands over the result of each url to the sink as soon as it is
+     * received. It waits for a node to join, whenever there is none.
+     *
+     * @param source      the source of urls
+     * @param maxInFlight the maximum number of urls in flight over the cluster
+     * @param sink        the sink of the results
+     * @throws MalformedURLException if a url is malformed
+     * @throws RuntimeException      the exception of the sink if it throws, in which case the scraping stops
+     * @throws InterruptedException  if interrupted while waiting for the nodes
+     */
+    public void scrape(URLSource source, int maxInFlight, ResultSink sink)
+            throws MalformedURLException, InterruptedException {
+        this.sink = sink;
+        this.inFlight = new Semaphore(maxInFlight);
+        Map<Node, List<Message.Task>> pending = new HashMap<>();
+
+        while (source.hasNext()) {
+            throwIfSinkFailed();
+            dispatchOrphans(pending);
+            if (!this.inFlight.tryAcquire()) {
+                sendAll(pending);
+                while (!this.inFlight.tryAcquire(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    throwIfSinkFailed();
+                    dispatchOrphans(pending);
+                    sendAll(pending);
+                }
+            }
+
+            String url = source.next();
+            Node node = assign(new Message.Task(this.nextTaskId++, url), pending);
+            if (pending.get(node).size() >= this.batchSize) {
+                send(node, pending.remove(node));
+            }
+        }
+        sendAll(pending);
+
+        // waits for the urls in flight, sending again the ones of the nodes which leave
+        while (!this.inFlight.tryAcquire(maxInFlight, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            throwIfSinkFailed();
+            dispatchOrphans(pending);
+            sendAll(pending);
+        }
+        throwIfSinkFailed();
+    }
+
+    /**
+     * Stops listening and disconnects the nodes, which then stop
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.serverSocket.close();
+        List<Node> nodes;
+        synchronized (this) {
+            nodes = new ArrayList<>(this.idVsNode.values());
+        }
+        for (Node node : nodes) {
+            node.connection.close();
+        }
+    }
+
+    private Node assign(Message.Task task, Map<Node, List<Message.Task>> pending)
+            throws MalformedURLException, InterruptedException {
+        String domain = new URL(task.getUrl()).getHost();
+        Node node;
+        synchronized (this) {
+            while (this.ring.isEmpty()) {
+                throwIfSinkFailed();
+                log.info("Waiting for a node to join");
+                wait();
+            }
+            node = this.ring.nodeFor(domain);
+        }
+        pending.computeIfAbsent(node, n -> new ArrayList<>()).add(task);
+        return node;
+    }
+
+    private void throwIfSinkFailed() {
+        if (this.sinkFailure != null) {
+            throw this.sinkFailure;
+        }
+    }
+
+    private void dispatchOrphans(Map<Node, List<Message.Task>> pending)
+            throws MalformedURLException, InterruptedException {
+        for (Message.Task task = this.orphans.poll(); task != null; task = this.orphans.poll()) {
+            assign(task, pending);
+        }
+    }
+
+    private void sendAll(Map<Node, List<Message.Task>> pending) {
+        pending.forEach(this::send);
+        pending.clear();
+    }
+
+    private void send(Node node, List<Message.Task> tasks) {
+        synchronized (node) {
+            if (node.left) {
+                this.orphans.addAll(tasks);
+                return;
+            }
+            tasks.forEach(task -> node.inFlight.put(task.getId(), task));
+        }
+
+        try {
+            node.connection.send(Message.builder().type(Message.Type.SCRAPE).tasks(tasks).build());
+        } catch (IOException e) {
+            log.warn("Exception while sending urls to node {}", node.id, e);
+            leave(node);
+        }
+    }
+
+    private void acceptLoop() {
+        while (!this.closed) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                Thread handshake = new Thread(() -> join(socket), "cluster-join-" + socket.getRemoteSocketAddress());
+                handshake.setDaemon(true);
+                handshake.start();
+            } catch (IOException e) {
+                if (!this.closed) {
+                    log.error("Exception while accepting nodes", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts the node on the ring once it says hello, and then reads its results until it leaves
+     */
+    private void join(Socket socket) {
+        Node node;
+        try {
+            Connection connection = new Connection(socket);
+            Message hello = connection.receive();
+            if (hello == null || hello.getType() != Message.Type.HELLO || hello.getNodeId() == null) {
+                log.warn("Rejecting node {}, which didn't say hello", connection);
+                connection.close();
+                return;
+            }
+
+            node = new Node(hello.getNodeId(), connection);
+            synchronized (this) {
+                if (this.closed || this.idVsNode.containsKey(node.id)) {
+                    log.warn("Rejecting node {}, as the id is already taken", node.id);
+                    connection.close();
+                    return;
+                }
+                this.idVsNode.put(node.id, node);
+                this.ring.add(node.id, node);
+                notifyAll();
+                log.info("Node {} joined from {}, {} nodes", node.id, connection, this.idVsNode.size());
+            }
+        } catch (IOException e) {
+            log.warn("Exception while a node was joining", e);
+            return;
+        }
+
+        readResults(node);
+    }
+
+    private void readResults(Node node) {
+        try {
+            for (Message message = node.connection.receive(); message != null; message = node.connection.receive()) {
+                if (message.getType() == Message.Type.RESULT) {
+                    onResult(node, message);
+                }
+            }
+        } catch (IOException e) {
+            if (!this.closed) {
+                log.warn("Exception while reading results of node {}", node.id, e);
+            }
+        } finally {
+            leave(node);
+        }
+    }
+
+    private void onResult(Node node, Message message) {
+        Message.Task task;
+        // under the lock of the node, so that a task is either orphaned by leave or done here, never both
+        synchronized (node) {
+            task = node.inFlight.remove(message.getTaskId());
+        }
+        if (task == null) {
+            return;
+        }
+
+        try {
+            if (this.sinkFailure == null) {
+                this.sink.accept(task.getUrl(), toResult(node, message));
+            }
+        } catch (RuntimeException e) {
+            log.error("Exception while persisting result of {}", task.getUrl(), e);
+            synchronized (this) {
+                if (this.sinkFailure == null) {
+                    this.sinkFailure = e;
+                }
+                // wakes up scrape if it waits for a node to join
+                notifyAll();
+            }
+        } finally {
+            this.inFlight.release();
+        }
+    }
+
+    private WebScrapingResult toResult(Node node, Message message) {
+        if (message.getError() != null) {
+            return WebScrapingResult.builder().exception(new RemoteScrapingException(message.getError())).build();
+        }
+        if (message.getEntity() == null || message.getEntity().isNull()) {
+            return WebScrapingResult.builder().build();
+        }
+
+        Object entity = message.getEntity();
+        Class<?> type = message.getEntityType() != null
+                ? ResponseParserFactory.getEntityClass(message.getEntityType())
+                : null;
+        if (type != null) {
+            try {
+                entity = node.connection.getObjectMapper().treeToValue(message.getEntity(), type);
+            } catch (IOException e) {
+                log.debug("Keeping the entity of type {} as json", message.getEntityType());
+            }
+        } else if (message.getEntityType() != null) {
+            log.debug("Keeping the entity of unknown type {} as json", message.getEntityType());
+        }
+        return WebScrapingResult.builder().parsedEntity(entity).build();
+    }
+
+    /**
+     * Takes the node off the ring, and queues its urls in flight to be sent again to the new owners of their domains
+     */
+    private void leave(Node node) {
+        int orphaned;
+        synchronized (node) {
+            if (node.left) {
+                return;
+            }
+            node.left = true;
+            orphaned = node.inFlight.size();
+            this.orphans.addAll(node.inFlight.values());
+            node.inFlight.clear();
+        }
+
+        synchronized (this) {
+            this.ring.remove(node);
+            this.idVsNode.remove(node.id, node);
+            if (!this.closed) {
+                log.info("Node {} left, {} nodes, {} urls in flight to be sent again", node.id, this.idVsNode.size(),
+                        orphaned);
+            }
+        }
+        try {
+            node.connection.close();
+        } catch (IOException e) {
+            log.debug("Exception while closing the connection of node {}", node.id, e);
+        }
+    }
+
+    private static class Node {
+        private final String id;
+        private final Connection connection;
+        private final Map<Long, Message.Task> inFlight;
+        private boolean left;
+
+        Node(String id, Connection connection) {
+            this.id = id;
+            this.connection = connection;
+            this.inFlight = new ConcurrentHashMap<>();
+        }
+    }
+}
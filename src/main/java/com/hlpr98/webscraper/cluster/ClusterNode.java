@@ -0,0 +1,119 @@
+package com.hlpr98.webscraper.cluster;
+
+import com.hlpr98.webscraper.IWebScraperWorker;
+import com.hlpr98.webscraper.WebScraperWorkerFactory;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.parser.ResponseParser;
+import com.hlpr98.webscraper.parser.ResponseParserFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * A node of a cluster of scrapers. It joins a {@link ClusterCoordinator}, scrapes the urls sent by it with its own
+ * workers, and sends back the result of each url as soon as it is scraped.
+ * <p>
+ * The coordinator sends all the urls of a domain to the same node, hence the limits of the domains set by the
+ * {@link WebScraperWorkerFactory} hold over the whole cluster.
+ */
+@Slf4j
+public class ClusterNode implements Closeable {
+
+    private final InetSocketAddress coordinator;
+    private final String id;
+    private final WebScraperWorkerFactory workerFactory;
+    private volatile Connection connection;
+    private volatile boolean closed;
+
+    public ClusterNode(InetSocketAddress coordinator, WebScraperWorkerFactory workerFactory) {
+        this(coordinator, ManagementFactory.getRuntimeMXBean().getName(), workerFactory);
+    }
+
+    /**
+     * @param coordinator   the address of the coordinator
+     * @param id            the unique id of the node, the domains assigned to a node depend on it
+     * @param workerFactory the factory of the workers of the domains
+     */
+    public ClusterNode(InetSocketAddress coordinator, String id, WebScraperWorkerFactory workerFactory) {
+        this.coordinator = coordinator;
+        this.id = id;
+        this.workerFactory = workerFactory;
+    }
+
+    /**
+     * Joins the coordinator and scrapes the urls sent by it, until the coordinator closes the connection or the node
+     * is closed
+     *
+     * @throws IOException if the coordinator could not be reached
+     */
+    public void run() throws IOException {
+        this.connection = new Connection(new Socket(this.coordinator.getAddress(), this.coordinator.getPort()));
+        if (this.closed) {
+            this.connection.close();
+            return;
+        }
+        this.connection.send(Message.builder().type(Message.Type.HELLO).nodeId(this.id).build());
+        log.info("Node {} joined {}", this.id, this.coordinator);
+
+        try {
+            for (Message message = this.connection.receive(); message != null; message = this.connection.receive()) {
+                if (message.getType() == Message.Type.SCRAPE) {
+                    message.getTasks().forEach(this::scrape);
+                }
+            }
+        } catch (IOException e) {
+            if (!this.closed) {
+                throw e;
+            }
+        } finally {
+            this.connection.close();
+        }
+        log.info("Node {} left {}", this.id, this.coordinator);
+    }
+
+    /**
+     * Leaves the coordinator, the urls in flight are then scraped again by the other nodes
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        if (this.connection != null) {
+            this.connection.close();
+        }
+    }
+
+    private void scrape(Message.Task task) {
+        String url = task.getUrl();
+        try {
+            IWebScraperWorker worker = this.workerFactory.getWorker(url);
+            ResponseParser<?> parser = ResponseParserFactory.getParser(url);
+            worker.submit(url, parser).thenAccept(result -> sendResult(task, result));
+        } catch (Exception e) {
+            sendResult(task, WebScrapingResult.builder().exception(e).build());
+        }
+    }
+
+    private void sendResult(Message.Task task, WebScrapingResult result) {
+        Message.MessageBuilder message = Message.builder()
+                .type(Message.Type.RESULT)
+                .taskId(task.getId());
+        if (result.getException() != null) {
+            message.error(String.valueOf(result.getException()));
+        } else if (result.getParsedEntity() != null) {
+            message.entityType(result.getParsedEntity().getClass().getName())
+                    .entity(this.connection.getObjectMapper().valueToTree(result.getParsedEntity()));
+        }
+
+        try {
+            this.connection.send(message.build());
+        } catch (IOException e) {
+            if (!this.closed) {
+                log.warn("Exception while sending result of {}", task.getUrl(), e);
+            }
+        }
+    }
+}
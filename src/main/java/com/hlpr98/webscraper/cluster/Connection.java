@@ -0,0 +1,63 @@
+package com.hlpr98.webscraper.cluster;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A socket between the coordinator and a node, over which the {@link Message}s are sent one per line. Sending is
+ * thread safe, receiving is meant for a single reader thread.
+ */
+class Connection implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Socket socket;
+    private final ObjectMapper objectMapper;
+    private final BufferedReader reader;
+    private final Writer writer;
+
+    Connection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.socket.setTcpNoDelay(true);
+        this.objectMapper = new ObjectMapper()
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+        this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+
+    ObjectMapper getObjectMapper() {
+        return this.objectMapper;
+    }
+
+    /**
+     * @return the next message, or <b>NULL</b> if the other end closed the connection
+     */
+    Message receive() throws IOException {
+        String line = this.reader.readLine();
+        return line != null ? this.objectMapper.readValue(line, Message.class) : null;
+    }
+
+    synchronized void send(Message message) throws IOException {
+        this.writer.write(this.objectMapper.writeValueAsString(message));
+        this.writer.write('\n');
+        this.writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.socket.getRemoteSocketAddress());
+    }
+}
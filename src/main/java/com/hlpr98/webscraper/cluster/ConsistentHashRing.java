@@ -0,0 +1,85 @@
+package com.hlpr98.webscraper.cluster;
+
+import com.hlpr98.webscraper.util.Hashing;
+
+import java.util.*;
+
+/**
+ * Assigns keys (the domains) to nodes by consistent hashing. Each node is placed at many points of a ring of 64 bit
+ * hashes, and a key belongs to the node at the first point on or after the hash of the key. So the keys are spread
+ * evenly over the nodes, and a node joining or leaving moves only about 1/N of the keys.
+ * <p>
+ * Note: it is not thread safe.
+ *
+ * @param <N> the node type
+ */
+public class ConsistentHashRing<N> {
+
+    /**
+     * The number of points of each node on the ring, the more of them the more even the spread of the keys
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int virtualNodes;
+    private final NavigableMap<Long, N> ring;
+    private final Map<N, String> nodeVsId;
+
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        this.ring = new TreeMap<>();
+        this.nodeVsId = new HashMap<>();
+    }
+
+    /**
+     * Adds the node. Its points on the ring depend only on its id, so a node which joins again gets back the same keys.
+     *
+     * @param id   the unique id of the node
+     * @param node the node
+     */
+    public void add(String id, N node) {
+        if (this.nodeVsId.containsKey(node)) {
+            throw new IllegalArgumentException("Node is already on the ring: " + id);
+        }
+        this.nodeVsId.put(node, id);
+        for (int i = 0; i < this.virtualNodes; i++) {
+            this.ring.putIfAbsent(pointOf(id, i), node);
+        }
+    }
+
+    public void remove(N node) {
+        String id = this.nodeVsId.remove(node);
+        if (id == null) {
+            return;
+        }
+        for (int i = 0; i < this.virtualNodes; i++) {
+            this.ring.remove(pointOf(id, i), node);
+        }
+    }
+
+    /**
+     * @return the node the key belongs to, or <b>NULL</b> if the ring is empty
+     */
+    public N nodeFor(String key) {
+        if (this.ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, N> entry = this.ring.ceilingEntry(Hashing.mix64(Hashing.fnv1a64(key)));
+        return entry != null ? entry.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    public boolean isEmpty() {
+        return this.nodeVsId.isEmpty();
+    }
+
+    public Set<N> getNodes() {
+        return Collections.unmodifiableSet(this.nodeVsId.keySet());
+    }
+
+    private static long pointOf(String id, int virtualNode) {
+        return Hashing.mix64(Hashing.fnv1a64(id + "#" + virtualNode));
+    }
+}
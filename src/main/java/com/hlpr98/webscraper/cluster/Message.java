@@ -0,0 +1,73 @@
+package com.hlpr98.webscraper.cluster;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A message between the coordinator and a node. The messages are sent as newline delimited json.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+class Message {
+
+    private Type type;
+
+    /**
+     * The id of the node joining, of {@link Type#HELLO}
+     */
+    private String nodeId;
+
+    /**
+     * The urls to scrape, of {@link Type#SCRAPE}
+     */
+    private List<Task> tasks;
+
+    /**
+     * The id of the task, of {@link Type#RESULT}
+     */
+    private Long taskId;
+
+    /**
+     * The class name of the entity parsed, of a successful {@link Type#RESULT}
+     */
+    private String entityType;
+    private JsonNode entity;
+
+    /**
+     * The exception, of a failed {@link Type#RESULT}
+     */
+    private String error;
+
+    enum Type {
+        /**
+         * Sent by a node on joining
+         */
+        HELLO,
+
+        /**
+         * A batch of urls sent by the coordinator to a node
+         */
+        SCRAPE,
+
+        /**
+         * The result of a url sent back by a node
+         */
+        RESULT
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Task {
+        private long id;
+        private String url;
+    }
+}
@@ -0,0 +1,16 @@
+package com.hlpr98.webscraper.cluster;
+
+/**
+ * The failure of a url scraped by a node. It carries the exception of the node as its message, and is shown as is.
+ */
+public class RemoteScrapingException extends RuntimeException {
+
+    public RemoteScrapingException(String message) {
+        super(message);
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
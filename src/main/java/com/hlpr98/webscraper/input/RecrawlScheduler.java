@@ -0,0 +1,364 @@
+package com.hlpr98.webscraper.input;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hlpr98.webscraper.metrics.MetricsRegistry;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.sink.ResultSink;
+import com.hlpr98.webscraper.util.Hashing;
+import com.hlpr98.webscraper.util.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Schedules urls to be scraped again and again, each at an interval adapted to how often its content changes. It is the
+ * source of the urls of a long-running scraping, see {@link #source()}, and it is told of their results by the sink of
+ * the scraping, see {@link #reschedulingSink(ResultSink)}.
+ * <ul>
+ *     <li>An url is due once its next fetch time has passed. The due urls are taken in the order of their next fetch
+ *     times, and at most at the configured rate, so that the urls are handed over to the workers at a steady pace.</li>
+ *     <li>Once the result of an url is received, it is scheduled again after its interval. The interval is halved if
+ *     the entity parsed changed since the previous fetch, and grown by half if it did not, within the minimum and the
+ *     maximum intervals. A failed url keeps its interval.</li>
+ *     <li>The next fetch time is jittered by up to {@link #JITTER} of the interval, so that the urls scraped together at
+ *     first drift apart, instead of coming due as a batch at every interval.</li>
+ * </ul>
+ * The schedule is a binary heap of the urls by next fetch time, kept in arrays of primitives: about 40 bytes per url on
+ * top of the url itself, and no object per url. The urls being scraped are out of the heap until their result.
+ */
+@Slf4j
+public class RecrawlScheduler implements Closeable {
+
+    /**
+     * The ratio the interval of an url is multiplied with when its content changed
+     */
+    private static final double CHANGED_RATIO = 0.5;
+
+    /**
+     * The ratio the interval of an url is multiplied with when its content did not change
+     */
+    private static final double UNCHANGED_RATIO = 1.5;
+
+    /**
+     * The maximum share of the interval the next fetch time is moved by, earlier or later
+     */
+    private static final double JITTER = 0.1;
+
+    /**
+     * The hash of the content of an url which was not scraped successfully yet
+     */
+    private static final long UNKNOWN_HASH = 0;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final long initialIntervalNanos;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final TokenBucket rateLimiter;
+    private final LongSupplier nanoClock;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Integer> scraping;
+
+    private String[] urls;
+    private long[] dueNanos;
+    private long[] intervalNanos;
+    private long[] contentHashes;
+    private int size;
+    private int[] heap;
+    private int heapSize;
+    private boolean closed;
+
+    /**
+     * @param initialInterval the interval the urls start with
+     * @param minInterval     the minimum interval of an url whose content changes at every fetch
+     * @param maxInterval     the maximum interval of an url whose content never changes
+     * @param urlsPerSecond   the maximum rate the due urls are taken at, or a non-positive value if not rate limited
+     * @param metricsRegistry the registry to record the gauges of the schedule in, or <b>NULL</b> if not recorded
+     */
+    public RecrawlScheduler(Duration initialInterval, Duration minInterval, Duration maxInterval, double urlsPerSecond,
+                            MetricsRegistry metricsRegistry) {
+        this(initialInterval, minInterval, maxInterval, urlsPerSecond, metricsRegistry, System::nanoTime);
+    }
+
+    RecrawlScheduler(Duration initialInterval, Duration minInterval, Duration maxInterval, double urlsPerSecond,
+                     MetricsRegistry metricsRegistry, LongSupplier nanoClock) {
+        if (minInterval.isNegative() || minInterval.isZero()
+                || initialInterval.compareTo(minInterval) < 0 || maxInterval.compareTo(initialInterval) < 0) {
+            throw new IllegalArgumentException("Intervals should be positive, and the initial one within the others");
+        }
+        this.initialIntervalNanos = initialInterval.toNanos();
+        this.minIntervalNanos = minInterval.toNanos();
+        this.maxIntervalNanos = maxInterval.toNanos();
+        this.rateLimiter = urlsPerSecond > 0 ? new TokenBucket(urlsPerSecond, 1) : null;
+        this.nanoClock = nanoClock;
+        this.objectMapper = new ObjectMapper();
+        this.scraping = new HashMap<>();
+        this.urls = new String[MIN_CAPACITY];
+        this.dueNanos = new long[MIN_CAPACITY];
+        this.intervalNanos = new long[MIN_CAPACITY];
+        this.contentHashes = new long[MIN_CAPACITY];
+        this.heap = new int[MIN_CAPACITY];
+
+        if (metricsRegistry != null) {
+            metricsRegistry.gauge("webscraper_recrawl_urls", this::size);
+            metricsRegistry.gauge("webscraper_recrawl_lag_seconds", this::getLagSeconds);
+        }
+    }
+
+    /**
+     * Schedules the url to be scraped as soon as possible, and then at the initial interval. The urls must be
+     * distinct, ex: read from a deduplicated {@link URLSource}: the urls are not indexed while scheduled, and a
+     * duplicate would replace the other url being scraped, which would then be lost from the schedule.
+     */
+    public synchronized void add(String url) {
+        if (this.size == this.urls.length) {
+            grow();
+        }
+        int index = this.size++;
+        this.urls[index] = url;
+        this.dueNanos[index] = this.nanoClock.getAsLong();
+        this.intervalNanos[index] = this.initialIntervalNanos;
+        this.contentHashes[index] = UNKNOWN_HASH;
+        push(index);
+        notifyAll();
+    }
+
+    /**
+     * Schedules each of the urls, see {@link #add(String)}
+     */
+    public void addAll(Iterator<String> urls) {
+        while (urls.hasNext()) {
+            add(urls.next());
+        }
+    }
+
+    /**
+     * @return the number of urls scheduled, including the ones being scraped
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * Takes the url due the earliest, if any is due and the rate limit allows it, without waiting. The url is out of
+     * the schedule until its result is received, see {@link #onScraped(String, WebScrapingResult)}.
+     *
+     * @return the url, or <b>NULL</b> if none could be taken now
+     */
+    public synchronized String poll() {
+        if (this.heapSize == 0 || this.dueNanos[this.heap[0]] - this.nanoClock.getAsLong() > 0) {
+            return null;
+        }
+        if (this.rateLimiter != null && this.rateLimiter.tryAcquire() > 0) {
+            return null;
+        }
+        return takeHead();
+    }
+
+    /**
+     * @return an endless source of the urls as they come due, whose {@link URLSource#hasNext()} blocks until then. It is
+     * exhausted once the scheduler is closed.
+     */
+    public URLSource source() {
+        return URLSource.fromIterator(new Iterator<>() {
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                if (this.next == null) {
+                    try {
+                        this.next = take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for a due url", e);
+                    }
+                }
+                return this.next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String url = this.next;
+                this.next = null;
+                return url;
+            }
+        }, this);
+    }
+
+    /**
+     * @param sink the sink of the results
+     * @return a sink which schedules each url again as per its result, see {@link #onScraped(String, WebScrapingResult)},
+     * before handing over the result to the given sink
+     */
+    public ResultSink reschedulingSink(ResultSink sink) {
+        return new ResultSink() {
+            @Override
+            public void accept(String url, WebScrapingResult result) {
+                onScraped(url, result);
+                sink.accept(url, result);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                sink.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                sink.close();
+            }
+        };
+    }
+
+    /**
+     * Schedules the url taken from the scheduler again, after its interval adapted to the result. The urls which are
+     * not being scraped are ignored.
+     */
+    public void onScraped(String url, WebScrapingResult result) {
+        long contentHash = result.getException() == null ? contentHash(result.getParsedEntity()) : UNKNOWN_HASH;
+        synchronized (this) {
+            Integer index = this.scraping.remove(url);
+            if (index == null) {
+                log.warn("Result of an url which is not being scraped: {}", url);
+                return;
+            }
+
+            if (contentHash != UNKNOWN_HASH) {
+                long previousHash = this.contentHashes[index];
+                if (previousHash != UNKNOWN_HASH) {
+                    double ratio = contentHash != previousHash ? CHANGED_RATIO : UNCHANGED_RATIO;
+                    this.intervalNanos[index] = Math.max(this.minIntervalNanos,
+                            Math.min(this.maxIntervalNanos, (long) (this.intervalNanos[index] * ratio)));
+                }
+                this.contentHashes[index] = contentHash;
+            }
+
+            double jitter = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+            this.dueNanos[index] = this.nanoClock.getAsLong() + (long) (this.intervalNanos[index] * jitter);
+            push(index);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Exhausts the {@link #source()}, so that the scraping ends once the urls being scraped are done
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until an url is due and the rate limit allows it, and takes it
+     *
+     * @return the url, or <b>NULL</b> if the scheduler is closed
+     */
+    private synchronized String take() throws InterruptedException {
+        while (!this.closed) {
+            if (this.heapSize == 0) {
+                wait();
+                continue;
+            }
+            long waitNanos = this.dueNanos[this.heap[0]] - this.nanoClock.getAsLong();
+            if (waitNanos <= 0 && this.rateLimiter != null) {
+                waitNanos = this.rateLimiter.tryAcquire();
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                continue;
+            }
+            return takeHead();
+        }
+        return null;
+    }
+
+    private String takeHead() {
+        int index = this.heap[0];
+        this.heap[0] = this.heap[--this.heapSize];
+        siftDown(0);
+        this.scraping.put(this.urls[index], index);
+        return this.urls[index];
+    }
+
+    private synchronized long getLagSeconds() {
+        if (this.heapSize == 0) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toSeconds(this.nanoClock.getAsLong() - this.dueNanos[this.heap[0]]));
+    }
+
+    private long contentHash(Object entity) {
+        byte[] content;
+        try {
+            content = this.objectMapper.writeValueAsBytes(entity);
+        } catch (JsonProcessingException e) {
+            content = String.valueOf(entity).getBytes(StandardCharsets.UTF_8);
+        }
+        long hash = Hashing.fnv1a64(content, 0, content.length);
+        return hash != UNKNOWN_HASH ? hash : 1;
+    }
+
+    private void push(int index) {
+        this.heap[this.heapSize] = index;
+        siftUp(this.heapSize++);
+    }
+
+    private void siftUp(int position) {
+        int index = this.heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (this.dueNanos[this.heap[parent]] - this.dueNanos[index] <= 0) {
+                break;
+            }
+            this.heap[position] = this.heap[parent];
+            position = parent;
+        }
+        this.heap[position] = index;
+    }
+
+    private void siftDown(int position) {
+        if (this.heapSize == 0) {
+            return;
+        }
+        int index = this.heap[position];
+        int half = this.heapSize >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < this.heapSize && this.dueNanos[this.heap[right]] - this.dueNanos[this.heap[child]] < 0) {
+                child = right;
+            }
+            if (this.dueNanos[index] - this.dueNanos[this.heap[child]] <= 0) {
+                break;
+            }
+            this.heap[position] = this.heap[child];
+            position = child;
+        }
+        this.heap[position] = index;
+    }
+
+    private void grow() {
+        int capacity = this.urls.length * 2;
+        this.urls = Arrays.copyOf(this.urls, capacity);
+        this.dueNanos = Arrays.copyOf(this.dueNanos, capacity);
+        this.intervalNanos = Arrays.copyOf(this.intervalNanos, capacity);
+        this.contentHashes = Arrays.copyOf(this.contentHashes, capacity);
+        this.heap = Arrays.copyOf(this.heap, capacity);
+    }
+}
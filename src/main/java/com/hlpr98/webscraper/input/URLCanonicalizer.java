@@ -0,0 +1,118 @@
+package com.hlpr98.webscraper.input;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Converts the trivially different forms of a url into a single canonical form, so that the same page is scraped only
+ * once. The following are normalized:
+ * <ul>
+ *     <li>The case of the scheme and the host, and a trailing dot of the host</li>
+ *     <li>The default port of the scheme, ex: <code>:443</code> of https</li>
+ *     <li>The dot segments of the path and an empty path, ex: <code>/a/../b</code> is <code>/b</code></li>
+ *     <li>The case of the percent encoded octets, ex: <code>%2f</code> is <code>%2F</code></li>
+ *     <li>The order of the query parameters, sorted by name. The values of a repeated parameter keep their order.</li>
+ *     <li>The fragment, which is dropped as it is never sent to the server</li>
+ * </ul>
+ * The urls which could not be parsed are returned as is, to fail later on with the reason.
+ */
+public final class URLCanonicalizer {
+
+    private static final Pattern PERCENT_ENCODED = Pattern.compile("%[0-9a-fA-F]{2}");
+
+    private URLCanonicalizer() {
+    }
+
+    /**
+     * @param url the url
+     * @return the canonical form of the url, or the url itself if it could not be parsed
+     */
+    public static String canonicalize(String url) {
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException ex) {
+            return url;
+        }
+        if (uri.getScheme() == null || uri.isOpaque() || uri.getHost() == null) {
+            return url;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+
+        StringBuilder canonical = new StringBuilder(url.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        canonical.append(host);
+        if (uri.getPort() != -1 && uri.getPort() != defaultPort(scheme)) {
+            canonical.append(':').append(uri.getPort());
+        }
+
+        String path = uri.normalize().getRawPath();
+        canonical.append(path == null || path.isEmpty() ? "/" : upperCasePercentEncoding(path));
+
+        String query = sortedQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            canonical.append('?').append(upperCasePercentEncoding(query));
+        }
+        return canonical.toString();
+    }
+
+    private static int defaultPort(String scheme) {
+        switch (scheme) {
+            case "http":
+                return 80;
+            case "https":
+                return 443;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Sorts the parameters of the query by name, dropping the empty ones. The sort is stable, so the values of a
+     * repeated parameter keep their order.
+     */
+    private static String sortedQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : query.split("&")) {
+            if (!parameter.isEmpty()) {
+                parameters.add(parameter);
+            }
+        }
+        parameters.sort(Comparator.comparing(URLCanonicalizer::nameOf));
+        return String.join("&", parameters);
+    }
+
+    private static String nameOf(String parameter) {
+        int separator = parameter.indexOf('=');
+        return separator < 0 ? parameter : parameter.substring(0, separator);
+    }
+
+    private static String upperCasePercentEncoding(String text) {
+        if (text.indexOf('%') < 0) {
+            return text;
+        }
+        Matcher matcher = PERCENT_ENCODED.matcher(text);
+        StringBuffer upperCased = new StringBuffer(text.length());
+        while (matcher.find()) {
+            matcher.appendReplacement(upperCased, matcher.group().toUpperCase(Locale.ROOT));
+        }
+        return matcher.appendTail(upperCased).toString();
+    }
+}
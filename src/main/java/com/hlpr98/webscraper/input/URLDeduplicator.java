@@ -0,0 +1,93 @@
+package com.hlpr98.webscraper.input;
+
+import com.hlpr98.webscraper.util.ScalableBloomFilter;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tells if a url is seen for the first time in a run, so that each page is scraped only once. The urls are expected to
+ * be canonical (see {@link URLCanonicalizer}).
+ * <p>
+ * Note: the deduplicators are not thread safe, they are meant to be used by the single reader of a {@link URLSource}.
+ */
+@FunctionalInterface
+public interface URLDeduplicator {
+
+    /**
+     * The default false positive rate of the Bloom filters, i.e. the share of the unique urls wrongly dropped
+     */
+    double DEFAULT_FALSE_POSITIVE_RATE = 1e-6;
+
+    /**
+     * The default number of urls remembered exactly by {@link #adaptive()} before switching to a Bloom filter
+     */
+    int DEFAULT_EXACT_LIMIT = 100_000;
+
+    /**
+     * Marks the url as seen
+     *
+     * @param url the canonical url
+     * @return true if the url was not seen before
+     */
+    boolean add(String url);
+
+    /**
+     * Keeps every url seen, hence never drops a unique url but consumes memory in proportion to the urls
+     */
+    static URLDeduplicator exact() {
+        Set<String> seen = new HashSet<>();
+        return seen::add;
+    }
+
+    /**
+     * Keeps the urls seen in a {@link ScalableBloomFilter}, hence consumes a few bytes per url but drops a unique url
+     * with the given probability
+     *
+     * @param initialCapacity   the number of urls the filter is sized for at first, it grows beyond as needed
+     * @param falsePositiveRate the probability of a unique url being dropped
+     */
+    static URLDeduplicator bloom(long initialCapacity, double falsePositiveRate) {
+        ScalableBloomFilter filter = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+        return filter::put;
+    }
+
+    /**
+     * @see #adaptive(int, double)
+     */
+    static URLDeduplicator adaptive() {
+        return adaptive(DEFAULT_EXACT_LIMIT, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Keeps the urls seen exactly while they are few, and moves them to a {@link ScalableBloomFilter} once they are
+     * more than the limit. So the small inputs never lose a url, and the memory consumed by the large ones stays
+     * bounded.
+     *
+     * @param exactLimit        the number of urls kept exactly
+     * @param falsePositiveRate the probability of a unique url being dropped, after the switch to the Bloom filter
+     */
+    static URLDeduplicator adaptive(int exactLimit, double falsePositiveRate) {
+        return new URLDeduplicator() {
+            private Set<String> exact = new HashSet<>();
+            private ScalableBloomFilter filter;
+
+            @Override
+            public boolean add(String url) {
+                if (this.filter != null) {
+                    return this.filter.put(url);
+                }
+                if (!this.exact.add(url)) {
+                    return false;
+                }
+
+                if (this.exact.size() > exactLimit) {
+                    this.filter = new ScalableBloomFilter(2L * exactLimit, falsePositiveRate);
+                    this.exact.forEach(this.filter::put);
+                    this.exact = null;
+                }
+                return true;
+            }
+        };
+    }
+}
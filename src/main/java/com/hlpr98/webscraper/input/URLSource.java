@@ -0,0 +1,202 @@
+package com.hlpr98.webscraper.input;
+
+import com.hlpr98.webscraper.WebScraper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A lazily read source of urls. Lines are read only when they are asked for, so the memory consumed is independent of
+ * the size of the input.
+ * <p>
+ * Blank lines are skipped and every url is trimmed. A source could also drop the duplicate urls, see
+ * {@link #deduplicated(URLDeduplicator)}, and the ones already done, see {@link #skipping(Predicate)}.
+ */
+@Slf4j
+public class URLSource implements Iterator<String>, Closeable {
+
+    /**
+     * The filepath which denotes that the urls should be read from the standard input
+     */
+    public static final String STDIN = "-";
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private final Iterator<String> lines;
+    private final Closeable closeable;
+    private final URLDeduplicator deduplicator;
+    private final Predicate<String> skip;
+    private String next;
+    private long duplicates;
+    private long skipped;
+
+    private URLSource(Iterator<String> lines, Closeable closeable) {
+        this(lines, closeable, null, null);
+    }
+
+    private URLSource(Iterator<String> lines, Closeable closeable, URLDeduplicator deduplicator,
+                      Predicate<String> skip) {
+        this.lines = lines;
+        this.closeable = closeable;
+        this.deduplicator = deduplicator;
+        this.skip = skip;
+    }
+
+    /**
+     * Creates a source over an in-memory list of urls
+     *
+     * @param urls the urls
+     * @return the source
+     */
+    public static URLSource fromList(List<String> urls) {
+        return new URLSource(urls.iterator(), () -> {
+        });
+    }
+
+    /**
+     * Creates a source over the urls of an iterator, which could block until the next url is available, ex: the one of
+     * {@link RecrawlScheduler#source()}
+     *
+     * @param urls      the urls
+     * @param closeable closed when the source is closed
+     * @return the source
+     */
+    public static URLSource fromIterator(Iterator<String> urls, Closeable closeable) {
+        return new URLSource(urls, closeable);
+    }
+
+    /**
+     * Creates a source which reads the urls from the given filepath. The filepath is resolved in the following order:
+     * <ul>
+     *     <li>{@link #STDIN} reads from the standard input</li>
+     *     <li>A path on the disk</li>
+     *     <li>A resource on the classpath</li>
+     * </ul>
+     * Gzip compressed inputs are detected and decompressed on the fly.
+     *
+     * @param filepath the filepath
+     * @return the source
+     * @throws IOException if the file could not be opened
+     */
+    public static URLSource fromPath(String filepath) throws IOException {
+        if (STDIN.equals(filepath)) {
+            return fromStream(System.in);
+        }
+
+        Path path = Path.of(filepath);
+        if (Files.isRegularFile(path)) {
+            return fromStream(Files.newInputStream(path));
+        }
+
+        InputStream resource = WebScraper.class.getResourceAsStream(filepath);
+        if (resource == null) {
+            throw new NoSuchFileException(filepath);
+        }
+        return fromStream(resource);
+    }
+
+    /**
+     * Creates a source which reads the urls line by line from the given stream. The stream is closed when the source is
+     * closed.
+     *
+     * @param in the input stream, plain or gzip compressed
+     * @return the source
+     * @throws IOException if the stream could not be read
+     */
+    public static URLSource fromStream(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        InputStream decoded = isGzipped(buffered) ? new GZIPInputStream(buffered) : buffered;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(decoded, StandardCharsets.UTF_8));
+
+        return new URLSource(reader.lines().iterator(), reader);
+    }
+
+    private static boolean isGzipped(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+        return magic == GZIP_MAGIC;
+    }
+
+    /**
+     * Creates a source over the urls of this one, which returns the canonical form of each url (see
+     * {@link URLCanonicalizer}) and skips the ones seen before as per the deduplicator. It should be created before
+     * reading from this one, and closing either of the sources closes the underlying input.
+     *
+     * @param deduplicator the deduplicator of the canonical urls
+     * @return the source
+     */
+    public URLSource deduplicated(URLDeduplicator deduplicator) {
+        return new URLSource(this.lines, this.closeable, deduplicator, this.skip);
+    }
+
+    /**
+     * Creates a source over the urls of this one, which skips the urls matching the predicate, ex: the ones done by a
+     * previous run. The predicate is tested with the canonical form of the url if the source is deduplicated. It should
+     * be created before reading from this one, and closing either of the sources closes the underlying input.
+     *
+     * @param skip the predicate of the urls to skip
+     * @return the source
+     */
+    public URLSource skipping(Predicate<String> skip) {
+        return new URLSource(this.lines, this.closeable, this.deduplicator, skip);
+    }
+
+    /**
+     * @return the number of duplicate urls skipped so far
+     */
+    public long getDuplicates() {
+        return this.duplicates;
+    }
+
+    /**
+     * @return the number of urls skipped so far as per {@link #skipping(Predicate)}
+     */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (this.next == null && this.lines.hasNext()) {
+            String line = this.lines.next().trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            String url = this.deduplicator != null ? URLCanonicalizer.canonicalize(line) : line;
+            if (this.skip != null && this.skip.test(url)) {
+                this.skipped++;
+            } else if (this.deduplicator == null || this.deduplicator.add(url)) {
+                this.next = url;
+            } else {
+                this.duplicates++;
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String url = this.next;
+        this.next = null;
+        return url;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closeable.close();
+    }
+}
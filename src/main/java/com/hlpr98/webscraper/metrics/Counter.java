@@ -0,0 +1,24 @@
+package com.hlpr98.webscraper.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count. It is backed by a {@link LongAdder}, so that the threads incrementing it
+ * concurrently don't contend on a single memory location.
+ */
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        this.count.increment();
+    }
+
+    public void add(long amount) {
+        this.count.add(amount);
+    }
+
+    public long get() {
+        return this.count.sum();
+    }
+}
@@ -0,0 +1,68 @@
+package com.hlpr98.webscraper.metrics;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Counts the bytes of the response bodies as they are received, before they are handed over to the wrapped handler.
+ *
+ * @param <T> the type of the body
+ */
+public class CountingBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+
+    private final HttpResponse.BodyHandler<T> handler;
+    private final Counter bytes;
+
+    public CountingBodyHandler(HttpResponse.BodyHandler<T> handler, Counter bytes) {
+        this.handler = handler;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+        return new CountingBodySubscriber<>(this.handler.apply(responseInfo), this.bytes);
+    }
+
+    private static class CountingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> subscriber;
+        private final Counter bytes;
+
+        CountingBodySubscriber(HttpResponse.BodySubscriber<T> subscriber, Counter bytes) {
+            this.subscriber = subscriber;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return this.subscriber.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            long received = 0;
+            for (ByteBuffer buffer : buffers) {
+                received += buffer.remaining();
+            }
+            this.bytes.add(received);
+            this.subscriber.onNext(buffers);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.hlpr98.webscraper.metrics;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.util.CircuitBreaker;
+import com.hlpr98.webscraper.util.RetryingHTTPClient;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The metrics of the scraping of a domain, labelled with the domain (and the parser for the parsing metrics).
+ * <p>
+ * The metrics are looked up once per domain, and once per parser for the parsing metrics, so that recording them is
+ * only a few lock-free updates.
+ */
+public class DomainMetrics implements RetryingHTTPClient.Listener {
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final MetricsRegistry registry;
+    private final String domain;
+
+    private final Counter attempts;
+    private final Counter[] responses;
+    private final Counter exceptions;
+    private final Counter retries;
+    private final Counter hedges;
+    private final Histogram attemptDuration;
+    private final Counter receivedBytes;
+    private final Counter decodedBytes;
+    private final Counter scrapedURLs;
+    private final Counter failedURLs;
+    private final Counter timedOutURLs;
+    private final Histogram urlDuration;
+    private final Map<Class<?>, ParserMetrics> parserMetrics;
+
+    public DomainMetrics(MetricsRegistry registry, String domain) {
+        this.registry = registry;
+        this.domain = domain;
+
+        this.attempts = registry.counter("webscraper_http_attempts_total", "domain", domain);
+        this.responses = new Counter[STATUS_CLASSES.length];
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            this.responses[i] = registry.counter("webscraper_http_responses_total", "domain", domain, "status", STATUS_CLASSES[i]);
+        }
+        this.exceptions = registry.counter("webscraper_http_exceptions_total", "domain", domain);
+        this.retries = registry.counter("webscraper_http_retries_total", "domain", domain);
+        this.hedges = registry.counter("webscraper_http_hedges_total", "domain", domain);
+        this.attemptDuration = registry.timer("webscraper_http_attempt_duration_seconds", "domain", domain);
+        this.receivedBytes = registry.counter("webscraper_http_received_bytes_total", "domain", domain);
+        this.decodedBytes = registry.counter("webscraper_http_decoded_bytes_total", "domain", domain);
+        this.scrapedURLs = registry.counter("webscraper_urls_total", "domain", domain, "outcome", "success");
+        this.failedURLs = registry.counter("webscraper_urls_total", "domain", domain, "outcome", "failure");
+        this.timedOutURLs = registry.counter("webscraper_urls_total", "domain", domain, "outcome", "timeout");
+        this.urlDuration = registry.timer("webscraper_url_duration_seconds", "domain", domain);
+        this.parserMetrics = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The bytes of the response bodies received from the domain, including the ones of the failed attempts
+     */
+    public Counter receivedBytes() {
+        return this.receivedBytes;
+    }
+
+    /**
+     * The bytes of the response bodies read after decoding their Content-Encoding. Compared to
+     * {@link #receivedBytes()}, it is the ratio of compression of the bodies from the domain.
+     */
+    public Counter decodedBytes() {
+        return this.decodedBytes;
+    }
+
+    /**
+     * Registers the gauges of the worker of the domain
+     *
+     * @param inFlight the number of requests in flight
+     * @param queued   the number of urls waiting to be admitted
+     */
+    public void registerWorkerGauges(LongSupplier inFlight, LongSupplier queued) {
+        this.registry.gauge("webscraper_worker_in_flight_requests", inFlight, "domain", this.domain);
+        this.registry.gauge("webscraper_worker_queued_urls", queued, "domain", this.domain);
+    }
+
+    /**
+     * Registers the gauge of the adaptive concurrency limit of the worker of the domain
+     *
+     * @param limit the current maximum number of requests in flight
+     */
+    public void registerConcurrencyLimitGauge(LongSupplier limit) {
+        this.registry.gauge("webscraper_worker_concurrency_limit", limit, "domain", this.domain);
+    }
+
+    /**
+     * Registers the gauge of the state of the circuit breaker of the domain: 0 when closed, 1 when open and 2 when
+     * half-open
+     */
+    public void registerCircuitBreakerGauge(CircuitBreaker circuitBreaker) {
+        this.registry.gauge("webscraper_circuit_breaker_state", () -> circuitBreaker.getState().ordinal(),
+                "domain", this.domain);
+    }
+
+    @Override
+    public void onAttempt(HttpRequest request, int attempt) {
+        this.attempts.increment();
+    }
+
+    @Override
+    public void onResponse(HttpRequest request, HttpResponse<?> response, long durationNanos) {
+        this.attemptDuration.record(durationNanos);
+        int statusClass = response.statusCode() / 100 - 1;
+        if (statusClass >= 0 && statusClass < this.responses.length) {
+            this.responses[statusClass].increment();
+        }
+    }
+
+    @Override
+    public void onException(HttpRequest request, Throwable exception, long durationNanos) {
+        this.attemptDuration.record(durationNanos);
+        this.exceptions.increment();
+    }
+
+    @Override
+    public void onRetry(HttpRequest request, int nextAttempt, Duration delay) {
+        this.retries.increment();
+    }
+
+    @Override
+    public void onHedge(HttpRequest request, int attempt) {
+        this.hedges.increment();
+    }
+
+    /**
+     * @param parserClass   the class of the parser
+     * @param durationNanos the time spent in parsing
+     * @param failed        if the parsing failed
+     */
+    public void onParsed(Class<?> parserClass, long durationNanos, boolean failed) {
+        ParserMetrics metrics = this.parserMetrics.computeIfAbsent(parserClass, ParserMetrics::new);
+        metrics.duration.record(durationNanos);
+        if (failed) {
+            metrics.failures.increment();
+        }
+    }
+
+    /**
+     * @param durationNanos the time spent in scraping the url, from sending the first request to parsing the response
+     * @param result        the result of the scraping, whose outcome is a success, a timeout or another failure
+     */
+    public void onScraped(long durationNanos, WebScrapingResult result) {
+        this.urlDuration.record(durationNanos);
+        if (result.getException() == null) {
+            this.scrapedURLs.increment();
+        } else {
+            (result.isTimedOut() ? this.timedOutURLs : this.failedURLs).increment();
+        }
+    }
+
+    private class ParserMetrics {
+        private final Histogram duration;
+        private final Counter failures;
+
+        ParserMetrics(Class<?> parserClass) {
+            String parser = parserClass.getSimpleName();
+            this.duration = registry.timer("webscraper_parse_duration_seconds", "domain", domain, "parser", parser);
+            this.failures = registry.counter("webscraper_parse_failures_total", "domain", domain, "parser", parser);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.hlpr98.webscraper.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value which goes up and down, ex: the number of requests in flight. It is read from its source only when exported.
+ */
+public class Gauge {
+
+    private final LongSupplier value;
+
+    public Gauge(LongSupplier value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return this.value.getAsLong();
+    }
+}
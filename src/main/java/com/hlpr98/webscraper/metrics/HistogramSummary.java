@@ -0,0 +1,38 @@
+package com.hlpr98.webscraper.metrics;
+
+import lombok.Getter;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The summary of a {@link Histogram}, in the exported unit of the histogram
+ */
+@Getter
+public class HistogramSummary {
+    private final long count;
+    private final double sum;
+    private final double max;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+    private final double p999;
+
+    @ConstructorProperties({"count", "sum", "max", "p50", "p90", "p99", "p999"})
+    public HistogramSummary(long count, double sum, double max, double p50, double p90, double p99, double p999) {
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+    }
+
+    public static HistogramSummary of(Histogram histogram) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        double units = histogram.getUnitsPerExportedUnit();
+        return new HistogramSummary(snapshot.getCount(), snapshot.getSum() / units, snapshot.getMax() / units,
+                snapshot.valueAt(0.5) / units, snapshot.valueAt(0.9) / units,
+                snapshot.valueAt(0.99) / units, snapshot.valueAt(0.999) / units);
+    }
+}
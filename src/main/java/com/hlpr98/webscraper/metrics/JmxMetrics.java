@@ -0,0 +1,62 @@
+package com.hlpr98.webscraper.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exposes a {@link MetricsRegistry} over JMX as <code>com.hlpr98.webscraper:type=Metrics</code>
+ */
+public class JmxMetrics implements MetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.hlpr98.webscraper:type=Metrics";
+
+    private final MetricsRegistry registry;
+
+    public JmxMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Registers the registry with the platform MBean server, replacing the one registered before if any
+     */
+    public static ObjectName register(MetricsRegistry registry) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(new JmxMetrics(registry), name);
+        return name;
+    }
+
+    @Override
+    public Map<String, Long> getValues() {
+        Map<String, Long> values = new TreeMap<>();
+        this.registry.getMetrics().forEach((id, metric) -> {
+            if (metric instanceof Counter) {
+                values.put(id.toString(), ((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                values.put(id.toString(), ((Gauge) metric).get());
+            }
+        });
+        return values;
+    }
+
+    @Override
+    public Map<String, HistogramSummary> getHistograms() {
+        Map<String, HistogramSummary> histograms = new TreeMap<>();
+        this.registry.getMetrics().forEach((id, metric) -> {
+            if (metric instanceof Histogram) {
+                histograms.put(id.toString(), HistogramSummary.of((Histogram) metric));
+            }
+        });
+        return histograms;
+    }
+
+    @Override
+    public String getPrometheusText() {
+        return PrometheusExporter.toText(this.registry);
+    }
+}
@@ -0,0 +1,84 @@
+package com.hlpr98.webscraper.metrics;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The name of a metric along with its labels, ex: <code>webscraper_http_retries_total{domain="www.example.com"}</code>
+ */
+@Getter
+@EqualsAndHashCode
+public class MetricId implements Comparable<MetricId> {
+
+    private final String name;
+
+    /**
+     * The label names and values, alternately
+     */
+    private final List<String> labels;
+
+    /**
+     * @param name   the name of the metric
+     * @param labels the label names and values, alternately, ex: <code>"domain", "www.example.com"</code>
+     */
+    public MetricId(String name, String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels should be pairs of name and value: " + List.of(labels));
+        }
+        this.name = name;
+        this.labels = List.of(labels);
+    }
+
+    /**
+     * @param extraLabels the label names and values, alternately, to be added
+     * @return the labels in the Prometheus text format, ex: <code>{domain="www.example.com"}</code>, or empty if there
+     * are none
+     */
+    public String labelsText(String... extraLabels) {
+        if (this.labels.isEmpty() && extraLabels.length == 0) {
+            return "";
+        }
+
+        StringBuilder text = new StringBuilder("{");
+        appendLabels(text, this.labels.toArray(new String[0]));
+        if (!this.labels.isEmpty() && extraLabels.length > 0) {
+            text.append(',');
+        }
+        appendLabels(text, extraLabels);
+        return text.append('}').toString();
+    }
+
+    private static void appendLabels(StringBuilder text, String[] labels) {
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    text.append('\\').append(c);
+                } else if (c == '\n') {
+                    text.append("\\n");
+                } else {
+                    text.append(c);
+                }
+            }
+            text.append('"');
+        }
+    }
+
+    @Override
+    public int compareTo(MetricId other) {
+        int byName = this.name.compareTo(other.name);
+        return byName != 0 ? byName : labelsText().compareTo(other.labelsText());
+    }
+
+    @Override
+    public String toString() {
+        return this.name + labelsText();
+    }
+}
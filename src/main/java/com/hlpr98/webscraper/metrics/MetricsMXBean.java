@@ -0,0 +1,22 @@
+package com.hlpr98.webscraper.metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics of a {@link MetricsRegistry} as seen over JMX, ex: in JConsole or VisualVM. The series are keyed by their
+ * {@link MetricId#toString()}.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return the counters and the gauges
+     */
+    Map<String, Long> getValues();
+
+    Map<String, HistogramSummary> getHistograms();
+
+    /**
+     * @return all the metrics in the Prometheus text format
+     */
+    String getPrometheusText();
+}
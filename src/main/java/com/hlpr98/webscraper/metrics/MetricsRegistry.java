@@ -0,0 +1,66 @@
+package com.hlpr98.webscraper.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds the metrics of the application, keyed by their {@link MetricId}. A metric is created on its first lookup and
+ * then shared by all the lookups with the same name and labels.
+ * <p>
+ * Note: a lookup builds the id of the metric, so the hot paths should look up their metrics once and hold on to them.
+ */
+public class MetricsRegistry {
+
+    private final Map<MetricId, Object> metrics = new ConcurrentHashMap<>();
+
+    public Counter counter(String name, String... labels) {
+        return get(new MetricId(name, labels), Counter.class, Counter::new);
+    }
+
+    public Histogram histogram(String name, String... labels) {
+        return get(new MetricId(name, labels), Histogram.class, Histogram::new);
+    }
+
+    /**
+     * A histogram of durations recorded in nanoseconds and exported in seconds
+     */
+    public Histogram timer(String name, String... labels) {
+        return get(new MetricId(name, labels), Histogram.class, () -> new Histogram(1e9));
+    }
+
+    /**
+     * Registers a gauge, replacing the one registered with the same name and labels if any
+     */
+    public void gauge(String name, LongSupplier value, String... labels) {
+        MetricId id = new MetricId(name, labels);
+        this.metrics.compute(id, (key, existing) -> {
+            if (existing != null && !(existing instanceof Gauge)) {
+                throw alreadyRegistered(id, existing);
+            }
+            return new Gauge(value);
+        });
+    }
+
+    /**
+     * @return the metrics sorted by their id, i.e. the series of a metric are next to each other
+     */
+    public SortedMap<MetricId, Object> getMetrics() {
+        return new TreeMap<>(this.metrics);
+    }
+
+    private <M> M get(MetricId id, Class<M> type, Supplier<M> factory) {
+        Object metric = this.metrics.computeIfAbsent(id, key -> factory.get());
+        if (!type.isInstance(metric)) {
+            throw alreadyRegistered(id, metric);
+        }
+        return type.cast(metric);
+    }
+
+    private static IllegalArgumentException alreadyRegistered(MetricId id, Object metric) {
+        return new IllegalArgumentException("Metric " + id + " is already registered as " + metric.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,151 @@
+package com.hlpr98.webscraper.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the metrics of a {@link MetricsRegistry} in the
+ * <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus text format</a>, either as a file
+ * rewritten periodically (to be picked up by the node exporter's textfile collector, or just read), or over HTTP.
+ * <p>
+ * The counters and gauges are exported as such, and the histograms as summaries with the quantiles of
+ * {@link #QUANTILES}.
+ */
+@Slf4j
+public final class PrometheusExporter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private PrometheusExporter() {
+    }
+
+    public static String toText(MetricsRegistry registry) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(registry, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by a StringWriter
+        }
+        return writer.toString();
+    }
+
+    public static void write(MetricsRegistry registry, Writer writer) throws IOException {
+        String previousName = null;
+        for (Map.Entry<MetricId, Object> entry : registry.getMetrics().entrySet()) {
+            MetricId id = entry.getKey();
+            Object metric = entry.getValue();
+
+            if (!id.getName().equals(previousName)) {
+                writer.write("# TYPE " + id.getName() + " " + typeOf(metric) + "\n");
+                previousName = id.getName();
+            }
+
+            if (metric instanceof Counter) {
+                writeSample(writer, id.getName(), id.labelsText(), ((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                writeSample(writer, id.getName(), id.labelsText(), ((Gauge) metric).get());
+            } else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                Histogram.Snapshot snapshot = histogram.snapshot();
+                for (double quantile : QUANTILES) {
+                    writeSample(writer, id.getName(), id.labelsText("quantile", String.valueOf(quantile)),
+                            snapshot.valueAt(quantile) / histogram.getUnitsPerExportedUnit());
+                }
+                writeSample(writer, id.getName() + "_sum", id.labelsText(), snapshot.getSum() / histogram.getUnitsPerExportedUnit());
+                writeSample(writer, id.getName() + "_count", id.labelsText(), snapshot.getCount());
+            }
+        }
+    }
+
+    /**
+     * Writes the metrics to the file now and then at each interval, until closed. The file is replaced atomically, so
+     * that a reader never sees it half written. It is written one last time when closed.
+     *
+     * @return the handle to stop the export
+     */
+    public static Closeable toFile(MetricsRegistry registry, Path path, Duration interval) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "prometheus-file-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                writeFile(registry, path);
+            } catch (IOException e) {
+                log.warn("Exception while writing metrics to {}", path, e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+
+        return () -> {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(interval.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeFile(registry, path);
+        };
+    }
+
+    /**
+     * Serves the metrics at <code>/metrics</code>
+     *
+     * @return the handle to stop the server
+     */
+    public static Closeable serve(MetricsRegistry registry, InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toText(registry).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        log.info("Serving metrics at http://{}:{}/metrics", address.getHostString(), server.getAddress().getPort());
+        return () -> server.stop(0);
+    }
+
+    private static void writeFile(MetricsRegistry registry, Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            write(registry, writer);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String typeOf(Object metric) {
+        if (metric instanceof Counter) {
+            return "counter";
+        }
+        return metric instanceof Gauge ? "gauge" : "summary";
+    }
+
+    private static void writeSample(Writer writer, String name, String labels, double value) throws IOException {
+        writer.write(name);
+        writer.write(labels);
+        writer.write(' ');
+        writer.write(value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.valueOf(value));
+        writer.write('\n');
+    }
+}
@@ -2,6 +2,8 @@ package com.hlpr98.webscraper.model.domain;
 
 import lombok.*;
 
+import java.net.http.HttpTimeoutException;
+
 @Getter
 @Setter
 @NoArgsConstructor
@@ -13,4 +15,16 @@ public class WebScrapingResult {
 
     private Object parsedEntity;
     private Throwable exception;
+
+    /**
+     * @return <b>TRUE</b> if the scraping failed as it timed out, i.e. an attempt or the deadline of the url
+     */
+    public boolean isTimedOut() {
+        for (Throwable cause = this.exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -2,10 +2,23 @@ package com.hlpr98.webscraper.model.net;
 
 import lombok.*;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
 
+/**
+ * The response of a url. The body is held either as a {@link String} ({@link #response}), or as a stream of bytes
+ * ({@link #body}) which is read only once, directly by the parser.
+ */
 @Getter
 @Setter
 @Builder
@@ -14,9 +27,22 @@ import java.net.http.HttpResponse;
 @AllArgsConstructor
 public class Response {
 
+    /**
+     * The number of leading bytes looked at to tell if a body is blank
+     */
+    private static final int BLANK_CHECK_LIMIT = 8192;
+
     private URL url;
     private String response;
 
+    @EqualsAndHashCode.Exclude
+    private InputStream body;
+
+    /**
+     * The charset declared by the Content-Type of the response, or <b>NULL</b> if not declared
+     */
+    private Charset charset;
+
     public static Response fromHTTPResponse(HttpResponse<String> response) throws MalformedURLException {
         if (response.body().isBlank()) {
             throw new IllegalArgumentException("Response body is empty");
@@ -26,4 +52,80 @@ public class Response {
                 .response(response.body())
                 .build();
     }
+
+    /**
+     * Creates a response which streams the body to the parser, without decoding it into a {@link String}.
+     * <p>
+     * Note: the body stream is closed if the body is blank, else it's the responsibility of the caller.
+     *
+     * @param response the HTTP response with its body as a stream of bytes
+     * @return the response
+     * @throws IOException if the body could not be read
+     */
+    public static Response fromHTTPStreamResponse(HttpResponse<InputStream> response) throws IOException {
+        InputStream body = new BufferedInputStream(response.body(), BLANK_CHECK_LIMIT);
+        if (isBlank(body)) {
+            body.close();
+            throw new IllegalArgumentException("Response body is empty");
+        }
+
+        return Response.builder()
+                .url(response.uri().toURL())
+                .body(body)
+                .charset(response.headers().firstValue("Content-Type").map(Response::charsetOf).orElse(null))
+                .build();
+    }
+
+    /**
+     * Returns the body as a stream of bytes, which is either the streamed body or the encoded {@link #response}
+     *
+     * @return the body stream
+     */
+    public InputStream bodyStream() {
+        if (this.body != null) {
+            return this.body;
+        }
+        Charset encoding = this.charset != null ? this.charset : StandardCharsets.UTF_8;
+        return new ByteArrayInputStream(this.response.getBytes(encoding));
+    }
+
+    /**
+     * Tells if the leading bytes of the body are all whitespaces, without consuming them
+     */
+    private static boolean isBlank(InputStream body) throws IOException {
+        body.mark(BLANK_CHECK_LIMIT);
+        try {
+            for (int i = 0; i < BLANK_CHECK_LIMIT; i++) {
+                int b = body.read();
+                if (b == -1) {
+                    return true;
+                }
+                if (!Character.isWhitespace(b)) {
+                    return false;
+                }
+            }
+            return false;
+        } finally {
+            body.reset();
+        }
+    }
+
+    /**
+     * @param contentType the value of Content-Type header, ex: <code>text/html; charset=UTF-8</code>
+     * @return the charset declared, or <b>NULL</b> if not declared or not supported
+     */
+    static Charset charsetOf(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            String[] nameAndValue = parameter.trim().split("=", 2);
+            if (nameAndValue.length == 2 && nameAndValue[0].trim().toLowerCase(Locale.ROOT).equals("charset")) {
+                String name = nameAndValue[1].trim().replace("\"", "");
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
 }
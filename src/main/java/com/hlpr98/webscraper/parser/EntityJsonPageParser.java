@@ -1,22 +1,24 @@
 package com.hlpr98.webscraper.parser;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.hlpr98.webscraper.model.entities.EntityWithTitle;
 import com.hlpr98.webscraper.model.net.Response;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * The parser which parses response and returns {@link EntityWithTitle}
+ * The parser which parses response and returns {@link EntityWithTitle}. The body is bound directly to the entity, and
+ * its id is taken from the url.
  */
 @Slf4j
 public class EntityJsonPageParser extends JsonResponseParser<EntityWithTitle> {
 
     // TODO: improve the regex to handle uuids only
     private static final String PATH_MATCHER_PATTERN = ".*/entity-(?<slug>[^-\\.]+)-(?<uuid>[^\\.]+)\\.json$";
+    private static final Set<String> PATH_LITERALS = Set.of("/entity-", ".json");
     private final Pattern urlPathPattern;
 
     public EntityJsonPageParser() {
@@ -30,8 +32,20 @@ public class EntityJsonPageParser extends JsonResponseParser<EntityWithTitle> {
     }
 
     @Override
-    protected EntityWithTitle convertValue(Response rawResponse, JsonNode parsedResponse) throws IOException {
-        EntityWithTitle instance = this.objectMapper.treeToValue(parsedResponse, EntityWithTitle.class);
+    public Set<String> pathLiterals() {
+        return PATH_LITERALS;
+    }
+
+    @Override
+    protected boolean bindsDirectly() {
+        return true;
+    }
+
+    @Override
+    protected EntityWithTitle postProcess(Response rawResponse, EntityWithTitle instance) throws IOException {
+        if (instance == null) {
+            return null;
+        }
 
         Matcher matcher = this.urlPathPattern.matcher(rawResponse.getUrl().getPath());
         matcher.matches(); // would always match
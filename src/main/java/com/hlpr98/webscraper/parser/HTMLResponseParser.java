@@ -5,36 +5,144 @@ import com.hlpr98.webscraper.model.net.ResponseType;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.jsoup.parser.ParseSettings;
 import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Handles parsing the pages which return HTML type as the response
  * Each specific implementation of this class would handle specific response signatures (i.e. urls)
  * for specific return entity types.
+ * <p>
+ * A parser which only extracts a few elements of the page declares them with {@link #targetSelectors()}. The page is
+ * then parsed as a stream and the parsing stops as soon as an element matching each of the selectors is parsed, see
+ * {@link #parse(Response)}.
  *
  * @param <T> the parsed entity type
  */
 @Slf4j
 public abstract class HTMLResponseParser<T> extends ResponseParser<T> {
 
+    /**
+     * The number of leading bytes of a streamed body looked at for the charset declared in the page, as per the HTML
+     * specification
+     */
+    private static final int CHARSET_SNIFF_LIMIT = 1024;
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
     protected final Parser parser;
+    private final List<Evaluator> targets;
 
     public HTMLResponseParser(Class<T> tClass) {
         super(tClass);
         this.parser = Parser.htmlParser();
         this.configureParser();
+        this.targets = this.targetSelectors().stream()
+                .map(QueryParser::parse)
+                .collect(Collectors.toList());
     }
 
+    /**
+     * Parses the response. A streamed body is decoded by jsoup itself, with the charset of the response if declared,
+     * else with the one declared in the page (or UTF-8).
+     * <p>
+     * If the parser has {@link #targetSelectors()}, the page is parsed only up to the end of the last of the target
+     * elements, and a streamed body is closed without reading the rest of it, i.e. the rest of the page is not decoded
+     * nor parsed. The document converted then holds the page up to there. Note: the workers receive the bodies whole
+     * before parsing them, so this saves the decoding and the parsing, not the transfer.
+     * <p>
+     * Note: a jsoup {@link Parser} keeps the state of the document being parsed, so each parse uses its own copy of the
+     * configured {@link #parser}.
+     */
     @Override
     public T parse(Response response) throws IOException {
-        Document document = Jsoup.parse(response.getResponse());
+        Document document;
+        if (!this.targets.isEmpty()) {
+            document = parseUntilTargets(response);
+        } else if (response.getBody() == null) {
+            document = Jsoup.parse(response.getResponse());
+        } else {
+            String charsetName = response.getCharset() != null ? response.getCharset().name() : null;
+            String baseUri = response.getUrl() != null ? response.getUrl().toString() : "";
+            document = Jsoup.parse(response.getBody(), charsetName, baseUri, this.parser.newInstance());
+        }
 
         return convertValue(response, document);
     }
 
+    /**
+     * Parses the page as a stream until an element matching each of the targets is complete, i.e. along with its
+     * content, or until the end of the page if some are missing.
+     */
+    private Document parseUntilTargets(Response response) throws IOException {
+        String baseUri = response.getUrl() != null ? response.getUrl().toString() : "";
+        Reader reader = response.getBody() == null
+                ? new StringReader(response.getResponse())
+                : new BufferedReader(new InputStreamReader(response.getBody(), charsetOf(response)));
+
+        try (StreamParser streamParser = new StreamParser(this.parser.newInstance()).parse(reader, baseUri)) {
+            boolean[] found = new boolean[this.targets.size()];
+            int remaining = found.length;
+            Iterator<Element> elements = streamParser.iterator();
+            while (remaining > 0 && elements.hasNext()) {
+                Element element = elements.next();
+                for (int i = 0; i < found.length; i++) {
+                    if (!found[i] && element.is(this.targets.get(i))) {
+                        found[i] = true;
+                        remaining--;
+                    }
+                }
+            }
+            return streamParser.stop().document();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * The charset of a streamed body: the one of the response if declared, else the one declared by a
+     * <code>&lt;meta&gt;</code> at the start of the page, else UTF-8
+     */
+    private static Charset charsetOf(Response response) throws IOException {
+        if (response.getCharset() != null) {
+            return response.getCharset();
+        }
+
+        InputStream body = response.getBody();
+        if (body.markSupported()) {
+            body.mark(CHARSET_SNIFF_LIMIT);
+            byte[] head;
+            try {
+                head = body.readNBytes(CHARSET_SNIFF_LIMIT);
+            } finally {
+                body.reset();
+            }
+            Matcher matcher = META_CHARSET.matcher(new String(head, StandardCharsets.ISO_8859_1));
+            if (matcher.find()) {
+                try {
+                    return Charset.forName(matcher.group(1));
+                } catch (IllegalArgumentException ex) {
+                    log.debug("Unsupported charset {} declared by {}", matcher.group(1), response.getUrl());
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
     @Override
     public ResponseType responseType() {
         return ResponseType.HTML;
@@ -49,6 +157,18 @@ public abstract class HTMLResponseParser<T> extends ResponseParser<T> {
      */
     protected abstract T convertValue(Response rawResponse, Document parsedResponse) throws IOException;
 
+    /**
+     * The CSS selectors of the elements the parser extracts from the page. Any parser which needs only a few elements of
+     * large pages could override this method, so that the pages are parsed only up to these elements.
+     * <p>
+     * Note: it's called from the constructor.
+     *
+     * @return the selectors, or empty if the whole page is parsed
+     */
+    protected Set<String> targetSelectors() {
+        return Set.of();
+    }
+
     /**
      * Any parser that needs to add custom configurations can override this method
      */
@@ -4,6 +4,7 @@ import com.hlpr98.webscraper.model.net.Response;
 import com.hlpr98.webscraper.model.net.ResponseType;
 
 import java.io.IOException;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 public interface IResponseParser<T> {
@@ -24,5 +25,24 @@ public interface IResponseParser<T> {
      */
     Pattern pathPattern();
 
+    /**
+     * The hosts whose urls the parser handles. It lets the parser be skipped for the urls of other hosts.
+     *
+     * @return the host names, or empty if the parser handles the urls of any host
+     */
+    default Set<String> hosts() {
+        return Set.of();
+    }
+
+    /**
+     * Literals which are present, case-insensitively, in every path matched by {@link #pathPattern()}. It lets the
+     * parser be skipped, without running the pattern, for the paths which don't contain them.
+     *
+     * @return the literals, or empty if the pattern should always be run
+     */
+    default Set<String> pathLiterals() {
+        return Set.of();
+    }
+
     ResponseType responseType();
 }
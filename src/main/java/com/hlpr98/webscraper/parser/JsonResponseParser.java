@@ -1,18 +1,31 @@
 package com.hlpr98.webscraper.parser;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import com.hlpr98.webscraper.model.net.Response;
 import com.hlpr98.webscraper.model.net.ResponseType;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Set;
 
 /**
  * Handles parsing the pages which return Json type as the response
  * Each specific implementation of this class would handle specific response signatures (i.e. urls)
  * for specific return entity types.
+ * <p>
+ * The body is either bound straight to the entity class in a single streaming pass (see {@link #bindsDirectly()}), or
+ * read into a {@link JsonNode} tree and converted by {@link #convertValue(Response, JsonNode)}, for the parsers which
+ * need to look at the tree. Either way the fields of {@link #skippedFields()} are skipped while streaming.
  *
  * @param <T> the parsed entity type
  */
@@ -21,17 +34,54 @@ public abstract class JsonResponseParser<T> extends ResponseParser<T> {
 
     protected final ObjectMapper objectMapper;
 
+    /**
+     * The reader of the entity class, created once as it caches the deserializer of the class
+     */
+    protected final ObjectReader objectReader;
+    private final TokenFilter skippingFilter;
+
     public JsonResponseParser(Class<T> tClass) {
         super(tClass);
         this.objectMapper = new ObjectMapper();
         this.configureObjectMapper();
+        this.objectReader = this.objectMapper.readerFor(tClass);
+        Set<String> skippedFields = this.skippedFields();
+        this.skippingFilter = !skippedFields.isEmpty() ? new SkippingFilter(skippedFields) : null;
     }
 
+    /**
+     * Parses the response. A streamed body is fed to the json parser as bytes, which detects the UTF encoding by itself.
+     */
     @Override
     public T parse(Response response) throws IOException {
-        JsonNode parsed = this.objectMapper.readTree(response.getResponse());
+        try (JsonParser parser = createParser(response)) {
+            if (bindsDirectly()) {
+                return postProcess(response, this.objectReader.readValue(parser));
+            }
 
-        return convertValue(response, parsed);
+            JsonNode parsed = this.objectMapper.readTree(parser);
+            return convertValue(response, parsed != null ? parsed : MissingNode.getInstance());
+        }
+    }
+
+    private JsonParser createParser(Response response) throws IOException {
+        JsonFactory factory = this.objectMapper.getFactory();
+        JsonParser parser;
+        if (response.getBody() == null) {
+            parser = factory.createParser(response.getResponse());
+        } else if (response.getCharset() == null || isUnicode(response.getCharset())) {
+            parser = factory.createParser(response.getBody());
+        } else {
+            parser = factory.createParser(new InputStreamReader(response.getBody(), response.getCharset()));
+        }
+
+        return this.skippingFilter != null
+                ? new FilteringParserDelegate(parser, this.skippingFilter, TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true)
+                : parser;
+    }
+
+    private static boolean isUnicode(Charset charset) {
+        return charset.name().startsWith("UTF-");
     }
 
     @Override
@@ -40,13 +90,49 @@ public abstract class JsonResponseParser<T> extends ResponseParser<T> {
     }
 
     /**
-     * Converts the parsed json response to the object
+     * Tells if the body is bound straight to the entity class by {@link #objectReader}, without building a tree. The
+     * entity bound is then completed by {@link #postProcess(Response, Object)}, and
+     * {@link #convertValue(Response, JsonNode)} is not called.
+     *
+     * @return <b>TRUE</b> if bound directly, <b>FALSE</b> if converted from a tree
+     */
+    protected boolean bindsDirectly() {
+        return false;
+    }
+
+    /**
+     * Completes the entity bound directly from the body, ex: with the parts of the url
+     *
+     * @param rawResponse the raw response
+     * @param entity      the entity bound from the body, or <b>NULL</b> if the body has no value
+     * @return the entity
+     */
+    protected T postProcess(Response rawResponse, T entity) throws IOException {
+        return entity;
+    }
+
+    /**
+     * Converts the parsed json response to the object. By default it binds the tree to the entity class.
      *
      * @param rawResponse    the raw response
      * @param parsedResponse the parsed json response
      * @return the entity
      */
-    protected abstract T convertValue(Response rawResponse, JsonNode parsedResponse) throws IOException;
+    protected T convertValue(Response rawResponse, JsonNode parsedResponse) throws IOException {
+        return this.objectMapper.treeToValue(parsedResponse, getEntityClass());
+    }
+
+    /**
+     * The names of the fields, at any depth, whose values are skipped by the json parser without being bound or added
+     * to the tree, ex: large fields of the page which the entity doesn't need.
+     * <p>
+     * Note: it's called from the constructor.
+     *
+     * @return the names, or empty if no field is skipped
+     */
+    protected Set<String> skippedFields() {
+        return Set.of();
+    }
 
     /**
      * Any parser that needs to add custom configurations like NamedTypes, can override this method
@@ -54,4 +140,31 @@ public abstract class JsonResponseParser<T> extends ResponseParser<T> {
     protected void configureObjectMapper() {
         this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
+
+    private static class SkippingFilter extends TokenFilter {
+
+        private final Set<String> skippedFields;
+
+        private SkippingFilter(Set<String> skippedFields) {
+            this.skippedFields = skippedFields;
+        }
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            return this.skippedFields.contains(name) ? null : this;
+        }
+
+        /**
+         * Keeps the objects left empty by the skipping, so that the other fields and the array elements stay in place
+         */
+        @Override
+        public boolean includeEmptyObject(boolean contentsFiltered) {
+            return true;
+        }
+
+        @Override
+        public boolean includeEmptyArray(boolean contentsFiltered) {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package com.hlpr98.webscraper.parser;
+
+import com.hlpr98.webscraper.metrics.Histogram;
+import com.hlpr98.webscraper.metrics.MetricsRegistry;
+
+import java.io.Closeable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of threads the responses are parsed on, apart from the threads of the HTTP client. Parsing is CPU
+ * bound, ex: building the DOM of a large page, and running it on the threads which complete the HTTP exchanges would
+ * hold up the responses of all the other requests sharing the client.
+ * <p>
+ * The tasks wait for a thread in a queue, and are never run by the thread submitting them, which is usually a thread of
+ * the HTTP client. The queue is not bounded by the executor but by its callers: each task parses the response of an
+ * url which holds its slot in the concurrency limit of its worker until it is parsed, and the parse stage of a
+ * {@link com.hlpr98.webscraper.pipeline.ScrapePipeline} submits at most <code>parseCapacity</code> tasks at a time.
+ * <p>
+ * The time spent by the tasks in the queue and in running, the number of busy threads and of queued tasks are recorded
+ * in the {@link MetricsRegistry} if provided, and are available with the getters of the executor.
+ */
+public class ParseExecutor implements Executor, Closeable {
+
+    private final ThreadPoolExecutor pool;
+    private final Histogram queueWait;
+    private final Histogram taskDuration;
+
+    /**
+     * Creates an executor with a thread per processor, whose metrics are not recorded
+     */
+    public ParseExecutor() {
+        this(Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * @param threads         the number of threads, ex: the number of processors
+     * @param metricsRegistry the registry to record the metrics of the executor in, or <b>NULL</b> if not recorded
+     */
+    public ParseExecutor(int threads, MetricsRegistry metricsRegistry) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads should be positive");
+        }
+
+        if (metricsRegistry != null) {
+            this.queueWait = metricsRegistry.timer("webscraper_parse_queue_wait_seconds");
+            this.taskDuration = metricsRegistry.timer("webscraper_parse_task_duration_seconds");
+            metricsRegistry.gauge("webscraper_parse_pool_threads", () -> threads);
+            metricsRegistry.gauge("webscraper_parse_pool_busy_threads", this::getBusyThreads);
+            metricsRegistry.gauge("webscraper_parse_queued_tasks", this::getQueuedTasks);
+        } else {
+            this.queueWait = new Histogram(1e9);
+            this.taskDuration = new Histogram(1e9);
+        }
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory());
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long queuedNanos = System.nanoTime();
+        this.pool.execute(() -> {
+            long startNanos = System.nanoTime();
+            this.queueWait.record(startNanos - queuedNanos);
+            try {
+                task.run();
+            } finally {
+                this.taskDuration.record(System.nanoTime() - startNanos);
+            }
+        });
+    }
+
+    /**
+     * The time the tasks waited for a thread, in nanoseconds
+     */
+    public Histogram getQueueWait() {
+        return this.queueWait;
+    }
+
+    /**
+     * The time the tasks took to run, in nanoseconds. Its sum over an interval, divided by the interval and the number
+     * of threads, is the utilization of the pool.
+     */
+    public Histogram getTaskDuration() {
+        return this.taskDuration;
+    }
+
+    /**
+     * @return the number of threads running a task
+     */
+    public long getBusyThreads() {
+        return this.pool.getActiveCount();
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public long getQueuedTasks() {
+        return this.pool.getQueue().size();
+    }
+
+    /**
+     * Stops taking tasks. The tasks submitted before are still run.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "parser-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -7,15 +7,19 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
 import java.io.IOException;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
- * The parser which parses html response and returns {@link EntityWithTitle}
+ * The parser which parses html response and returns {@link EntityWithTitle}. Only the title of the product is read,
+ * hence the page is parsed up to it.
  */
 @Slf4j
 public class ProductHTMLPageParser extends HTMLResponseParser<EntityWithTitle> {
 
     private static final String PATH_MATCHER_PATTERN = ".*/product-(?<slug>[^\\.]+)\\.html";
+    private static final Set<String> PATH_LITERALS = Set.of("/product-", ".html");
+    private static final String TITLE_SELECTOR = "h1.product-title";
     private final Pattern urlPathPattern;
 
     public ProductHTMLPageParser() {
@@ -28,9 +32,19 @@ public class ProductHTMLPageParser extends HTMLResponseParser<EntityWithTitle> {
         return this.urlPathPattern;
     }
 
+    @Override
+    public Set<String> pathLiterals() {
+        return PATH_LITERALS;
+    }
+
+    @Override
+    protected Set<String> targetSelectors() {
+        return Set.of(TITLE_SELECTOR);
+    }
+
     @Override
     protected EntityWithTitle convertValue(Response rawResponse, Document parsedResponse) throws IOException {
-        Element h1Element = parsedResponse.select("h1.product-title").first();
+        Element h1Element = parsedResponse.selectFirst(TITLE_SELECTOR);
         if (h1Element == null) {
             return null;
         }
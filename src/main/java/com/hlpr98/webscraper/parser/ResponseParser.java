@@ -16,6 +16,13 @@ public abstract class ResponseParser<T> implements IResponseParser<T> {
         this.tClass = tClass;
     }
 
+    /**
+     * @return the class of the parsed entity
+     */
+    protected Class<T> getEntityClass() {
+        return this.tClass;
+    }
+
     /**
      * Tells if the response from the provided URL could be parsed by the parser
      *
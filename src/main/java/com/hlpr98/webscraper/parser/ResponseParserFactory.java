@@ -3,30 +3,44 @@ package com.hlpr98.webscraper.parser;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.MalformedURLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class ResponseParserFactory {
 
-    private static final List<ResponseParser> PARSERS;
+    private static final List<ResponseParser<?>> PARSERS;
+    private static final ResponseParserIndex INDEX;
+    private static final Map<String, Class<?>> ENTITY_CLASSES;
 
     static {
         PARSERS = List.of(
                 new EntityJsonPageParser(),
                 new ProductHTMLPageParser()
         );
+        INDEX = new ResponseParserIndex(PARSERS);
+        ENTITY_CLASSES = new HashMap<>();
+        for (ResponseParser<?> parser : PARSERS) {
+            ENTITY_CLASSES.put(parser.getEntityClass().getName(), parser.getEntityClass());
+        }
     }
 
-    // TODO: Optimise the selection process.
-    // If URLs are known at compile time, this could be made into a simple Map<URL, Parser>
-    // But when its a dynamic runtime input, see how this could be optimised.
+    /**
+     * Finds the first parser, in the order of {@link #PARSERS}, which handles the url. See {@link ResponseParserIndex}.
+     */
     public static ResponseParser getParser(String url) throws MalformedURLException {
-        for (ResponseParser parser : PARSERS) {
-            if (parser.handlesURL(url)) {
-                return parser;
-            }
-        }
+        return INDEX.getParser(url);
+    }
 
-        throw new IllegalStateException("No parser found for handling: " + url);
+    /**
+     * Finds the class of the entities of one of the {@link #PARSERS} by its name. The entities read back from a file or
+     * received from another process are bound only to these classes, never to any class they name.
+     *
+     * @param name the name of the class
+     * @return the class, or <b>NULL</b> if no parser parses entities of that class
+     */
+    public static Class<?> getEntityClass(String name) {
+        return ENTITY_CLASSES.get(name);
     }
 }
@@ -0,0 +1,253 @@
+package com.hlpr98.webscraper.parser;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes a url to the first registered parser which handles it, i.e. same as trying {@link ResponseParser#handlesURL}
+ * of each parser in the order of registration, but without running the path pattern of every parser.
+ * <p>
+ * The candidates are narrowed down in the following order, and only their path patterns are run:
+ * <ul>
+ *     <li>The parsers scoped to the host of the url (see {@link IResponseParser#hosts()}) and the ones for any host</li>
+ *     <li>The parsers whose path literals (see {@link IResponseParser#pathLiterals()}) are all present in the path. The
+ *     literals of all the parsers are kept in a trie, so that they are looked up in a single scan of the path.</li>
+ * </ul>
+ * The urls which are not handled by any parser are cached, so that the misses repeated in the input are cheap too.
+ */
+@Slf4j
+public class ResponseParserIndex {
+
+    private static final int DEFAULT_NEGATIVE_CACHE_SIZE = 100_000;
+    private static final int[] NO_PARSERS = new int[0];
+
+    private final ResponseParser<?>[] parsers;
+    private final Map<String, int[]> hostVsParsers;
+    private final int[] anyHostParsers;
+    private final int[] literalCounts;
+    private final TrieNode literals;
+    private final Set<String> negativeCache;
+    private final int negativeCacheSize;
+
+    public ResponseParserIndex(List<? extends ResponseParser<?>> parsers) {
+        this(parsers, DEFAULT_NEGATIVE_CACHE_SIZE);
+    }
+
+    /**
+     * @param parsers           the parsers in the order of precedence
+     * @param negativeCacheSize the maximum number of urls without a parser to be cached
+     */
+    public ResponseParserIndex(List<? extends ResponseParser<?>> parsers, int negativeCacheSize) {
+        this.parsers = parsers.toArray(new ResponseParser<?>[0]);
+        this.literalCounts = new int[this.parsers.length];
+        this.literals = new TrieNode();
+        this.negativeCache = ConcurrentHashMap.newKeySet();
+        this.negativeCacheSize = negativeCacheSize;
+
+        Map<String, List<Integer>> hostVsParsers = new HashMap<>();
+        List<Integer> anyHostParsers = new ArrayList<>();
+        for (int i = 0; i < this.parsers.length; i++) {
+            ResponseParser<?> parser = this.parsers[i];
+            if (parser.hosts().isEmpty()) {
+                anyHostParsers.add(i);
+            }
+            for (String host : parser.hosts()) {
+                hostVsParsers.computeIfAbsent(host.toLowerCase(Locale.ROOT), h -> new ArrayList<>()).add(i);
+            }
+
+            Set<String> parserLiterals = new HashSet<>();
+            for (String literal : parser.pathLiterals()) {
+                if (!literal.isEmpty()) {
+                    parserLiterals.add(literal.toLowerCase(Locale.ROOT));
+                }
+            }
+            this.literalCounts[i] = parserLiterals.size();
+            for (String literal : parserLiterals) {
+                this.literals.insert(literal, i);
+            }
+        }
+
+        this.hostVsParsers = new HashMap<>();
+        hostVsParsers.forEach((host, ids) -> this.hostVsParsers.put(host, toArray(ids)));
+        this.anyHostParsers = toArray(anyHostParsers);
+        this.literals.index();
+    }
+
+    /**
+     * @param url the page url
+     * @return the first parser which handles the url
+     * @throws MalformedURLException if the url is malformed
+     * @throws IllegalStateException if none of the parsers handles the url
+     */
+    public ResponseParser<?> getParser(String url) throws MalformedURLException {
+        String[] hostAndPath = hostAndPath(url);
+        String host = hostAndPath[0].toLowerCase(Locale.ROOT);
+        String path = hostAndPath[1];
+        String cacheKey = host + path;
+
+        if (!this.negativeCache.contains(cacheKey)) {
+            ResponseParser<?> parser = findParser(host, path);
+            if (parser != null) {
+                return parser;
+            }
+
+            if (this.negativeCache.size() >= this.negativeCacheSize) {
+                this.negativeCache.clear();
+            }
+            this.negativeCache.add(cacheKey);
+        }
+
+        throw new IllegalStateException("No parser found for handling: " + url);
+    }
+
+    private ResponseParser<?> findParser(String host, String path) {
+        int[] candidates = merge(this.hostVsParsers.getOrDefault(host, NO_PARSERS), this.anyHostParsers);
+        int[] literalHits = null;
+
+        for (int candidate : candidates) {
+            if (this.literalCounts[candidate] > 0) {
+                if (literalHits == null) {
+                    literalHits = this.literals.scan(path.toLowerCase(Locale.ROOT), this.parsers.length);
+                }
+                if (literalHits[candidate] < this.literalCounts[candidate]) {
+                    continue;
+                }
+            }
+
+            ResponseParser<?> parser = this.parsers[candidate];
+            if (parser.pathPattern().matcher(path).find()) {
+                return parser;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits the url into its host and path, same as {@link URL#getHost()} and {@link URL#getPath()}. The plain http(s)
+     * urls are split without creating a {@link URL}.
+     */
+    static String[] hostAndPath(String url) throws MalformedURLException {
+        int schemeEnd = url.indexOf("://");
+        String scheme = schemeEnd > 0 ? url.substring(0, schemeEnd) : "";
+        if (scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https")) {
+            int authorityStart = schemeEnd + 3;
+            int authorityEnd = authorityStart;
+            while (authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) < 0) {
+                authorityEnd++;
+            }
+
+            int hostEnd = plainHostEnd(url, authorityStart, authorityEnd);
+            if (hostEnd > authorityStart) {
+                int pathEnd = authorityEnd;
+                while (pathEnd < url.length() && "?#".indexOf(url.charAt(pathEnd)) < 0) {
+                    pathEnd++;
+                }
+                return new String[]{url.substring(authorityStart, hostEnd), url.substring(authorityEnd, pathEnd)};
+            }
+        }
+
+        URL parsedURL = new URL(url);
+        return new String[]{parsedURL.getHost(), parsedURL.getPath()};
+    }
+
+    /**
+     * @return the end of the host if the authority is a plain host name with an optional port, else -1
+     */
+    private static int plainHostEnd(String url, int start, int end) {
+        int hostEnd = end;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ':' && hostEnd == end) {
+                hostEnd = i;
+            } else if (hostEnd == end ? !(Character.isLetterOrDigit(c) || c == '.' || c == '-') : !Character.isDigit(c)) {
+                return -1;
+            }
+        }
+        return hostEnd == end - 1 ? -1 : hostEnd;
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Merges two sorted arrays of parser ids, i.e. keeps the order of registration
+     */
+    private static int[] merge(int[] first, int[] second) {
+        if (first.length == 0) {
+            return second;
+        }
+        int[] merged = new int[first.length + second.length];
+        int i = 0, j = 0, k = 0;
+        while (i < first.length || j < second.length) {
+            if (j == second.length || (i < first.length && first[i] < second[j])) {
+                merged[k++] = first[i++];
+            } else {
+                merged[k++] = second[j++];
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * A trie of the path literals. Each node which terminates a literal knows the ids of the parsers requiring that
+     * literal.
+     */
+    private static class TrieNode {
+        private final Map<Character, TrieNode> children = new HashMap<>();
+        private final List<Integer> terminalParsers = new ArrayList<>();
+        private int[] terminalIds = NO_PARSERS;
+
+        void insert(String literal, int parserId) {
+            TrieNode node = this;
+            for (int i = 0; i < literal.length(); i++) {
+                node = node.children.computeIfAbsent(literal.charAt(i), c -> new TrieNode());
+            }
+            node.terminalParsers.add(parserId);
+        }
+
+        /**
+         * Freezes the parser ids of each node into arrays, once all the literals are inserted
+         */
+        void index() {
+            this.terminalIds = toArray(this.terminalParsers);
+            this.children.values().forEach(TrieNode::index);
+        }
+
+        /**
+         * Counts, for each parser, the number of its literals present in the text
+         *
+         * @param text        the lower case path
+         * @param parserCount the number of parsers
+         * @return the number of literals found, indexed by parser id
+         */
+        int[] scan(String text, int parserCount) {
+            int[] hits = new int[parserCount];
+            Set<TrieNode> found = null;
+            for (int start = 0; start < text.length(); start++) {
+                TrieNode node = this;
+                for (int i = start; i < text.length(); i++) {
+                    node = node.children.get(text.charAt(i));
+                    if (node == null) {
+                        break;
+                    }
+                    if (node.terminalIds.length > 0) {
+                        if (found == null) {
+                            found = new HashSet<>();
+                        }
+                        if (found.add(node)) {
+                            for (int id : node.terminalIds) {
+                                hits[id]++;
+                            }
+                        }
+                    }
+                }
+            }
+            return hits;
+        }
+    }
+}
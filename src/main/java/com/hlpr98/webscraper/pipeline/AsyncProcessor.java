@@ -0,0 +1,260 @@
+package com.hlpr98.webscraper.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A stage of a pipeline which transforms each item asynchronously, ex: fetches an url or parses a response.
+ * <p>
+ * At most <code>capacity</code> items are held by the stage at a time: requested from the upstream but not received
+ * yet, being transformed, or transformed but not yet requested by the downstream. Items are requested from the upstream
+ * only as the downstream takes the transformed ones, so a slow downstream throttles the upstream and the memory held
+ * by the stage is bounded. The transformed items are emitted in the order they complete in.
+ * <p>
+ * A transformation which throws or fails is fatal: the upstream is cancelled and the downstream is signalled the
+ * error. Transformations which could fail for a single item should return the failure as an item instead.
+ * <p>
+ * The transformed items which are never emitted, i.e. held when the stage fails or is cancelled by the downstream, or
+ * transformed after that, are handed over to the discard hook, ex: to release what they hold.
+ *
+ * @param <T> the type of the items received
+ * @param <R> the type of the items emitted
+ */
+public class AsyncProcessor<T, R> implements Flow.Processor<T, R> {
+
+    private final Function<? super T, ? extends CompletionStage<? extends R>> transform;
+    private final int capacity;
+    private final Consumer<? super R> discard;
+    private final Deque<R> transformed;
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super R> downstream;
+    private long demand;
+    private int requested;
+    private int pending;
+    private boolean upstreamDone;
+    private boolean cancelled;
+    private boolean downstreamCancelled;
+    private boolean terminated;
+    private boolean draining;
+    private Throwable failure;
+
+    /**
+     * @param transform the asynchronous transformation of an item
+     * @param capacity  the maximum number of items held by the stage at a time
+     */
+    public AsyncProcessor(Function<? super T, ? extends CompletionStage<? extends R>> transform, int capacity) {
+        this(transform, capacity, item -> {
+        });
+    }
+
+    /**
+     * @param transform the asynchronous transformation of an item
+     * @param capacity  the maximum number of items held by the stage at a time
+     * @param discard   the hook of the transformed items which are never emitted, which must not throw
+     */
+    public AsyncProcessor(Function<? super T, ? extends CompletionStage<? extends R>> transform, int capacity,
+                          Consumer<? super R> discard) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.transform = transform;
+        this.capacity = capacity;
+        this.discard = discard;
+        this.transformed = new ArrayDeque<>();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber) {
+        Objects.requireNonNull(subscriber);
+        synchronized (this) {
+            if (this.downstream != null) {
+                throw new IllegalStateException("Processor supports a single subscriber");
+            }
+            this.downstream = subscriber;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                synchronized (AsyncProcessor.this) {
+                    if (n <= 0) {
+                        AsyncProcessor.this.failure = new IllegalArgumentException("Non-positive request: " + n);
+                    } else {
+                        AsyncProcessor.this.demand = AsyncProcessor.this.demand + n < 0
+                                ? Long.MAX_VALUE
+                                : AsyncProcessor.this.demand + n;
+                    }
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                synchronized (AsyncProcessor.this) {
+                    AsyncProcessor.this.downstreamCancelled = true;
+                }
+                cancelUpstream();
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (this.upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            this.upstream = subscription;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(T item) {
+        synchronized (this) {
+            this.requested--;
+            this.pending++;
+        }
+
+        CompletionStage<? extends R> stage;
+        try {
+            stage = this.transform.apply(item);
+        } catch (Throwable ex) {
+            fail(ex);
+            return;
+        }
+        stage.whenComplete((result, ex) -> {
+            if (ex != null) {
+                fail(ex);
+                return;
+            }
+            boolean dropped;
+            synchronized (this) {
+                dropped = this.terminated || this.downstreamCancelled || this.failure != null;
+                if (!dropped) {
+                    this.transformed.add(result);
+                }
+            }
+            if (dropped) {
+                this.discard.accept(result);
+                return;
+            }
+            drain();
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            if (this.failure == null) {
+                this.failure = throwable;
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            this.upstreamDone = true;
+        }
+        drain();
+    }
+
+    private void fail(Throwable ex) {
+        synchronized (this) {
+            if (this.failure == null) {
+                this.failure = ex;
+            }
+        }
+        cancelUpstream();
+        drain();
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            this.cancelled = true;
+            subscription = this.upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Emits the transformed items as per the demand of the downstream, and requests from the upstream as many items as
+     * there is room for. Only one thread drains at a time, the others leave their work to it.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (this.draining || this.downstream == null) {
+                return;
+            }
+            this.draining = true;
+        }
+
+        while (true) {
+            R next = null;
+            List<R> dropped = null;
+            Throwable error = null;
+            boolean complete = false;
+            Flow.Subscription toRequestFrom = null;
+            int toRequest = 0;
+            synchronized (this) {
+                if (this.terminated) {
+                    this.draining = false;
+                    return;
+                }
+                if (this.downstreamCancelled) {
+                    this.terminated = true;
+                    dropped = new ArrayList<>(this.transformed);
+                    this.transformed.clear();
+                } else if (this.failure != null) {
+                    error = this.failure;
+                    this.terminated = true;
+                    dropped = new ArrayList<>(this.transformed);
+                    this.transformed.clear();
+                } else if (this.demand > 0 && !this.transformed.isEmpty()) {
+                    next = this.transformed.poll();
+                    this.demand--;
+                    this.pending--;
+                } else if (this.upstreamDone && this.pending == 0) {
+                    complete = true;
+                    this.terminated = true;
+                } else if (this.upstream != null && !this.upstreamDone && !this.cancelled
+                        && this.requested + this.pending < this.capacity) {
+                    toRequest = this.capacity - this.requested - this.pending;
+                    this.requested += toRequest;
+                    toRequestFrom = this.upstream;
+                } else {
+                    this.draining = false;
+                    return;
+                }
+            }
+
+            if (dropped != null) {
+                dropped.forEach(this.discard);
+                if (error != null) {
+                    cancelUpstream();
+                    this.downstream.onError(error);
+                }
+            } else if (next != null) {
+                this.downstream.onNext(next);
+            } else if (complete) {
+                this.downstream.onComplete();
+            } else {
+                toRequestFrom.request(toRequest);
+            }
+        }
+    }
+}
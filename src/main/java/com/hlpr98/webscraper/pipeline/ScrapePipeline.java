@@ -0,0 +1,145 @@
+package com.hlpr98.webscraper.pipeline;
+
+import com.hlpr98.webscraper.FetchedResponse;
+import com.hlpr98.webscraper.IWebScraperWorker;
+import com.hlpr98.webscraper.WebScraperWorkerFactory;
+import com.hlpr98.webscraper.input.URLSource;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.parser.ParseExecutor;
+import com.hlpr98.webscraper.parser.ResponseParserFactory;
+import com.hlpr98.webscraper.sink.ResultSink;
+
+import java.net.MalformedURLException;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Scrapes the urls of a source as a pipeline of {@link Flow} stages, each of which requests items from the previous one
+ * only when it has room for them:
+ * <pre>
+ *     urls ({@link URLPublisher}) -> fetch -> parse -> sink ({@link SinkSubscriber})
+ * </pre>
+ * <ul>
+ *     <li>The fetch stage holds at most <code>maxInFlight</code> urls, being fetched by the workers of their domains
+ *     or fetched and waiting to be parsed. A url is fetched once the body of its response is received whole, bounded
+ *     in size, hence the transfers count against <code>maxInFlight</code> and the parse stage never waits on the
+ *     network.</li>
+ *     <li>The parse stage holds at most <code>parseCapacity</code> responses, being parsed on the {@link ParseExecutor}
+ *     of the worker factory (or one of its own if the factory has none) or parsed and waiting for the sink.</li>
+ *     <li>The sink stage requests a result only once the previous one is accepted by the sink.</li>
+ * </ul>
+ * Hence a slow sink fills up the parse stage, which stops taking responses from the fetch stage, which stops taking
+ * urls from the source, and the memory consumed stays bounded whatever the speed of the stages.
+ */
+public class ScrapePipeline {
+
+    /**
+     * The number of results requested by the sink stage ahead of the sink
+     */
+    private static final int SINK_PREFETCH = 16;
+
+    private final WebScraperWorkerFactory workerFactory;
+    private final int maxInFlight;
+    private final int parseCapacity;
+
+    /**
+     * Creates a pipeline whose parse stage holds up to 4 responses per processor
+     *
+     * @param workerFactory the factory of the workers of the domains
+     * @param maxInFlight   the maximum number of urls in the fetch stage
+     */
+    public ScrapePipeline(WebScraperWorkerFactory workerFactory, int maxInFlight) {
+        this(workerFactory, maxInFlight, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param workerFactory the factory of the workers of the domains
+     * @param maxInFlight   the maximum number of urls in the fetch stage
+     * @param parseCapacity the maximum number of responses and results in the parse stage
+     */
+    public ScrapePipeline(WebScraperWorkerFactory workerFactory, int maxInFlight, int parseCapacity) {
+        this.workerFactory = workerFactory;
+        this.maxInFlight = maxInFlight;
+        this.parseCapacity = parseCapacity;
+    }
+
+    /**
+     * Scrapes the urls of the source and hands over the result of each url to the sink, and returns once the last
+     * result is accepted by the sink.
+     *
+     * @param source the source of urls
+     * @param sink   the sink of the results
+     * @throws MalformedURLException if an url is malformed, in which case the urls after it are not scraped
+     * @throws IllegalStateException if there is no parser for an url, in which case the urls after it are not scraped
+     * @throws RuntimeException      the exception of the sink if it throws, in which case the pipeline stops
+     * @throws InterruptedException  if interrupted while waiting for the last result
+     */
+    public void run(URLSource source, ResultSink sink) throws MalformedURLException, InterruptedException {
+        SinkSubscriber sinkSubscriber = new SinkSubscriber(sink, SINK_PREFETCH);
+        run(source, sinkSubscriber, sinkSubscriber.getDone());
+    }
+
+    /**
+     * Scrapes the urls of the source and publishes the result of each url to the subscriber, only as it requests them,
+     * and returns once the subscriber is done. A subscriber which holds back its demand throttles the pipeline without
+     * blocking any thread.
+     *
+     * @param source     the source of urls
+     * @param subscriber the subscriber of the results, keyed by their urls
+     * @param done       a future completed by the subscriber once it is signalled the end of the results, or completed
+     *                   exceptionally with the error of the pipeline
+     * @throws MalformedURLException if an url is malformed, in which case the urls after it are not scraped
+     * @throws IllegalStateException if there is no parser for an url, in which case the urls after it are not scraped
+     * @throws InterruptedException  if interrupted while waiting for the subscriber to be done
+     */
+    public void run(URLSource source, Flow.Subscriber<? super Map.Entry<String, WebScrapingResult>> subscriber,
+                    Future<?> done) throws MalformedURLException, InterruptedException {
+        ParseExecutor ownParseExecutor = this.workerFactory.getParseExecutor() == null ? new ParseExecutor() : null;
+        Executor parseExecutor = ownParseExecutor != null ? ownParseExecutor : this.workerFactory.getParseExecutor();
+        try {
+            // the responses which are not parsed, ex: once the pipeline failed, are discarded to give back their slots
+            AsyncProcessor<String, FetchedResponse> fetch = new AsyncProcessor<>(this::fetch, this.maxInFlight,
+                    FetchedResponse::discard);
+            AsyncProcessor<FetchedResponse, Map.Entry<String, WebScrapingResult>> parse = new AsyncProcessor<>(
+                    response -> parse(response, parseExecutor), this.parseCapacity);
+
+            parse.subscribe(subscriber);
+            fetch.subscribe(parse);
+            new URLPublisher(source).subscribe(fetch);
+
+            done.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MalformedURLException) {
+                throw (MalformedURLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Exception while scraping", cause);
+        } finally {
+            if (ownParseExecutor != null) {
+                ownParseExecutor.close();
+            }
+        }
+    }
+
+    private static CompletableFuture<Map.Entry<String, WebScrapingResult>> parse(FetchedResponse response,
+                                                                              Executor parseExecutor) {
+        try {
+            return CompletableFuture.supplyAsync(() -> Map.entry(response.getUrl(), response.parse()), parseExecutor);
+        } catch (RejectedExecutionException e) {
+            response.discard();
+            throw e;
+        }
+    }
+
+    private CompletableFuture<FetchedResponse> fetch(String url) {
+        try {
+            IWebScraperWorker worker = this.workerFactory.getWorker(url);
+            return worker.fetch(url, ResponseParserFactory.getParser(url));
+        } catch (MalformedURLException e) {
+            throw new CompletionException(e);
+        }
+    }
+}
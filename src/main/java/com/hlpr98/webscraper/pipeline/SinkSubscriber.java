@@ -0,0 +1,75 @@
+package com.hlpr98.webscraper.pipeline;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.sink.ResultSink;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * The last stage of a pipeline, which hands over the result of each url to a sink. A result is requested only once the
+ * previous one is accepted by the sink, hence a sink which falls behind throttles the whole pipeline.
+ * <p>
+ * A sink which throws fails the pipeline: the subscription is cancelled on the first exception, rather than scraping
+ * the rest of the urls for a sink which could not persist them.
+ */
+@Slf4j
+public class SinkSubscriber implements Flow.Subscriber<Map.Entry<String, WebScrapingResult>> {
+
+    private final ResultSink sink;
+    private final int prefetch;
+    private final CompletableFuture<Void> done;
+    private Flow.Subscription subscription;
+
+    /**
+     * @param sink     the sink of the results
+     * @param prefetch the number of results requested ahead of the sink
+     */
+    public SinkSubscriber(ResultSink sink, int prefetch) {
+        this.sink = sink;
+        this.prefetch = prefetch;
+        this.done = new CompletableFuture<>();
+    }
+
+    /**
+     * @return a future completed once the last result is accepted by the sink, or completed exceptionally with the
+     * error of the pipeline or the exception of the sink
+     */
+    public CompletableFuture<Void> getDone() {
+        return this.done;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(this.prefetch);
+    }
+
+    @Override
+    public void onNext(Map.Entry<String, WebScrapingResult> item) {
+        if (this.done.isDone()) {
+            return;
+        }
+        try {
+            this.sink.accept(item.getKey(), item.getValue());
+        } catch (RuntimeException ex) {
+            log.error("Exception while persisting result of {}", item.getKey(), ex);
+            this.subscription.cancel();
+            this.done.completeExceptionally(ex);
+            return;
+        }
+        this.subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        this.done.complete(null);
+    }
+}
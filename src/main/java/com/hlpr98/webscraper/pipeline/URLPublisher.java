@@ -0,0 +1,97 @@
+package com.hlpr98.webscraper.pipeline;
+
+import com.hlpr98.webscraper.input.URLSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Publishes the urls of a source to a single subscriber. The urls are read from the source on a thread of its own and
+ * only as many as requested by the subscriber, hence a slow pipeline doesn't make the source to be read ahead.
+ */
+@Slf4j
+public class URLPublisher implements Flow.Publisher<String> {
+
+    private final URLSource source;
+    private boolean subscribed;
+
+    /**
+     * @param source the source of urls, which is read by the publisher only
+     */
+    public URLPublisher(URLSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        synchronized (this) {
+            if (this.subscribed) {
+                throw new IllegalStateException("Publisher supports a single subscriber");
+            }
+            this.subscribed = true;
+        }
+
+        URLSubscription subscription = new URLSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        Thread reader = new Thread(subscription::publish, "url-publisher");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private class URLSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super String> subscriber;
+        private long demand;
+        private boolean cancelled;
+
+        private URLSubscription(Flow.Subscriber<? super String> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                cancel();
+                this.subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            this.cancelled = true;
+            notifyAll();
+        }
+
+        private synchronized boolean awaitDemand() throws InterruptedException {
+            while (this.demand == 0 && !this.cancelled) {
+                wait();
+            }
+            if (this.cancelled) {
+                return false;
+            }
+            this.demand--;
+            return true;
+        }
+
+        private void publish() {
+            try {
+                while (awaitDemand()) {
+                    if (!URLPublisher.this.source.hasNext()) {
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    this.subscriber.onNext(URLPublisher.this.source.next());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                this.subscriber.onError(ex);
+            } catch (RuntimeException ex) {
+                log.error("Exception while reading urls", ex);
+                this.subscriber.onError(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.hlpr98.webscraper.service;
+
+import com.hlpr98.webscraper.input.URLSource;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * A batch of urls submitted to the {@link ScrapeService}. It is both the source of its pipeline and the subscriber of
+ * its results: the results are buffered until they are streamed to the client, and the job requests a result from its
+ * pipeline only for a free slot of the buffer. Hence once the buffer is full the pipeline waits for the client, without
+ * blocking any thread, and a job holds at most <code>bufferCapacity</code> results in memory whatever its size.
+ * <p>
+ * A cancelled job hands over no more urls to its pipeline and drops the results of the ones in flight.
+ */
+class ScrapeJob implements Flow.Subscriber<Map.Entry<String, WebScrapingResult>> {
+
+    enum State {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    private final String id;
+    private final int urlCount;
+    private final int bufferCapacity;
+    private final ArrayDeque<Result> buffer;
+    private final LongConsumer onURLsDone;
+    private final CompletableFuture<Void> done;
+    private Flow.Subscription subscription;
+    private List<String> urls;
+    private State state;
+    private String error;
+    private int nextURL;
+    private long succeeded;
+    private long failed;
+    private long timedOut;
+    private long streamed;
+    private boolean streaming;
+    private boolean waiting;
+    private long waitingSinceNanos;
+
+    /**
+     * @param id             the id of the job
+     * @param urls           the urls to scrape
+     * @param bufferCapacity the maximum number of results waiting to be streamed
+     * @param onURLsDone     called with the number of urls which are not queued anymore, being scraped or cancelled
+     */
+    ScrapeJob(String id, List<String> urls, int bufferCapacity, LongConsumer onURLsDone) {
+        this.id = id;
+        this.urls = urls;
+        this.urlCount = urls.size();
+        this.bufferCapacity = bufferCapacity;
+        this.buffer = new ArrayDeque<>();
+        this.onURLsDone = onURLsDone;
+        this.done = new CompletableFuture<>();
+        this.state = State.QUEUED;
+    }
+
+    String getId() {
+        return this.id;
+    }
+
+    /**
+     * @return a future completed once the pipeline of the job is signalled to be over
+     */
+    CompletableFuture<Void> getDone() {
+        return this.done;
+    }
+
+    /**
+     * @return the source of the urls, which ends early if the job is cancelled
+     */
+    URLSource source() {
+        return URLSource.fromIterator(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return hasNextURL();
+            }
+
+            @Override
+            public String next() {
+                return nextURL();
+            }
+        }, () -> {
+        });
+    }
+
+    /**
+     * @return whether the job should run, i.e. it was not cancelled while queued
+     */
+    synchronized boolean start() {
+        if (this.state != State.QUEUED) {
+            return false;
+        }
+        this.state = State.RUNNING;
+        return true;
+    }
+
+    /**
+     * Ends the job once its pipeline returns, releasing the urls it did not scrape
+     *
+     * @param exception the exception which stopped the pipeline, or <b>NULL</b> if it ran to the end
+     */
+    synchronized void finish(Exception exception) {
+        if (this.state == State.RUNNING) {
+            this.state = exception != null ? State.FAILED : State.DONE;
+        }
+        if (exception != null) {
+            this.error = String.valueOf(exception);
+        }
+        releaseRemainingURLs();
+        updateWaiting();
+        notifyAll();
+    }
+
+    /**
+     * Cancels the job, and drops the results not streamed yet, even if it is over
+     *
+     * @return whether the job was cancelled, i.e. it was not over
+     */
+    boolean cancel() {
+        Flow.Subscription subscription;
+        boolean cancelled;
+        synchronized (this) {
+            this.buffer.clear();
+            updateWaiting();
+            notifyAll();
+            cancelled = !isOver();
+            if (cancelled) {
+                boolean queued = this.state == State.QUEUED;
+                this.state = State.CANCELLED;
+                if (queued) {
+                    releaseRemainingURLs();
+                }
+            }
+            subscription = this.subscription;
+        }
+        // the results of the urls in flight are dropped as they come
+        if (subscription != null) {
+            subscription.request(Long.MAX_VALUE);
+        }
+        return cancelled;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            this.subscription = subscription;
+        }
+        subscription.request(this.bufferCapacity);
+    }
+
+    /**
+     * Buffers the result of an url, the pipeline hands over no more results than requested, i.e. than the free slots
+     */
+    @Override
+    public void onNext(Map.Entry<String, WebScrapingResult> item) {
+        boolean dropped;
+        synchronized (this) {
+            WebScrapingResult result = item.getValue();
+            this.onURLsDone.accept(1);
+            if (result.getException() == null) {
+                this.succeeded++;
+            } else if (result.isTimedOut()) {
+                this.timedOut++;
+            } else {
+                this.failed++;
+            }
+
+            dropped = this.state != State.RUNNING;
+            if (!dropped) {
+                String error = result.getException() != null ? String.valueOf(result.getException()) : null;
+                this.buffer.add(new Result(item.getKey(), result.getParsedEntity(), error,
+                        result.isTimedOut() ? true : null));
+                updateWaiting();
+                notifyAll();
+            }
+        }
+        if (dropped) {
+            this.subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        this.done.complete(null);
+    }
+
+    /**
+     * Takes the client streaming the results, there is at most one at a time
+     *
+     * @return whether the client could stream the results
+     */
+    synchronized boolean startStreaming() {
+        if (this.streaming) {
+            return false;
+        }
+        this.streaming = true;
+        return true;
+    }
+
+    synchronized void stopStreaming() {
+        this.streaming = false;
+        // the job waits for a client again from now on
+        this.waiting = false;
+        updateWaiting();
+    }
+
+    /**
+     * Takes the results buffered so far, waiting for the next one if there is none, and requests as many results from
+     * the pipeline
+     *
+     * @param maxResults the maximum number of results to take
+     * @param timeout    the maximum time to wait for a result
+     * @param unit       the unit of the timeout
+     * @return the results, empty if none came in time, or <b>NULL</b> if the job is over and all its results are taken
+     */
+    List<Result> takeResults(int maxResults, long timeout, TimeUnit unit) throws InterruptedException {
+        List<Result> results = pollResults(maxResults, timeout, unit);
+        if (results != null && !results.isEmpty()) {
+            this.subscription.request(results.size());
+        }
+        return results;
+    }
+
+    /**
+     * @return whether the job waits for its client since before the given time, i.e. its buffer is full or it is over
+     * with results not streamed, and no client is streaming them
+     */
+    synchronized boolean isWaitingSince(long nanos) {
+        return this.waiting && !this.streaming && this.waitingSinceNanos - nanos < 0;
+    }
+
+    private synchronized List<Result> pollResults(int maxResults, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (long remaining = unit.toNanos(timeout); this.buffer.isEmpty(); remaining = deadline - System.nanoTime()) {
+            if (isOver()) {
+                return null;
+            }
+            if (remaining <= 0) {
+                return List.of();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        List<Result> results = new ArrayList<>(Math.min(maxResults, this.buffer.size()));
+        while (results.size() < maxResults && !this.buffer.isEmpty()) {
+            results.add(this.buffer.poll());
+        }
+        this.streamed += results.size();
+        this.waiting = false;
+        updateWaiting();
+        return results;
+    }
+
+    /**
+     * @return whether the job is over and all its results are streamed, hence it could be forgotten
+     */
+    synchronized boolean isDrained() {
+        return isOver() && this.buffer.isEmpty();
+    }
+
+    synchronized Status status() {
+        return new Status(this.id, this.state, this.urlCount, this.succeeded + this.failed + this.timedOut,
+                this.succeeded, this.failed, this.timedOut, this.streamed, this.error);
+    }
+
+    private synchronized boolean hasNextURL() {
+        return this.state == State.RUNNING && this.nextURL < this.urlCount;
+    }
+
+    private synchronized String nextURL() {
+        if (!hasNextURL()) {
+            throw new NoSuchElementException();
+        }
+        return this.urls.get(this.nextURL++);
+    }
+
+    private void updateWaiting() {
+        boolean waiting = this.buffer.size() >= this.bufferCapacity || (isOver() && !this.buffer.isEmpty());
+        if (waiting && !this.waiting) {
+            this.waitingSinceNanos = System.nanoTime();
+        }
+        this.waiting = waiting;
+    }
+
+    private boolean isOver() {
+        return this.state != State.QUEUED && this.state != State.RUNNING;
+    }
+
+    private void releaseRemainingURLs() {
+        if (this.urls != null) {
+            this.onURLsDone.accept(this.urlCount - (this.succeeded + this.failed + this.timedOut));
+            this.urls = null;
+        }
+    }
+
+    /**
+     * A line of the streamed results, in the format of the NDJSON output file
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Result {
+        private final String url;
+        private final Object entity;
+        private final String error;
+        private final Boolean timeout;
+    }
+
+    /**
+     * The progress of a job: <code>scraped = succeeded + failed + timedOut</code> out of <code>urls</code>
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Status {
+        private final String id;
+        private final State state;
+        private final int urls;
+        private final long scraped;
+        private final long succeeded;
+        private final long failed;
+        private final long timedOut;
+        private final long streamed;
+        private final String error;
+    }
+}
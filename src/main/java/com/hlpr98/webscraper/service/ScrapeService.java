@@ -0,0 +1,356 @@
+package com.hlpr98.webscraper.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hlpr98.webscraper.WebScraperWorkerFactory;
+import com.hlpr98.webscraper.input.URLDeduplicator;
+import com.hlpr98.webscraper.input.URLSource;
+import com.hlpr98.webscraper.parser.ResponseParserFactory;
+import com.hlpr98.webscraper.pipeline.ScrapePipeline;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Scrapes the batches of urls submitted over HTTP, served by the HTTP server of the JDK:
+ * <ul>
+ *     <li><code>POST /jobs</code> submits the urls of the body, one per line (plain or gzip), and answers
+ *     <code>202</code> with the status of the job, whose id is also in the <code>Location</code> header</li>
+ *     <li><code>GET /jobs/{id}</code> answers the status of the job, i.e. its progress counts</li>
+ *     <li><code>GET /jobs/{id}/results</code> streams the results of the job as
+ *     <a href="https://github.com/ndjson/ndjson-spec">newline delimited json</a> as they are scraped, in the format of
+ *     the NDJSON output file, until the last one</li>
+ *     <li><code>DELETE /jobs/{id}</code> cancels the job</li>
+ * </ul>
+ * All the jobs are scraped by the pipelines (see {@link ScrapePipeline}) of a single long-lived worker factory, hence
+ * they share the workers, limits and caches of the domains.
+ * <p>
+ * The service could not be overloaded: at most <code>maxConcurrentJobs</code> jobs are scraped at a time, the other
+ * ones wait in a queue, and a job is refused with <code>429</code> if the urls queued or being scraped over all the
+ * jobs would exceed <code>maxQueuedURLs</code>. The results of a job are buffered until streamed, and a job whose
+ * buffer is full stops requesting results from its pipeline until its client streams them, without holding any thread
+ * but its own, though its urls in flight keep their slots in the limits of their domains meanwhile. A job which waits
+ * for a client for longer than <code>idleTimeout</code>, with a full buffer or over with results not streamed, is
+ * cancelled, so a job nobody streams doesn't hold its slot forever. Results are streamed to one client at a time, and
+ * the ones taken by a client which disconnects are lost. Once all its results are streamed, a job holds nothing but
+ * its status, which is kept for the last {@value #FINISHED_JOBS_RETAINED} such jobs.
+ * <p>
+ * The clients are not authenticated, hence the service should listen at the loopback address, or at an address
+ * reachable by trusted clients only.
+ */
+@Slf4j
+public class ScrapeService implements Closeable {
+
+    private static final String JOBS_PATH = "/jobs";
+    private static final String RESULTS_PATH = "/results";
+    private static final String JSON = "application/json";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int DEFAULT_BUFFER_CAPACITY = 1_000;
+    private static final int STREAM_BATCH_SIZE = 256;
+    private static final long STREAM_WAIT_MILLIS = 1_000;
+    private static final int FINISHED_JOBS_RETAINED = 1_000;
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private final HttpServer server;
+    private final ExecutorService handlerExecutor;
+    private final ExecutorService jobExecutor;
+    private final ScheduledExecutorService idleJobReaper;
+    private final WebScraperWorkerFactory workerFactory;
+    private final int maxInFlight;
+    private final long maxQueuedURLs;
+    private final int bufferCapacity;
+    private final ObjectMapper objectMapper;
+    private final Map<String, ScrapeJob> idVsJob;
+    private final Deque<String> finishedJobIds;
+    private final AtomicLong queuedURLs;
+    private final CountDownLatch closed;
+
+    public ScrapeService(InetSocketAddress address, WebScraperWorkerFactory workerFactory, int maxConcurrentJobs,
+                         long maxQueuedURLs, int maxInFlight) throws IOException {
+        this(address, workerFactory, maxConcurrentJobs, maxQueuedURLs, maxInFlight, DEFAULT_BUFFER_CAPACITY,
+                DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Starts serving
+     *
+     * @param address           the address to listen at
+     * @param workerFactory     the factory of the workers shared by all the jobs
+     * @param maxConcurrentJobs the maximum number of jobs scraped at a time
+     * @param maxQueuedURLs     the maximum number of urls queued or being scraped over all the jobs
+     * @param maxInFlight       the maximum number of urls being fetched or waiting to be parsed, per job
+     * @param bufferCapacity    the maximum number of results of a job waiting to be streamed
+     * @param idleTimeout       the time a job waits for a client to stream its results before it is cancelled
+     */
+    public ScrapeService(InetSocketAddress address, WebScraperWorkerFactory workerFactory, int maxConcurrentJobs,
+                         long maxQueuedURLs, int maxInFlight, int bufferCapacity, Duration idleTimeout)
+            throws IOException {
+        this.workerFactory = workerFactory;
+        this.maxInFlight = maxInFlight;
+        this.maxQueuedURLs = maxQueuedURLs;
+        this.bufferCapacity = bufferCapacity;
+        this.objectMapper = new ObjectMapper()
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        this.idVsJob = new ConcurrentHashMap<>();
+        this.finishedJobIds = new ArrayDeque<>();
+        this.queuedURLs = new AtomicLong();
+        this.closed = new CountDownLatch(1);
+        this.jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs, daemonThreads("scrape-job-"));
+        this.idleJobReaper = Executors.newSingleThreadScheduledExecutor(daemonThreads("scrape-job-reaper-"));
+        long reapIntervalMillis = Math.max(1, Math.min(idleTimeout.toMillis() / 2, STREAM_WAIT_MILLIS));
+        this.idleJobReaper.scheduleWithFixedDelay(() -> cancelIdleJobs(idleTimeout), reapIntervalMillis,
+                reapIntervalMillis, MILLISECONDS);
+        // the results are streamed on the handler threads, a bounded pool of them would be held by slow clients
+        this.handlerExecutor = Executors.newCachedThreadPool(daemonThreads("scrape-service-"));
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(this.handlerExecutor);
+        this.server.createContext(JOBS_PATH, this::handle);
+        this.server.start();
+        log.info("Serving jobs at http://{}:{}{}", address.getHostString(), getAddress().getPort(), JOBS_PATH);
+    }
+
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * @return the number of urls queued or being scraped over all the jobs
+     */
+    public long getQueuedURLs() {
+        return this.queuedURLs.get();
+    }
+
+    /**
+     * Blocks until the service is closed, ex: by a shutdown hook
+     */
+    public void awaitClose() throws InterruptedException {
+        this.closed.await();
+    }
+
+    /**
+     * Stops serving and cancels the jobs
+     */
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.idleJobReaper.shutdownNow();
+        this.idVsJob.values().forEach(ScrapeJob::cancel);
+        this.jobExecutor.shutdownNow();
+        this.handlerExecutor.shutdownNow();
+        this.closed.countDown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring(JOBS_PATH.length());
+            String method = exchange.getRequestMethod();
+            if (path.isEmpty() || path.equals("/")) {
+                if (method.equals("POST")) {
+                    submit(exchange);
+                } else {
+                    sendError(exchange, 405, "Method not allowed: " + method);
+                }
+                return;
+            }
+
+            boolean results = path.endsWith(RESULTS_PATH);
+            int idEnd = results ? path.length() - RESULTS_PATH.length() : path.length();
+            String id = idEnd > 1 ? path.substring(1, idEnd) : "";
+            ScrapeJob job = this.idVsJob.get(id);
+            if (job == null) {
+                sendError(exchange, 404, "No job: " + id);
+            } else if (results && method.equals("GET")) {
+                stream(exchange, job);
+            } else if (!results && method.equals("GET")) {
+                sendJson(exchange, 200, job.status());
+            } else if (!results && method.equals("DELETE")) {
+                if (job.cancel()) {
+                    log.info("Cancelled job {}", id);
+                }
+                forgetIfDrained(job);
+                sendJson(exchange, 200, job.status());
+            } else {
+                sendError(exchange, 405, "Method not allowed: " + method);
+            }
+        } catch (RuntimeException e) {
+            log.error("Exception while handling {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            throw e;
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        List<String> urls = new ArrayList<>();
+        try (URLSource source = URLSource.fromStream(exchange.getRequestBody()).deduplicated(URLDeduplicator.exact())) {
+            while (source.hasNext()) {
+                String url = source.next();
+                if (urls.size() >= this.maxQueuedURLs) {
+                    sendError(exchange, 413, "More than " + this.maxQueuedURLs + " urls");
+                    return;
+                }
+                try {
+                    // the requests are built from URIs, which are stricter than URLs, ex: about spaces
+                    new URL(url).toURI();
+                    ResponseParserFactory.getParser(url);
+                } catch (MalformedURLException | URISyntaxException | IllegalStateException e) {
+                    sendError(exchange, 400, String.valueOf(e));
+                    return;
+                }
+                urls.add(url);
+            }
+        }
+        if (urls.isEmpty()) {
+            sendError(exchange, 400, "No urls");
+            return;
+        }
+
+        long queued = this.queuedURLs.addAndGet(urls.size());
+        if (queued > this.maxQueuedURLs) {
+            this.queuedURLs.addAndGet(-urls.size());
+            exchange.getResponseHeaders().add("Retry-After", "60");
+            sendError(exchange, 429, "Too many urls queued: " + (queued - urls.size()));
+            return;
+        }
+
+        ScrapeJob job = new ScrapeJob(UUID.randomUUID().toString(), urls, this.bufferCapacity,
+                done -> this.queuedURLs.addAndGet(-done));
+        this.idVsJob.put(job.getId(), job);
+        this.jobExecutor.execute(() -> run(job));
+        log.info("Submitted job {} of {} urls", job.getId(), urls.size());
+
+        exchange.getResponseHeaders().add("Location", JOBS_PATH + "/" + job.getId());
+        sendJson(exchange, 202, job.status());
+    }
+
+    private void run(ScrapeJob job) {
+        if (!job.start()) {
+            return;
+        }
+        Exception exception = null;
+        try (URLSource source = job.source()) {
+            new ScrapePipeline(this.workerFactory, this.maxInFlight).run(source, job, job.getDone());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exception = e;
+        } catch (IOException | RuntimeException e) {
+            log.error("Exception while scraping job {}", job.getId(), e);
+            exception = e;
+        } finally {
+            job.finish(exception);
+            forgetIfDrained(job);
+        }
+    }
+
+    private void stream(HttpExchange exchange, ScrapeJob job) throws IOException {
+        if (!job.startStreaming()) {
+            sendError(exchange, 409, "Results of job " + job.getId() + " are being streamed");
+            return;
+        }
+        try {
+            exchange.getResponseHeaders().add("Content-Type", NDJSON);
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                    StandardCharsets.UTF_8))) {
+                List<ScrapeJob.Result> results;
+                while ((results = job.takeResults(STREAM_BATCH_SIZE, STREAM_WAIT_MILLIS, MILLISECONDS)) != null) {
+                    for (ScrapeJob.Result result : results) {
+                        writer.write(this.objectMapper.writeValueAsString(result));
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                }
+            }
+            forgetIfDrained(job);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            job.stopStreaming();
+        }
+    }
+
+    private void cancelIdleJobs(Duration idleTimeout) {
+        long idleSinceNanos = System.nanoTime() - idleTimeout.toNanos();
+        for (ScrapeJob job : this.idVsJob.values()) {
+            if (!job.isWaitingSince(idleSinceNanos)) {
+                continue;
+            }
+            if (job.cancel()) {
+                log.info("Cancelled job {}, whose results were not streamed for {}", job.getId(), idleTimeout);
+            } else {
+                log.info("Dropped results of job {}, which were not streamed for {}", job.getId(), idleTimeout);
+            }
+            forgetIfDrained(job);
+        }
+    }
+
+    /**
+     * Keeps the status of a job whose results are all streamed, forgetting the oldest ones past
+     * {@link #FINISHED_JOBS_RETAINED}
+     */
+    private void forgetIfDrained(ScrapeJob job) {
+        if (!job.isDrained()) {
+            return;
+        }
+        synchronized (this.finishedJobIds) {
+            if (this.finishedJobIds.contains(job.getId())) {
+                return;
+            }
+            this.finishedJobIds.add(job.getId());
+            while (this.finishedJobIds.size() > FINISHED_JOBS_RETAINED) {
+                this.idVsJob.remove(this.finishedJobIds.poll());
+            }
+        }
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object value) throws IOException {
+        byte[] body = this.objectMapper.writeValueAsBytes(value);
+        exchange.getResponseHeaders().add("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String error) throws IOException {
+        sendJson(exchange, status, Map.of("error", error));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
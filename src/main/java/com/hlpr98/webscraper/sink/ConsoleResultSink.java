@@ -0,0 +1,43 @@
+package com.hlpr98.webscraper.sink;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+
+import java.io.PrintStream;
+
+/**
+ * Prints the results to the standard output
+ */
+public class ConsoleResultSink implements ResultSink {
+
+    private final PrintStream out;
+
+    public ConsoleResultSink() {
+        this(System.out);
+    }
+
+    public ConsoleResultSink(PrintStream out) {
+        this.out = out;
+        this.out.println("Scraped data");
+    }
+
+    @Override
+    public void accept(String url, WebScrapingResult result) {
+        if (result.getException() == null) {
+            this.out.println("URL: " + url + " Entity: " + result.getParsedEntity());
+        } else if (result.isTimedOut()) {
+            this.out.println("URL: " + url + " Timeout: " + result.getException());
+        } else {
+            this.out.println("URL: " + url + " Error: " + result.getException());
+        }
+    }
+
+    @Override
+    public void flush() {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() {
+        this.out.flush();
+    }
+}
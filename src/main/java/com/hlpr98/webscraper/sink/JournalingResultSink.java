@@ -0,0 +1,242 @@
+package com.hlpr98.webscraper.sink;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.util.Hashing;
+import com.hlpr98.webscraper.util.LongHashSet;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Keeps a crash safe journal of the urls scraped, so that a run which dies midway could be resumed without scraping
+ * again the urls already done.
+ * <p>
+ * The results are handed over to the sink it wraps, and then the url and its outcome are appended to the journal, one
+ * line per url: <code>+url</code> if scraped successfully, else <code>-url</code>. The lines are written in batches by a
+ * dedicated writer thread, and each batch is synced to the disk at once, after the results of its urls are persisted
+ * by the wrapped sink (see {@link ResultSink#flush()}). So a url journaled as done always has its result persisted.
+ * <p>
+ * On resuming, the 64 bit hashes of the urls which succeeded are loaded into a {@link LongHashSet}, so that the start
+ * up is fast and the memory consumed is small even with millions of urls journaled. The urls which failed are not
+ * remembered, hence scraped again.
+ */
+@Slf4j
+public class JournalingResultSink implements ResultSink {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final byte SUCCEEDED = '+';
+    private static final byte FAILED = '-';
+    private static final Entry END_OF_RESULTS = new Entry(null, false);
+
+    private final ResultSink delegate;
+    private final LongHashSet succeeded;
+    private final FileChannel channel;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final Thread writerThread;
+    private volatile IOException writeException;
+    private volatile boolean closed;
+
+    public JournalingResultSink(Path path, ResultSink delegate, boolean resume) throws IOException {
+        this(path, delegate, resume, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param path          the journal file
+     * @param delegate      the sink persisting the results
+     * @param resume        whether to load the urls done from the journal and append to it, else it is truncated
+     * @param queueCapacity the maximum number of urls waiting to be journaled
+     * @param batchSize     the maximum number of urls journaled by a single sync
+     */
+    public JournalingResultSink(Path path, ResultSink delegate, boolean resume, int queueCapacity, int batchSize)
+            throws IOException {
+        this.delegate = delegate;
+        this.succeeded = new LongHashSet();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+
+        long length = resume ? load(path) : 0;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.truncate(length);
+        this.channel.position(length);
+        if (resume) {
+            log.info("Resuming from {}: {} urls already succeeded", path, this.succeeded.size());
+        }
+
+        this.writerThread = new Thread(this::writeLoop, "journal-" + path.getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * @param url the url
+     * @return true if the url succeeded in the run being resumed
+     */
+    public boolean isSucceeded(String url) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        return this.succeeded.contains(Hashing.fnv1a64(bytes, 0, bytes.length));
+    }
+
+    @Override
+    public void accept(String url, WebScrapingResult result) {
+        if (this.closed) {
+            throw new IllegalStateException("Sink is closed");
+        }
+        if (this.writeException != null) {
+            throw new UncheckedIOException("Exception while writing the journal", this.writeException);
+        }
+
+        this.delegate.accept(url, result);
+        try {
+            this.queue.put(new Entry(url, result.getException() == null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while journaling " + url, e);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.queue.put(END_OF_RESULTS);
+            this.writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the journal", e);
+        } finally {
+            try {
+                this.delegate.close();
+            } finally {
+                this.channel.close();
+            }
+        }
+
+        if (this.writeException != null) {
+            throw this.writeException;
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(this.batchSize);
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        try {
+            boolean ended = false;
+            while (!ended) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, this.batchSize - 1);
+
+                lines.reset();
+                for (Entry entry : batch) {
+                    if (entry == END_OF_RESULTS) {
+                        ended = true;
+                        break;
+                    }
+                    lines.write(entry.succeeded ? SUCCEEDED : FAILED);
+                    lines.write(entry.url.getBytes(StandardCharsets.UTF_8));
+                    lines.write('\n');
+                }
+
+                if (lines.size() > 0) {
+                    // the results must be persisted before their urls are journaled as done
+                    this.delegate.flush();
+                    ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+                    while (buffer.hasRemaining()) {
+                        this.channel.write(buffer);
+                    }
+                    this.channel.force(false);
+                }
+                batch.clear();
+            }
+        } catch (IOException e) {
+            log.error("Exception while writing the journal", e);
+            this.writeException = e;
+            if (!batch.contains(END_OF_RESULTS)) {
+                discardUntilClosed();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Keeps the queue moving after a write failure, so that the producers are never blocked on it
+     */
+    private void discardUntilClosed() {
+        try {
+            while (this.queue.take() != END_OF_RESULTS) {
+                // discard
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the journal in large chunks, hashing the urls which succeeded straight from the bytes read. A truncated
+     * last line, ex: of a crash while writing it, is skipped.
+     *
+     * @return the length of the journal up to the end of its last complete line
+     */
+    private long load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        long length = 0;
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int filled = 0;
+            int read;
+            while ((read = in.read(buffer, filled, buffer.length - filled)) != -1) {
+                int scanned = filled;
+                filled += read;
+                int lineStart = 0;
+                for (int i = scanned; i < filled; i++) {
+                    if (buffer[i] == '\n') {
+                        if (i > lineStart && buffer[lineStart] == SUCCEEDED) {
+                            this.succeeded.add(Hashing.fnv1a64(buffer, lineStart + 1, i));
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+
+                length += lineStart;
+                filled -= lineStart;
+                System.arraycopy(buffer, lineStart, buffer, 0, filled);
+                if (filled == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        }
+        return length;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final String url;
+        private final boolean succeeded;
+    }
+}
@@ -0,0 +1,277 @@
+package com.hlpr98.webscraper.sink;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes the results as <a href="https://github.com/ndjson/ndjson-spec">newline delimited json</a> to a file, one
+ * object per url: <code>{"url": "...", "entity": {...}, "error": "..."}</code>. The error of an url which timed out
+ * comes along with <code>"timeout": true</code>.
+ * <p>
+ * The results are handed over to a bounded queue which is drained in batches by a dedicated writer thread. Each batch
+ * is flushed to the file once written, so the output keeps flowing during the scraping. When the writer falls behind,
+ * {@link #accept(String, WebScrapingResult)} blocks until there is room in the queue. The results are synced to the
+ * disk only on {@link #flush()} and {@link #close()}.
+ * <p>
+ * The results and flushes are queued under the read lock of {@link #closeLock} and the end of the results under its
+ * write lock, so that nothing is queued after the end, which the writer would never take.
+ */
+@Slf4j
+public class NdjsonFileResultSink implements ResultSink {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    private static final int DEFAULT_BATCH_SIZE = 512;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Record END_OF_RESULTS = new Record(null, null, null, null);
+
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Record> queue;
+    private final int batchSize;
+    private final FileChannel channel;
+    private final Writer writer;
+    private final Thread writerThread;
+    private final ReadWriteLock closeLock;
+    private volatile IOException writeException;
+    private volatile boolean closed;
+
+    public NdjsonFileResultSink(Path path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * @param path   the file to write to
+     * @param append whether to append to the file if exists, ex: on resuming a run, else it is truncated
+     */
+    public NdjsonFileResultSink(Path path, boolean append) throws IOException {
+        this(path, append, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public NdjsonFileResultSink(Path path, int queueCapacity, int batchSize) throws IOException {
+        this(path, false, queueCapacity, batchSize);
+    }
+
+    /**
+     * @param path          the file to write to
+     * @param append        whether to append to the file if exists, else it is truncated. A truncated last line, ex: of
+     *                      a crash while writing it, is terminated before appending.
+     * @param queueCapacity the maximum number of results waiting to be written
+     * @param batchSize     the maximum number of results written between two flushes
+     */
+    public NdjsonFileResultSink(Path path, boolean append, int queueCapacity, int batchSize) throws IOException {
+        this.objectMapper = new ObjectMapper()
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.channel.truncate(append ? this.channel.size() : 0);
+        this.channel.position(this.channel.size());
+        this.writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(this.channel),
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (append && endsWithTruncatedLine(this.channel)) {
+            this.writer.write('\n');
+        }
+        this.closeLock = new ReentrantReadWriteLock();
+        this.writerThread = new Thread(this::writeLoop, "ndjson-sink-" + path.getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void accept(String url, WebScrapingResult result) {
+        String error = result.getException() != null ? String.valueOf(result.getException()) : null;
+        Record record = new Record(url, result.getParsedEntity(), error, result.isTimedOut() ? true : null);
+
+        this.closeLock.readLock().lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Sink is closed");
+            }
+            throwIfWriteFailed();
+            this.queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing result of " + url, e);
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Blocks until the results accepted so far are written and synced to the disk
+     */
+    @Override
+    public void flush() throws IOException {
+        FlushRequest request = new FlushRequest();
+        this.closeLock.readLock().lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Sink is closed");
+            }
+            if (this.writeException != null) {
+                throw new IOException("Exception while writing results", this.writeException);
+            }
+            this.queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing the sink");
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+
+        try {
+            request.flushed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing the sink");
+        } catch (ExecutionException e) {
+            throw new IOException("Exception while flushing the sink", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closeLock.writeLock().lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            // the writer drains the queue whatever happens, so there is room for the end eventually
+            this.queue.put(END_OF_RESULTS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.closed = false;
+            throw new IOException("Interrupted while closing the sink", e);
+        } finally {
+            this.closeLock.writeLock().unlock();
+        }
+
+        try {
+            this.writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the sink", e);
+        } finally {
+            this.writer.close();
+            this.channel.close();
+        }
+
+        if (this.writeException != null) {
+            throw this.writeException;
+        }
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(this.batchSize);
+        try {
+            while (true) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, this.batchSize - 1);
+
+                for (Record record : batch) {
+                    if (record == END_OF_RESULTS) {
+                        this.writer.flush();
+                        this.channel.force(false);
+                        return;
+                    }
+                    if (record instanceof FlushRequest) {
+                        this.writer.flush();
+                        this.channel.force(false);
+                        ((FlushRequest) record).flushed.complete(null);
+                        continue;
+                    }
+                    this.writer.write(this.objectMapper.writeValueAsString(record));
+                    this.writer.write('\n');
+                }
+                this.writer.flush();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            log.error("Exception while writing results", e);
+            this.writeException = e;
+            batch.forEach(record -> failIfFlushRequest(record, e));
+            if (!batch.contains(END_OF_RESULTS)) {
+                discardUntilClosed();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Keeps the queue moving after a write failure, so that the producers are never blocked on it
+     */
+    private void discardUntilClosed() {
+        try {
+            for (Record record = this.queue.take(); record != END_OF_RESULTS; record = this.queue.take()) {
+                failIfFlushRequest(record, this.writeException);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void failIfFlushRequest(Record record, IOException e) {
+        if (record instanceof FlushRequest) {
+            ((FlushRequest) record).flushed.completeExceptionally(e);
+        }
+    }
+
+    private static boolean endsWithTruncatedLine(FileChannel channel) throws IOException {
+        if (channel.size() == 0) {
+            return false;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, channel.size() - 1);
+        return last.get(0) != '\n';
+    }
+
+    private void throwIfWriteFailed() {
+        if (this.writeException != null) {
+            throw new UncheckedIOException("Exception while writing results", this.writeException);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Record {
+        private final String url;
+        private final Object entity;
+        private final String error;
+        private final Boolean timeout;
+    }
+
+    /**
+     * Asks the writer to sync the results written before it, it is never written itself
+     */
+    private static class FlushRequest extends Record {
+        private final CompletableFuture<Void> flushed = new CompletableFuture<>();
+
+        FlushRequest() {
+            super(null, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.hlpr98.webscraper.sink;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+/**
+ * Receives the result of each url as soon as it is scraped. It is responsible for persisting the results, hence they are
+ * not held in memory by the scraper.
+ * <p>
+ * Implementations must be thread safe, as the results are handed over from the threads which complete the scraping.
+ */
+@FunctionalInterface
+public interface ResultSink extends BiConsumer<String, WebScrapingResult>, Closeable {
+
+    /**
+     * Accepts the result of a url
+     *
+     * @param url    the url
+     * @param result the result of scraping the url
+     */
+    @Override
+    void accept(String url, WebScrapingResult result);
+
+    /**
+     * Blocks until the results accepted so far are persisted, ex: written and synced to the disk
+     *
+     * @throws IOException if the results could not be persisted
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Flushes the results accepted so far and releases the resources held by the sink
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,143 @@
+package com.hlpr98.webscraper.util;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.function.LongSupplier;
+
+/**
+ * A concurrency limit which adapts to the origin, as per the attempts seen by the {@link RetryingHTTPClient} it listens
+ * to. It is an additive increase multiplicative decrease (AIMD) limit, which also backs off on the growth of latency:
+ * <ul>
+ *     <li>While the smoothed latency of the responses stays within {@link #LATENCY_TOLERANCE} times the baseline, the
+ *     lowest latency seen recently, the limit is increased. It is increased by one per response at first (slow start,
+ *     i.e. doubled per round trip), and by one per round trip once it was decreased.</li>
+ *     <li>On a TOO MANY REQUESTS or a 5xx response, an exception (ex: a timeout), or the smoothed latency growing past
+ *     the tolerance, the limit is decreased by {@link #BACKOFF_RATIO}. It is decreased at most once per round trip, as
+ *     the attempts failing together are most likely due to the same overload.</li>
+ * </ul>
+ * The limit is increased only while the attempts in flight use at least half of it, else it would grow without
+ * bound while the domain is not busy. The limit stays within a minimum and a maximum, ex: the configured maximum number
+ * of concurrent requests of the domain.
+ */
+public class AdaptiveConcurrencyLimit implements RetryingHTTPClient.Listener {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The ratio the limit is multiplied with on a decrease
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * The ratio of the smoothed latency over the baseline past which the origin is deemed to be queueing the requests
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * The weight of a new latency in the smoothed latency
+     */
+    private static final double SMOOTHING = 0.1;
+
+    /**
+     * The number of responses after which the baseline is measured again, so that it follows a lasting change of the
+     * latency of the origin
+     */
+    private static final int BASELINE_WINDOW = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier nanoClock;
+    private double limit;
+    private boolean slowStart;
+    private int inFlight;
+    private double smoothedNanos;
+    private long baselineNanos;
+    private long windowMinNanos;
+    private int windowResponses;
+    private long lastDecreaseNanos;
+
+    /**
+     * @param initialLimit the limit to start with
+     * @param minLimit     the minimum limit, at least 1
+     * @param maxLimit     the maximum limit
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, LongSupplier nanoClock) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits should be positive, and the maximum at least the minimum");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.slowStart = true;
+        this.baselineNanos = Long.MAX_VALUE;
+        this.windowMinNanos = Long.MAX_VALUE;
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * @return the current maximum number of requests in flight to the domain
+     */
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    @Override
+    public synchronized void onAttempt(HttpRequest request, int attempt) {
+        this.inFlight++;
+    }
+
+    @Override
+    public synchronized void onResponse(HttpRequest request, HttpResponse<?> response, long durationNanos) {
+        this.inFlight--;
+        if (response.statusCode() == TOO_MANY_REQUESTS || response.statusCode() >= 500) {
+            decrease();
+        } else {
+            onLatency(durationNanos);
+        }
+    }
+
+    @Override
+    public synchronized void onException(HttpRequest request, Throwable exception, long durationNanos) {
+        this.inFlight--;
+        decrease();
+    }
+
+    @Override
+    public synchronized void onCancel(HttpRequest request, long durationNanos) {
+        this.inFlight--;
+    }
+
+    private void onLatency(long durationNanos) {
+        this.smoothedNanos = this.smoothedNanos == 0
+                ? durationNanos
+                : this.smoothedNanos + SMOOTHING * (durationNanos - this.smoothedNanos);
+        this.baselineNanos = Math.min(this.baselineNanos, durationNanos);
+        this.windowMinNanos = Math.min(this.windowMinNanos, durationNanos);
+        if (++this.windowResponses == BASELINE_WINDOW) {
+            this.baselineNanos = this.windowMinNanos;
+            this.windowMinNanos = Long.MAX_VALUE;
+            this.windowResponses = 0;
+        }
+
+        if (this.smoothedNanos > LATENCY_TOLERANCE * this.baselineNanos) {
+            decrease();
+        } else if (2 * this.inFlight >= this.limit) {
+            this.limit = Math.min(this.maxLimit, this.limit + (this.slowStart ? 1 : 1 / this.limit));
+        }
+    }
+
+    private void decrease() {
+        long now = this.nanoClock.getAsLong();
+        if (!this.slowStart && now - this.lastDecreaseNanos < this.smoothedNanos) {
+            return;
+        }
+        this.slowStart = false;
+        this.limit = Math.max(this.minLimit, this.limit * BACKOFF_RATIO);
+        this.lastDecreaseNanos = now;
+    }
+}
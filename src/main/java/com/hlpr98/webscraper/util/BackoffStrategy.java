@@ -0,0 +1,75 @@
+package com.hlpr98.webscraper.util;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long to wait before the next retry of a request.
+ * <p>
+ * Randomised strategies (i.e. with jitter) should be preferred when many requests could fail at the same time, so that
+ * their retries are spread out instead of hitting the origin in synchronised waves.
+ */
+@FunctionalInterface
+public interface BackoffStrategy {
+
+    /**
+     * @param attempt       the number of attempts made so far, starting at 1
+     * @param previousDelay the delay before the previous attempt, {@link Duration#ZERO} for the first retry
+     * @return the delay before the next attempt
+     */
+    Duration nextDelay(int attempt, Duration previousDelay);
+
+    /**
+     * Limits the delays of this strategy to the given maximum
+     *
+     * @param maxDelay the maximum delay
+     * @return the capped strategy
+     */
+    default BackoffStrategy capped(Duration maxDelay) {
+        return (attempt, previousDelay) -> {
+            Duration delay = nextDelay(attempt, previousDelay);
+            return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+        };
+    }
+
+    /**
+     * Waits the same delay before every retry
+     *
+     * @param delay the delay
+     * @return the strategy
+     */
+    static BackoffStrategy fixed(Duration delay) {
+        return (attempt, previousDelay) -> delay;
+    }
+
+    /**
+     * Waits {@code baseDelay * multiplier ^ (attempt - 1)} before every retry
+     *
+     * @param baseDelay  the delay before the first retry
+     * @param multiplier the factor by which the delay grows
+     * @return the strategy
+     */
+    static BackoffStrategy exponential(Duration baseDelay, double multiplier) {
+        return (attempt, previousDelay) -> {
+            double delay = baseDelay.toMillis() * Math.pow(multiplier, Math.max(0, attempt - 1));
+            return Duration.ofMillis((long) Math.min(delay, Long.MAX_VALUE));
+        };
+    }
+
+    /**
+     * The "decorrelated jitter" strategy: waits a random delay between {@code baseDelay} and three times the previous
+     * delay, never more than {@code maxDelay}.
+     *
+     * @param baseDelay the minimum delay
+     * @param maxDelay  the maximum delay
+     * @return the strategy
+     */
+    static BackoffStrategy decorrelatedJitter(Duration baseDelay, Duration maxDelay) {
+        return (attempt, previousDelay) -> {
+            long base = baseDelay.toMillis();
+            long upper = Math.max(base, Math.min(maxDelay.toMillis(), previousDelay.toMillis() * 3));
+            long delay = upper > base ? ThreadLocalRandom.current().nextLong(base, upper + 1) : base;
+            return Duration.ofMillis(Math.min(delay, maxDelay.toMillis()));
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package com.hlpr98.webscraper.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Receives the bodies of the responses whole, as the bytes come, and hands them over as in-memory streams once
+ * received. Hence a response is handed over only after its transfer is over, and reading its body never blocks on the
+ * connection, whichever thread it is read on.
+ * <p>
+ * The bodies are bounded in size: a body larger than <code>maxBodyBytes</code>, as declared by its Content-Length or
+ * as received, fails the response with an {@link IOException} and the rest of it is not received.
+ */
+public class BufferingBodyHandler implements HttpResponse.BodyHandler<InputStream> {
+
+    private final int maxBodyBytes;
+
+    /**
+     * @param maxBodyBytes the maximum size of a body as received, i.e. before it is decoded
+     */
+    public BufferingBodyHandler(int maxBodyBytes) {
+        if (maxBodyBytes <= 0) {
+            throw new IllegalArgumentException("Maximum size of body must be positive: " + maxBodyBytes);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<InputStream> apply(HttpResponse.ResponseInfo responseInfo) {
+        long contentLength = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return new BufferingBodySubscriber(this.maxBodyBytes, contentLength);
+    }
+
+    private static class BufferingBodySubscriber implements HttpResponse.BodySubscriber<InputStream> {
+        private final CompletableFuture<InputStream> body = new CompletableFuture<>();
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final int maxBodyBytes;
+        private final long contentLength;
+        private Flow.Subscription subscription;
+        private long received;
+
+        BufferingBodySubscriber(int maxBodyBytes, long contentLength) {
+            this.maxBodyBytes = maxBodyBytes;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public CompletionStage<InputStream> getBody() {
+            return this.body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (this.contentLength > this.maxBodyBytes) {
+                fail(this.contentLength);
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (this.body.isDone()) {
+                return;
+            }
+            for (ByteBuffer buffer : items) {
+                this.received += buffer.remaining();
+            }
+            if (this.received > this.maxBodyBytes) {
+                fail(this.received);
+                return;
+            }
+            this.buffers.addAll(items);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.buffers.clear();
+            this.body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (this.body.isDone()) {
+                return;
+            }
+            byte[] bytes = new byte[(int) this.received];
+            int offset = 0;
+            for (ByteBuffer buffer : this.buffers) {
+                int length = buffer.remaining();
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            this.buffers.clear();
+            this.body.complete(new ByteArrayInputStream(bytes));
+        }
+
+        private void fail(long bytes) {
+            this.buffers.clear();
+            this.subscription.cancel();
+            this.body.completeExceptionally(new IOException(
+                    "Body of " + bytes + " bytes or more exceeds the maximum of " + this.maxBodyBytes + " bytes"));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.hlpr98.webscraper.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * A circuit breaker over the attempts of a {@link RetryingHTTPClient}, which stops sending requests to an origin that
+ * is down or overloaded, so that its urls fail fast instead of running their whole retry ladder.
+ * <ul>
+ *     <li>{@link State#CLOSED}: the attempts are sent, and their outcomes are kept in a window of the last ones. An
+ *     attempt failed if it ended with an exception, a TOO MANY REQUESTS or a 5xx response, and it was slow if it took
+ *     longer than the slow call duration. Once the window is full and the rate of failed or of slow attempts reaches
+ *     its threshold, the breaker opens.</li>
+ *     <li>{@link State#OPEN}: the attempts are not sent but fail with a {@link CircuitBreakerOpenException}, until the
+ *     open duration has passed.</li>
+ *     <li>{@link State#HALF_OPEN}: only a few probe attempts are sent. If any of them fails or is slow, the breaker
+ *     opens again, else once all of them succeeded it closes. A probe cancelled without an outcome, ex: the url was
+ *     given up, gives its place back to another one. If a probe has no outcome within the open duration of the last
+ *     probe sent, the breaker opens again, so that it probes the origin anew rather than waiting for it forever.</li>
+ * </ul>
+ * Each attempt is sent with a {@link Permit} of the breaker, which tells it the outcome of the attempt. A permit is
+ * tagged with the generation of the breaker, i.e. the number of its transitions, it was acquired in: the outcomes of
+ * the attempts sent before the last transition are ignored, ex: the failures of the attempts sent before the breaker
+ * opened don't count as failed probes.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int probes;
+    private final LongSupplier nanoClock;
+
+    /**
+     * The outcomes of the last attempts, as a ring buffer. Bit 0 tells if the attempt failed, bit 1 if it was slow.
+     */
+    private final byte[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int failures;
+    private int slowCalls;
+
+    private State state;
+    private long generation;
+    private long openedAtNanos;
+    private long lastProbeAtNanos;
+    private int permittedProbes;
+    private int succeededProbes;
+
+    /**
+     * @param name                  the name of the breaker in the logs, ex: the domain
+     * @param failureRateThreshold  the rate of failed attempts in the window at which the breaker opens, ex: 0.5
+     * @param slowCallRateThreshold the rate of slow attempts in the window at which the breaker opens, ex: 0.8, or a
+     *                              non-positive value if the breaker doesn't open on slow attempts
+     * @param slowCallDuration      the duration past which an attempt is slow, or <b>NULL</b> if no attempt is slow
+     * @param windowSize            the number of last attempts the rates are measured over
+     * @param openDuration          the time the breaker stays open before letting the probes through
+     * @param probes                the number of probe attempts in the half-open state
+     */
+    public CircuitBreaker(String name, double failureRateThreshold, double slowCallRateThreshold,
+                          Duration slowCallDuration, int windowSize, Duration openDuration, int probes) {
+        this(name, failureRateThreshold, slowCallRateThreshold, slowCallDuration, windowSize, openDuration, probes,
+                System::nanoTime);
+    }
+
+    CircuitBreaker(String name, double failureRateThreshold, double slowCallRateThreshold, Duration slowCallDuration,
+                   int windowSize, Duration openDuration, int probes, LongSupplier nanoClock) {
+        if (failureRateThreshold <= 0 || windowSize <= 0 || probes <= 0) {
+            throw new IllegalArgumentException(
+                    "Failure rate threshold, window size and number of probes should be positive");
+        }
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold > 0 ? slowCallRateThreshold : Double.POSITIVE_INFINITY;
+        this.slowCallNanos = slowCallDuration != null ? slowCallDuration.toNanos() : Long.MAX_VALUE;
+        this.openNanos = openDuration.toNanos();
+        this.probes = probes;
+        this.nanoClock = nanoClock;
+        this.window = new byte[windowSize];
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * Decides if an attempt could be sent. In the half-open state, each permitted attempt takes one of the probes.
+     *
+     * @return the permit to be told the outcome of the attempt, or <b>NULL</b> if the attempt could not be sent
+     */
+    public synchronized Permit tryAcquirePermit() {
+        long nowNanos = this.nanoClock.getAsLong();
+        if (this.state == State.OPEN && nowNanos - this.openedAtNanos >= this.openNanos) {
+            transition(State.HALF_OPEN);
+            this.permittedProbes = 0;
+            this.succeededProbes = 0;
+            log.info("Circuit breaker half-open: {}", this.name);
+        } else if (this.state == State.HALF_OPEN && this.permittedProbes > this.succeededProbes
+                && nowNanos - this.lastProbeAtNanos >= this.openNanos) {
+            log.warn("Circuit breaker probe not answered in time, open again: {}", this.name);
+            open();
+        }
+
+        switch (this.state) {
+            case CLOSED:
+                return new Permit(this.generation);
+            case HALF_OPEN:
+                if (this.permittedProbes < this.probes) {
+                    this.permittedProbes++;
+                    this.lastProbeAtNanos = nowNanos;
+                    return new Permit(this.generation);
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the current state of the breaker
+     */
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    private synchronized void onOutcome(Permit permit, boolean failed, boolean slow) {
+        if (permit.generation != this.generation) {
+            // the outcome of an attempt sent before the last transition
+            return;
+        }
+        switch (this.state) {
+            case CLOSED:
+                record(failed, slow);
+                if (this.windowCount == this.window.length
+                        && (this.failures >= this.failureRateThreshold * this.windowCount
+                        || this.slowCalls >= this.slowCallRateThreshold * this.windowCount)) {
+                    log.warn("Circuit breaker open: {} failures={}/{} slow={}/{}", this.name, this.failures,
+                            this.windowCount, this.slowCalls, this.windowCount);
+                    open();
+                }
+                break;
+            case HALF_OPEN:
+                if (failed || slow) {
+                    log.warn("Circuit breaker probe failed, open again: {}", this.name);
+                    open();
+                } else if (++this.succeededProbes == this.probes) {
+                    log.info("Circuit breaker closed: {}", this.name);
+                    transition(State.CLOSED);
+                    clearWindow();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private synchronized void onCancel(Permit permit) {
+        if (permit.generation == this.generation && this.state == State.HALF_OPEN) {
+            this.permittedProbes--;
+        }
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (this.windowCount == this.window.length) {
+            byte evicted = this.window[this.windowIndex];
+            this.failures -= evicted & 1;
+            this.slowCalls -= (evicted >> 1) & 1;
+        } else {
+            this.windowCount++;
+        }
+        this.window[this.windowIndex] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        this.windowIndex = (this.windowIndex + 1) % this.window.length;
+        this.failures += failed ? 1 : 0;
+        this.slowCalls += slow ? 1 : 0;
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        this.openedAtNanos = this.nanoClock.getAsLong();
+        clearWindow();
+    }
+
+    private void transition(State state) {
+        this.state = state;
+        this.generation++;
+    }
+
+    private void clearWindow() {
+        this.windowIndex = 0;
+        this.windowCount = 0;
+        this.failures = 0;
+        this.slowCalls = 0;
+    }
+
+    /**
+     * The permission to send an attempt, which is told its outcome once. An attempt which ends without an outcome,
+     * ex: cancelled, is told so, in order to give a probe back.
+     */
+    public final class Permit {
+        private final long generation;
+        private final AtomicBoolean released;
+
+        private Permit(long generation) {
+            this.generation = generation;
+            this.released = new AtomicBoolean();
+        }
+
+        public void onResponse(HttpResponse<?> response, long durationNanos) {
+            if (this.released.compareAndSet(false, true)) {
+                onOutcome(this, response.statusCode() == TOO_MANY_REQUESTS || response.statusCode() >= 500,
+                        durationNanos > slowCallNanos);
+            }
+        }
+
+        public void onException(Throwable exception, long durationNanos) {
+            if (this.released.compareAndSet(false, true)) {
+                onOutcome(this, true, durationNanos > slowCallNanos);
+            }
+        }
+
+        public void onCancel() {
+            if (this.released.compareAndSet(false, true)) {
+                CircuitBreaker.this.onCancel(this);
+            }
+        }
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+}
@@ -0,0 +1,14 @@
+package com.hlpr98.webscraper.util;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * The failure of an attempt which was not sent as the {@link CircuitBreaker} of the origin is open. It is never retried.
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+    public CircuitBreakerOpenException(URI uri) {
+        super("Circuit breaker open: " + uri.getHost());
+    }
+}
@@ -0,0 +1,161 @@
+package com.hlpr98.webscraper.util;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A body subscriber which fails the body it delegates to if it is not received in time, ex: when the origin trickles
+ * or stalls it after the headers. The subscription is cancelled, and the reader of a streamed body gets an exception
+ * rather than waiting on the origin past the deadline. The clock stops once the body is received, i.e. on its last
+ * signal, whenever it is read afterwards.
+ * <p>
+ * The timers of all the bodies share a single thread, and the timer of a body is removed once the body is received.
+ * The signals to the delegate stay serial: a deadline expiring while a part of the body is handed over fails the body
+ * right after, on the thread handing it over.
+ */
+class DeadlineBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+    private static final ScheduledThreadPoolExecutor TIMER = timer();
+
+    /**
+     * Neither a part of the body is being handed over, nor the body is over
+     */
+    private static final int IDLE = 0;
+
+    /**
+     * A part of the body is being handed over to the delegate
+     */
+    private static final int SIGNALLING = 1;
+
+    /**
+     * The deadline expired while a part of the body was being handed over, which fails the body once handed over
+     */
+    private static final int EXPIRED = 2;
+
+    /**
+     * The body is over, received or failed, and the delegate gets no more signal
+     */
+    private static final int DONE = 3;
+
+    private final HttpResponse.BodySubscriber<T> delegate;
+    private final long timeoutNanos;
+    private final Supplier<? extends Throwable> exception;
+    private final AtomicInteger state;
+    private volatile Flow.Subscription subscription;
+    private volatile ScheduledFuture<?> timeout;
+
+    /**
+     * @param delegate     the subscriber of the body
+     * @param timeoutNanos the time left to receive the body, from the subscription on
+     * @param exception    the supplier of the exception the body fails with
+     */
+    DeadlineBodySubscriber(HttpResponse.BodySubscriber<T> delegate, long timeoutNanos,
+                           Supplier<? extends Throwable> exception) {
+        this.delegate = delegate;
+        this.timeoutNanos = timeoutNanos;
+        this.exception = exception;
+        this.state = new AtomicInteger(IDLE);
+    }
+
+    @Override
+    public CompletionStage<T> getBody() {
+        return this.delegate.getBody();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        this.delegate.onSubscribe(subscription);
+        this.timeout = TIMER.schedule(this::expire, Math.max(0, this.timeoutNanos), TimeUnit.NANOSECONDS);
+        // the body could be over already, before its timer was set
+        if (this.state.get() == DONE) {
+            this.timeout.cancel(false);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        if (!this.state.compareAndSet(IDLE, SIGNALLING)) {
+            return;
+        }
+        try {
+            this.delegate.onNext(item);
+        } finally {
+            if (!this.state.compareAndSet(SIGNALLING, IDLE)) {
+                // the deadline expired meanwhile
+                this.state.set(DONE);
+                fail();
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // the signals of the publisher are serial, hence no part of the body is being handed over
+        if (this.state.compareAndSet(IDLE, DONE)) {
+            cancelTimeout();
+            this.delegate.onError(throwable);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (this.state.compareAndSet(IDLE, DONE)) {
+            cancelTimeout();
+            this.delegate.onComplete();
+        }
+    }
+
+    /**
+     * @return the number of bodies whose timer is set, i.e. not received yet
+     */
+    static int pendingTimeouts() {
+        return TIMER.getQueue().size();
+    }
+
+    private void expire() {
+        while (true) {
+            int current = this.state.get();
+            if (current == IDLE && this.state.compareAndSet(IDLE, DONE)) {
+                fail();
+                return;
+            }
+            if (current == SIGNALLING && this.state.compareAndSet(SIGNALLING, EXPIRED)) {
+                return;
+            }
+            if (current == EXPIRED || current == DONE) {
+                return;
+            }
+        }
+    }
+
+    private void fail() {
+        this.subscription.cancel();
+        this.delegate.onError(this.exception.get());
+    }
+
+    private void cancelTimeout() {
+        ScheduledFuture<?> timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor timer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "body-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
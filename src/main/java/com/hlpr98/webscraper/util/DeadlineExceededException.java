@@ -0,0 +1,16 @@
+package com.hlpr98.webscraper.util;
+
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+/**
+ * The failure of a request whose deadline has passed, or is too close for a retry to finish before it. Its cause, if
+ * any, is the failure of the last attempt. It is never retried.
+ */
+public class DeadlineExceededException extends HttpTimeoutException {
+
+    public DeadlineExceededException(URI uri, Duration deadline) {
+        super("Deadline exceeded: deadline=" + deadline + " path=" + uri);
+    }
+}
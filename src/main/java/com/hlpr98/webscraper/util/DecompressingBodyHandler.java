@@ -0,0 +1,294 @@
+package com.hlpr98.webscraper.util;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes the streamed bodies of the responses as per their Content-Encoding, while they are read. The supported
+ * encodings, to be sent as Accept-Encoding (see {@link #ACCEPT_ENCODING}), are:
+ * <ul>
+ *     <li><code>gzip</code></li>
+ *     <li><code>deflate</code>, zlib wrapped or raw as sent by some servers</li>
+ *     <li><code>br</code>, if the pure Java decoder <code>org.brotli:dec</code> is on the classpath</li>
+ * </ul>
+ * The decoders are created on the first read of the body, so that reading their headers never blocks the thread
+ * handing over the response. Bodies in an encoding which is not supported fail on the first read.
+ * <p>
+ * The bodies are bounded in size once decoded, so that a small body which decodes to a huge one, ex: a gzip bomb,
+ * fails rather than filling the memory of its parser: reading past <code>maxDecodedBytes</code> throws an
+ * {@link IOException}.
+ */
+public class DecompressingBodyHandler implements HttpResponse.BodyHandler<InputStream> {
+
+    private static final String BROTLI_DECODER = "org.brotli.dec.BrotliInputStream";
+    private static final Constructor<? extends InputStream> BROTLI = brotliDecoder();
+
+    /**
+     * The value of the Accept-Encoding header advertising the supported encodings
+     */
+    public static final String ACCEPT_ENCODING = BROTLI != null ? "gzip, deflate, br" : "gzip, deflate";
+
+    private final HttpResponse.BodyHandler<InputStream> handler;
+    private final long maxDecodedBytes;
+    private final LongConsumer decodedBytes;
+
+    /**
+     * @param handler         the handler of the bodies as received, ex:
+     *                        {@link HttpResponse.BodyHandlers#ofInputStream()}
+     * @param maxDecodedBytes the maximum size of a body once decoded, or {@link Long#MAX_VALUE} if unbounded
+     * @param decodedBytes    the consumer of the number of bytes read from the decoded bodies, or <b>NULL</b> if not
+     *                        counted
+     */
+    public DecompressingBodyHandler(HttpResponse.BodyHandler<InputStream> handler, long maxDecodedBytes,
+                                    LongConsumer decodedBytes) {
+        if (maxDecodedBytes <= 0) {
+            throw new IllegalArgumentException("Maximum size of decoded body must be positive: " + maxDecodedBytes);
+        }
+        this.handler = handler;
+        this.maxDecodedBytes = maxDecodedBytes;
+        this.decodedBytes = decodedBytes;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<InputStream> apply(HttpResponse.ResponseInfo responseInfo) {
+        List<String> encodings = new ArrayList<>();
+        for (String value : responseInfo.headers().allValues("Content-Encoding")) {
+            for (String encoding : value.split(",")) {
+                String trimmed = encoding.trim().toLowerCase(Locale.ROOT);
+                if (!trimmed.isEmpty() && !trimmed.equals("identity")) {
+                    encodings.add(trimmed);
+                }
+            }
+        }
+
+        HttpResponse.BodySubscriber<InputStream> subscriber = this.handler.apply(responseInfo);
+        if (encodings.isEmpty() && this.decodedBytes == null && this.maxDecodedBytes == Long.MAX_VALUE) {
+            return subscriber;
+        }
+        return HttpResponse.BodySubscribers.mapping(subscriber, body -> {
+            InputStream decoded = body;
+            // the encodings are listed in the order they were applied in
+            for (int i = encodings.size() - 1; i >= 0; i--) {
+                decoded = new LazyDecodingInputStream(decoded, encodings.get(i));
+            }
+            if (this.maxDecodedBytes != Long.MAX_VALUE) {
+                decoded = new BoundedInputStream(decoded, this.maxDecodedBytes);
+            }
+            return this.decodedBytes != null ? new CountingInputStream(decoded, this.decodedBytes) : decoded;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Constructor<? extends InputStream> brotliDecoder() {
+        try {
+            return (Constructor<? extends InputStream>) Class.forName(BROTLI_DECODER).getConstructor(InputStream.class);
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the decoder of the encoding over the encoded stream
+     *
+     * @throws IOException if the encoding is not supported or its header is corrupt
+     */
+    static InputStream decoder(InputStream encoded, String encoding) throws IOException {
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(encoded);
+            case "deflate":
+                return inflater(encoded);
+            case "br":
+                if (BROTLI != null) {
+                    try {
+                        return BROTLI.newInstance(encoded);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause() instanceof IOException
+                                ? (IOException) ex.getCause()
+                                : new IOException("Exception while creating brotli decoder", ex.getCause());
+                    } catch (InstantiationException | IllegalAccessException ex) {
+                        throw new IOException("Exception while creating brotli decoder", ex);
+                    }
+                }
+                // fall through
+            default:
+                throw new IOException("Unsupported Content-Encoding: " + encoding);
+        }
+    }
+
+    /**
+     * Inflates a zlib wrapped stream, or a raw deflate stream if the first two bytes are not a zlib header
+     */
+    private static InputStream inflater(InputStream encoded) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(encoded, 2);
+        int first = in.read();
+        int second = first != -1 ? in.read() : -1;
+        if (second != -1) {
+            in.unread(second);
+        }
+        if (first != -1) {
+            in.unread(first);
+        }
+
+        boolean zlib = first != -1 && second != -1 && (first & 0x0F) == 8 && ((first << 8) | second) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(in, inflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates the decoder on the first read. An empty body, ex: the one of a 304, is decoded as empty.
+     */
+    private static class LazyDecodingInputStream extends InputStream {
+        private final String encoding;
+        private InputStream in;
+        private boolean started;
+
+        LazyDecodingInputStream(InputStream encoded, String encoding) {
+            this.in = encoded;
+            this.encoding = encoding;
+        }
+
+        private InputStream decoded() throws IOException {
+            if (!this.started) {
+                this.started = true;
+                PushbackInputStream encoded = new PushbackInputStream(this.in, 1);
+                this.in = encoded;
+                int first = encoded.read();
+                if (first != -1) {
+                    encoded.unread(first);
+                    this.in = decoder(encoded, this.encoding);
+                }
+            }
+            return this.in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return decoded().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return this.started ? this.in.available() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+
+    /**
+     * Fails the reads once more bytes than the maximum are read
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long read;
+
+        BoundedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long bytes) throws IOException {
+            this.read += bytes;
+            if (this.read > this.maxBytes) {
+                throw new IOException("Decoded body of " + this.read + " bytes or more exceeds the maximum of "
+                        + this.maxBytes + " bytes");
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final LongConsumer bytes;
+
+        CountingInputStream(InputStream in, LongConsumer bytes) {
+            super(in);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                this.bytes.accept(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                this.bytes.accept(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.bytes.accept(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.hlpr98.webscraper.util;
+
+import com.hlpr98.webscraper.metrics.Histogram;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a {@link RetryingHTTPClient} sends a hedge, i.e. a second identical GET, for an attempt which has not
+ * answered yet: either after a fixed delay, or after a percentile of the latencies of the responses seen so far, ex:
+ * the 95th. The first response of the two is taken, and the other attempt is cancelled.
+ * <p>
+ * The hedges are limited to a share of the requests by a {@link RetryBudget}, so that they could never amplify the load
+ * on an origin beyond that share, ex: when all of its responses turn slow at once.
+ */
+public class HedgingPolicy {
+
+    /**
+     * The number of hedges that could be sent before the budget is topped up by the requests
+     */
+    private static final int BUDGET_RESERVE = 10;
+
+    /**
+     * The number of latencies recorded before the percentile is trusted, and between two updates of the delay
+     */
+    private static final int SAMPLES_PER_UPDATE = 50;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final RetryBudget budget;
+    private final Histogram latencies;
+    private final AtomicLong samples;
+    private volatile long delayNanos;
+
+    private HedgingPolicy(double percentile, Duration minDelay, double budgetRatio) {
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay != null ? minDelay.toNanos() : 0;
+        this.budget = new RetryBudget(budgetRatio, BUDGET_RESERVE);
+        this.latencies = percentile > 0 ? new Histogram() : null;
+        this.samples = new AtomicLong();
+        this.delayNanos = percentile > 0 ? -1 : this.minDelayNanos;
+    }
+
+    /**
+     * Hedges the attempts which have not answered after a fixed delay
+     *
+     * @param delay       the delay after which an attempt is hedged
+     * @param budgetRatio the maximum share of hedges over the requests, ex: 0.05
+     */
+    public static HedgingPolicy fixedDelay(Duration delay, double budgetRatio) {
+        return new HedgingPolicy(0, delay, budgetRatio);
+    }
+
+    /**
+     * Hedges the attempts which have not answered after a percentile of the latencies of the responses. No attempt is
+     * hedged until enough latencies are recorded.
+     *
+     * @param percentile  the percentile of the latencies, ex: 0.95
+     * @param minDelay    the minimum delay after which an attempt is hedged, or <b>NULL</b> if none
+     * @param budgetRatio the maximum share of hedges over the requests, ex: 0.05
+     */
+    public static HedgingPolicy percentile(double percentile, Duration minDelay, double budgetRatio) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile should be between 0 and 1");
+        }
+        return new HedgingPolicy(percentile, minDelay, budgetRatio);
+    }
+
+    /**
+     * @return the delay in nanoseconds after which an attempt is hedged, or a negative value if it is not hedged
+     */
+    public long delayNanos() {
+        return this.delayNanos;
+    }
+
+    /**
+     * Records a request, which tops up the budget of the hedges
+     */
+    public void onRequest() {
+        this.budget.onRequest();
+    }
+
+    /**
+     * Withdraws a hedge from the budget
+     *
+     * @return <b>TRUE</b> if the hedge could be sent
+     */
+    public boolean tryHedge() {
+        return this.budget.tryRetry();
+    }
+
+    /**
+     * Records the latency of a response, until its headers were received
+     */
+    public void onLatency(long durationNanos) {
+        if (this.latencies == null) {
+            return;
+        }
+        this.latencies.record(durationNanos);
+        if (this.samples.incrementAndGet() % SAMPLES_PER_UPDATE == 0) {
+            long valueAt = this.latencies.snapshot().valueAt(this.percentile);
+            this.delayNanos = Math.max(this.minDelayNanos, valueAt);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.hlpr98.webscraper.util;
+
+/**
+ * A set of longs, kept in an open addressed table of primitives. It takes about 16 bytes per value, against about 60
+ * bytes of a {@link java.util.HashSet} of {@link Long}s, and no object per value.
+ * <p>
+ * Note: it is not thread safe.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private boolean containsEmpty;
+    private int size;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of values expected, so that the table doesn't have to grow up to it
+     */
+    public LongHashSet(int expectedSize) {
+        this.table = new long[tableSizeFor(expectedSize)];
+    }
+
+    /**
+     * @return true if the value was not present
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !this.containsEmpty;
+            this.containsEmpty = true;
+            this.size += added ? 1 : 0;
+            return added;
+        }
+
+        int slot = slotOf(this.table, value);
+        if (this.table[slot] == value) {
+            return false;
+        }
+        this.table[slot] = value;
+        if (++this.size > this.table.length / 2) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return this.containsEmpty;
+        }
+        return this.table[slotOf(this.table, value)] == value;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private void grow() {
+        long[] grown = new long[this.table.length * 2];
+        for (long value : this.table) {
+            if (value != EMPTY) {
+                grown[slotOf(grown, value)] = value;
+            }
+        }
+        this.table = grown;
+    }
+
+    /**
+     * Linear probing from the mixed value, up to the slot holding the value or the first empty one
+     */
+    private static int slotOf(long[] table, long value) {
+        int mask = table.length - 1;
+        long mixed = value * 0x9e3779b97f4a7c15L;
+        int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+        while (table[slot] != EMPTY && table[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int size = MIN_CAPACITY;
+        while (size / 2 < expectedSize) {
+            size *= 2;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,55 @@
+package com.hlpr98.webscraper.util;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Reads the <a href="https://www.rfc-editor.org/rfc/rfc9110#field.retry-after">Retry-After</a> header of a response
+ */
+public final class RetryAfter {
+
+    public static final String HEADER = "Retry-After";
+
+    private RetryAfter() {
+    }
+
+    /**
+     * @param response the response
+     * @return the delay asked for by the origin, if any
+     */
+    public static Optional<Duration> of(HttpResponse<?> response) {
+        return response.headers()
+                .firstValue(HEADER)
+                .flatMap(value -> parse(value, Instant.now()));
+    }
+
+    /**
+     * Parses the value of the header, which is either a number of seconds or an HTTP date
+     *
+     * @param value the header value
+     * @param now   the current instant
+     * @return the delay, or empty if the value is not valid
+     */
+    static Optional<Duration> parse(String value, Instant now) {
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? Optional.empty() : Optional.of(Duration.ofSeconds(seconds));
+        } catch (NumberFormatException ignored) {
+            // not delta-seconds, try HTTP date
+        }
+
+        try {
+            Instant retryAt = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            Duration delay = Duration.between(now, retryAt);
+            return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+        } catch (DateTimeParseException ex) {
+            return Optional.empty();
+        }
+    }
+}
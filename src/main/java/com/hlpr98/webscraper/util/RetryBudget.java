@@ -0,0 +1,55 @@
+package com.hlpr98.webscraper.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the retries to a share of the requests, so that the retries could never amplify the load on a struggling
+ * origin beyond that share.
+ * <p>
+ * Every request deposits {@code retryRatio} tokens and every retry withdraws a whole token. The balance is capped at
+ * {@code maxBalance}, which is also the number of retries permitted before any deposit.
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    /**
+     * @param retryRatio the maximum share of retries, ex: 0.2 allows one retry per five requests
+     * @param maxBalance the maximum number of retries that could be saved up
+     */
+    public RetryBudget(double retryRatio, int maxBalance) {
+        if (retryRatio < 0) {
+            throw new IllegalArgumentException("Retry ratio should not be negative");
+        }
+        this.deposit = (long) (retryRatio * SCALE);
+        this.maxBalance = Math.max(1, maxBalance) * SCALE;
+        this.balance = new AtomicLong(this.maxBalance);
+    }
+
+    /**
+     * Records a request, i.e. the first attempt
+     */
+    public void onRequest() {
+        this.balance.accumulateAndGet(this.deposit, (current, deposit) -> Math.min(this.maxBalance, current + deposit));
+    }
+
+    /**
+     * Withdraws a token for a retry if one is available
+     *
+     * @return <b>TRUE</b> if the retry is permitted
+     */
+    public boolean tryRetry() {
+        long current;
+        do {
+            current = this.balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!this.balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+}
@@ -3,15 +3,25 @@ package com.hlpr98.webscraper.util;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.function.Predicate;
 
 
@@ -43,20 +53,36 @@ public class RetryingHTTPClient<T> {
     /**
      * By default, it waits 5 seconds between two retries.
      */
-    private static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(5);
+
+    /**
+     * By default, a Retry-After longer than 5 minutes is cut down to 5 minutes.
+     */
+    private static final Duration DEFAULT_MAX_RETRY_AFTER = Duration.ofMinutes(5);
 
     /**
      * If there is no {@link HttpResponse.BodyHandler} specified, then discard entire incoming entity in a response.
      */
     private static final HttpResponse.BodyHandler<Void> DEFAULT_BODY_HANDLER = HttpResponse.BodyHandlers.discarding();
 
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
     private final HttpClient client;
     private final HttpResponse.BodyHandler<T> handler;
     private final Predicate<HttpResponse<T>> retryOnResponse;
     private final Predicate<Throwable> retryOnThrowable;
     private final int maxAttempts;
     private final boolean throwWhenRetryOnResponseExceeded;
-    private final Executor delayedExecutor;
+    private final BackoffStrategy backoff;
+    private final RetryBudget retryBudget;
+    private final Duration maxRetryAfter;
+    private final Listener listener;
+    private final Map<String, String> defaultHeaders;
+    private final Duration requestTimeout;
+    private final Duration deadline;
+    private final CircuitBreaker circuitBreaker;
+    private final HedgingPolicy hedgingPolicy;
 
     private RetryingHTTPClient(Builder<T> builder) {
         this.client = builder.client != null ? builder.client : HttpClient.newHttpClient();
@@ -66,19 +92,24 @@ public class RetryingHTTPClient<T> {
         this.retryOnThrowable = builder.retryOnThrowable != null ? builder.retryOnThrowable : DEFAULT_RETRY_ON_THROWABLE;
         this.throwWhenRetryOnResponseExceeded = builder.throwWhenRetryOnResponseExceeded != null
                 ? builder.throwWhenRetryOnResponseExceeded : DEFAULT_THROW_WHEN_RETRY_ON_RESPONSE_EXCEEDED;
-
-        // TODO: implement exponential backoff
-        Duration delay = builder.retryDelay != null ? builder.retryDelay : DEFAULT_RETRY_DELAY;
-        this.delayedExecutor = CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS);
+        this.backoff = builder.backoff != null ? builder.backoff : BackoffStrategy.fixed(DEFAULT_RETRY_DELAY);
+        this.retryBudget = builder.retryBudget;
+        this.maxRetryAfter = builder.maxRetryAfter != null ? builder.maxRetryAfter : DEFAULT_MAX_RETRY_AFTER;
+        this.listener = Listener.all(builder.listeners);
+        this.defaultHeaders = Map.copyOf(builder.defaultHeaders);
+        this.requestTimeout = builder.requestTimeout;
+        this.deadline = builder.deadline;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.hedgingPolicy = builder.hedgingPolicy;
     }
 
     /**
-     * Retry on all Server Response (status code >= 500).
+     * Retry on all Server Response (status code >= 500) and on TOO MANY REQUESTS (status code 429).
      *
      * @return default implementation of retry-on-response based on a status code.
      */
     private static <T> Predicate<HttpResponse<T>> defaultRetryOnResponse() {
-        return resp -> resp.statusCode() >= 500;
+        return resp -> resp.statusCode() >= 500 || resp.statusCode() == TOO_MANY_REQUESTS;
     }
 
     /**
@@ -91,6 +122,53 @@ public class RetryingHTTPClient<T> {
         return new HTTPInvocation(request).invoke();
     }
 
+    /**
+     * Executes the request with the same retries as {@link #execute(HttpRequest)}, but blocks the calling thread until
+     * the response, including the delays between the retries. It is meant to be called from virtual threads.
+     *
+     * @return the response
+     * @throws IOException          if the last attempt failed with an exception
+     * @throws RuntimeException     if the retries on response are exceeded, and configured to throw
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public HttpResponse<T> send(HttpRequest request) throws IOException, InterruptedException {
+        return new HTTPInvocation(request).invokeBlocking();
+    }
+
+    /**
+     * Copies the request along with the {@link #defaultHeaders} it doesn't have, and the {@link #requestTimeout} if it
+     * has none
+     */
+    private HttpRequest withDefaults(HttpRequest request) {
+        boolean hasHeaders = this.defaultHeaders.keySet().stream()
+                .allMatch(name -> request.headers().firstValue(name).isPresent());
+        boolean hasTimeout = this.requestTimeout == null || request.timeout().isPresent();
+        if (hasHeaders && hasTimeout) {
+            return request;
+        }
+
+        HttpRequest.Builder builder = copy(request);
+        request.timeout().or(() -> Optional.ofNullable(this.requestTimeout)).ifPresent(builder::timeout);
+        this.defaultHeaders.forEach((name, value) -> {
+            if (request.headers().firstValue(name).isEmpty()) {
+                builder.header(name, value);
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * @return a builder of a copy of the request, without its timeout
+     */
+    private static HttpRequest.Builder copy(HttpRequest request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri())
+                .method(request.method(), request.bodyPublisher().orElse(HttpRequest.BodyPublishers.noBody()))
+                .expectContinue(request.expectContinue());
+        request.version().ifPresent(builder::version);
+        request.headers().map().forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+        return builder;
+    }
+
     /**
      * Creates a builder without an explicit {@link HttpResponse.BodyHandler} which means that the default
      * {@link #DEFAULT_BODY_HANDLER} (discarding) with a return type {@link Void}.
@@ -113,14 +191,39 @@ public class RetryingHTTPClient<T> {
         return new Builder<>(bodyHandler);
     }
 
+    /**
+     * Creates a builder of a client which asks for compressed bodies with Accept-Encoding, and decodes them while they
+     * are read, see {@link DecompressingBodyHandler}
+     *
+     * @param bodyHandler     the handler of the bodies as received, ex:
+     *                        {@link HttpResponse.BodyHandlers#ofInputStream()}
+     * @param maxDecodedBytes the maximum size of a body once decoded, or {@link Long#MAX_VALUE} if unbounded
+     * @param decodedBytes    the consumer of the number of bytes read from the decoded bodies, or <b>NULL</b> if not
+     *                        counted
+     * @return a builder with a decompressing body-handler
+     */
+    public static Builder<InputStream> decompressingBuilder(HttpResponse.BodyHandler<InputStream> bodyHandler,
+                                                            long maxDecodedBytes, LongConsumer decodedBytes) {
+        return new Builder<>(new DecompressingBodyHandler(bodyHandler, maxDecodedBytes, decodedBytes))
+                .withDefaultHeader("Accept-Encoding", DecompressingBodyHandler.ACCEPT_ENCODING);
+    }
+
     public static final class Builder<T> {
         private final HttpResponse.BodyHandler<T> bodyHandler;
         private HttpClient client;
         private Integer maxAttempts;
-        private Duration retryDelay;
+        private BackoffStrategy backoff;
+        private RetryBudget retryBudget;
+        private Duration maxRetryAfter;
         private Predicate<HttpResponse<T>> retryOnResponse;
         private Predicate<Throwable> retryOnThrowable;
         private Boolean throwWhenRetryOnResponseExceeded;
+        private final List<Listener> listeners = new ArrayList<>();
+        private final Map<String, String> defaultHeaders = new LinkedHashMap<>();
+        private Duration requestTimeout;
+        private Duration deadline;
+        private CircuitBreaker circuitBreaker;
+        private HedgingPolicy hedgingPolicy;
 
         public Builder(HttpResponse.BodyHandler<T> bodyHandler) {
             this.bodyHandler = bodyHandler;
@@ -136,8 +239,32 @@ public class RetryingHTTPClient<T> {
             return this;
         }
 
+        /**
+         * Waits the same delay before every retry. Same as {@code withBackoff(BackoffStrategy.fixed(retryDelay))}
+         */
         public Builder<T> withRetryDelay(Duration retryDelay) {
-            this.retryDelay = retryDelay;
+            this.backoff = BackoffStrategy.fixed(retryDelay);
+            return this;
+        }
+
+        public Builder<T> withBackoff(BackoffStrategy backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        /**
+         * Limits the retries of all the requests executed by the client to a share of those requests
+         */
+        public Builder<T> withRetryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * The maximum delay honoured from the Retry-After header of TOO MANY REQUESTS and SERVICE UNAVAILABLE responses
+         */
+        public Builder<T> withMaxRetryAfter(Duration maxRetryAfter) {
+            this.maxRetryAfter = maxRetryAfter;
             return this;
         }
 
@@ -156,31 +283,208 @@ public class RetryingHTTPClient<T> {
             return this;
         }
 
+        /**
+         * Notifies the listener of every attempt and retry, ex: to record metrics. The listeners are notified in the
+         * order they were added in. A <b>NULL</b> listener is ignored.
+         */
+        public Builder<T> withListener(Listener listener) {
+            if (listener != null) {
+                this.listeners.add(listener);
+            }
+            return this;
+        }
+
+        /**
+         * Adds the header to the requests which don't have it
+         */
+        public Builder<T> withDefaultHeader(String name, String value) {
+            this.defaultHeaders.put(name, value);
+            return this;
+        }
+
+        /**
+         * The timeout of each attempt of the requests which don't have one, until the headers of the response are
+         * received. An attempt which times out fails with a {@link java.net.http.HttpTimeoutException}.
+         */
+        public Builder<T> withRequestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * The time budget of each request, across all of its attempts and the delays between them, and the reading of
+         * its body. The timeout of each attempt is cut down to the time left, no retry is made if it could not finish
+         * in time, and a body not received in time fails. The request then fails with a
+         * {@link DeadlineExceededException}.
+         */
+        public Builder<T> withDeadline(Duration deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * Sends the attempts only while the circuit breaker permits them, the other ones fail with a
+         * {@link CircuitBreakerOpenException} without being retried. Each attempt tells its permit its outcome.
+         */
+        public Builder<T> withCircuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Hedges the attempts of the GET requests which have not answered after the delay of the policy, with a second
+         * identical attempt, see {@link HedgingPolicy}
+         */
+        public Builder<T> withHedging(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
         public RetryingHTTPClient<T> build() {
             return new RetryingHTTPClient<>(this);
         }
     }
 
+    /**
+     * Listens to the attempts made by the client. The callbacks are invoked on the threads completing the requests, so
+     * they should be quick and must not throw.
+     */
+    public interface Listener {
+
+        /**
+         * Invoked before sending the request
+         *
+         * @param attempt the attempt number, starting from 1
+         */
+        default void onAttempt(HttpRequest request, int attempt) {
+        }
+
+        /**
+         * Invoked when the response headers are received, i.e. the duration doesn't include reading a streamed body
+         */
+        default void onResponse(HttpRequest request, HttpResponse<?> response, long durationNanos) {
+        }
+
+        /**
+         * Invoked when an attempt fails with an exception
+         */
+        default void onException(HttpRequest request, Throwable exception, long durationNanos) {
+        }
+
+        /**
+         * Invoked when a retry is scheduled
+         *
+         * @param nextAttempt the number of the attempt to be made
+         * @param delay       the delay before the attempt
+         */
+        default void onRetry(HttpRequest request, int nextAttempt, Duration delay) {
+        }
+
+        /**
+         * Invoked when a hedge of an attempt is sent, before its {@link #onAttempt(HttpRequest, int)}
+         *
+         * @param attempt the number of the attempt hedged
+         */
+        default void onHedge(HttpRequest request, int attempt) {
+        }
+
+        /**
+         * Invoked when an attempt is cancelled, as the hedge of the attempt answered first or the other way round
+         */
+        default void onCancel(HttpRequest request, long durationNanos) {
+        }
+
+        /**
+         * @return a listener notifying each of the listeners in order, or <b>NULL</b> if there is none
+         */
+        static Listener all(List<Listener> listeners) {
+            if (listeners.isEmpty()) {
+                return null;
+            }
+            if (listeners.size() == 1) {
+                return listeners.get(0);
+            }
+            List<Listener> copy = List.copyOf(listeners);
+            return new Listener() {
+                @Override
+                public void onAttempt(HttpRequest request, int attempt) {
+                    copy.forEach(listener -> listener.onAttempt(request, attempt));
+                }
+
+                @Override
+                public void onResponse(HttpRequest request, HttpResponse<?> response, long durationNanos) {
+                    copy.forEach(listener -> listener.onResponse(request, response, durationNanos));
+                }
+
+                @Override
+                public void onException(HttpRequest request, Throwable exception, long durationNanos) {
+                    copy.forEach(listener -> listener.onException(request, exception, durationNanos));
+                }
+
+                @Override
+                public void onRetry(HttpRequest request, int nextAttempt, Duration delay) {
+                    copy.forEach(listener -> listener.onRetry(request, nextAttempt, delay));
+                }
+
+                @Override
+                public void onHedge(HttpRequest request, int attempt) {
+                    copy.forEach(listener -> listener.onHedge(request, attempt));
+                }
+
+                @Override
+                public void onCancel(HttpRequest request, long durationNanos) {
+                    copy.forEach(listener -> listener.onCancel(request, durationNanos));
+                }
+            };
+        }
+    }
+
     protected class HTTPInvocation {
 
         private final HttpRequest request;
+        private final HttpResponse.BodyHandler<T> bodyHandler;
         private final AtomicInteger attempts;
+        private final long deadlineNanos;
+        private volatile Duration previousDelay;
+        private volatile long attemptStartNanos;
+        private volatile boolean deadlineTooClose;
 
         protected HTTPInvocation(HttpRequest request) {
-            this.request = request;
+            this.request = withDefaults(request);
             this.attempts = new AtomicInteger();
+            this.deadlineNanos = deadline != null ? System.nanoTime() + deadline.toNanos() : 0;
+            this.bodyHandler = deadline != null ? this::deadlineBodySubscriber : handler;
+            this.previousDelay = Duration.ZERO;
+            if (retryBudget != null) {
+                retryBudget.onRequest();
+            }
+            if (hedgingPolicy != null) {
+                hedgingPolicy.onRequest();
+            }
         }
 
         /**
-         * Executes the request and handles exceptions, incorrect responses and retries with a configured
-         * delay.
+         * Executes the request and handles exceptions, incorrect responses and retries with a delay decided by the
+         * configured {@link BackoffStrategy}.
          *
          * @return a completable future with a completed response or failed in
          * case of any exception.
          */
         protected CompletableFuture<HttpResponse<T>> invoke() {
-            attempts.incrementAndGet();
-            return client.sendAsync(request, handler)
+            if (remainingNanos() <= 0) {
+                return CompletableFuture.failedFuture(deadlineExceeded(null));
+            }
+            CircuitBreaker.Permit permit = circuitBreaker != null ? circuitBreaker.tryAcquirePermit() : null;
+            if (circuitBreaker != null && permit == null) {
+                return CompletableFuture.failedFuture(new CircuitBreakerOpenException(request.uri()));
+            }
+            int attempt = attempts.incrementAndGet();
+            attemptStartNanos = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> sent = hedges()
+                    ? new HedgedAttempt(attempt, permit).result
+                    : send(attempt, permit).outcome;
+
+            return sent
                     .thenApply(resp -> {
                         if (retryOnResponse.test(resp)) {
                             return attemptRetry(request, resp, null);
@@ -199,6 +503,207 @@ public class RetryingHTTPClient<T> {
                     .thenCompose(Function.identity());
         }
 
+        /**
+         * Same as {@link #invoke()}, but blocks the calling thread for the requests and the delays between them. It is
+         * meant for the threads which are cheap to block, i.e. virtual threads.
+         *
+         * @return the response
+         * @throws IOException          if the last attempt failed with an exception
+         * @throws InterruptedException if interrupted while waiting for a response or a retry
+         */
+        protected HttpResponse<T> invokeBlocking() throws IOException, InterruptedException {
+            while (true) {
+                if (remainingNanos() <= 0) {
+                    throw deadlineExceeded(null);
+                }
+                CircuitBreaker.Permit permit = circuitBreaker != null ? circuitBreaker.tryAcquirePermit() : null;
+                if (circuitBreaker != null && permit == null) {
+                    throw new CircuitBreakerOpenException(request.uri());
+                }
+                int attempt = attempts.incrementAndGet();
+                attemptStartNanos = System.nanoTime();
+                HttpResponse<T> response;
+                try {
+                    response = hedges() ? sendHedgedBlocking(attempt, permit) : sendBlocking(attempt, permit);
+                } catch (IOException ex) {
+                    Duration delay = retryOnThrowable.test(ex) ? prepareRetry(null) : null;
+                    if (delay == null) {
+                        throw deadlineTooClose ? deadlineExceeded(ex) : ex;
+                    }
+                    Thread.sleep(delay.toMillis());
+                    continue;
+                }
+
+                if (!retryOnResponse.test(response)) {
+                    return response;
+                }
+                Duration delay = prepareRetry(response);
+                if (delay == null) {
+                    if (throwWhenRetryOnResponseExceeded && deadlineTooClose) {
+                        discard(response);
+                        throw deadlineExceeded(null);
+                    }
+                    if (throwWhenRetryOnResponseExceeded) {
+                        throw retriesExceeded(response);
+                    }
+                    return response;
+                }
+                Thread.sleep(delay.toMillis());
+            }
+        }
+
+        /**
+         * @return <b>TRUE</b> if the attempts of the request are hedged, i.e. it is a GET and the {@link #hedgingPolicy}
+         * has a delay
+         */
+        private boolean hedges() {
+            return hedgingPolicy != null && "GET".equals(request.method()) && hedgingPolicy.delayNanos() >= 0;
+        }
+
+        /**
+         * Sends an attempt. The {@link #listener}, the {@link #hedgingPolicy} and the permit of the
+         * {@link #circuitBreaker} are notified of its outcome before the outcome completes.
+         *
+         * @param permit the permit of the circuit breaker to send the attempt with, or <b>NULL</b> if there is none
+         */
+        private Attempt send(int attempt, CircuitBreaker.Permit permit) {
+            if (listener == null && hedgingPolicy == null && permit == null) {
+                CompletableFuture<HttpResponse<T>> exchange = client.sendAsync(attemptRequest(), bodyHandler);
+                return new Attempt(exchange, exchange);
+            }
+
+            if (listener != null) {
+                listener.onAttempt(request, attempt);
+            }
+            long startNanos = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> exchange = client.sendAsync(attemptRequest(), bodyHandler);
+            CompletableFuture<HttpResponse<T>> outcome = exchange.whenComplete((resp, ex) -> {
+                long durationNanos = System.nanoTime() - startNanos;
+                if (ex == null && hedgingPolicy != null) {
+                    hedgingPolicy.onLatency(durationNanos);
+                }
+                if (permit != null) {
+                    if (ex == null) {
+                        permit.onResponse(resp, durationNanos);
+                    } else if (ex instanceof CancellationException) {
+                        permit.onCancel();
+                    } else {
+                        permit.onException(ex, durationNanos);
+                    }
+                }
+                if (listener == null) {
+                    return;
+                }
+                if (ex == null) {
+                    listener.onResponse(request, resp, durationNanos);
+                } else if (ex instanceof CancellationException) {
+                    listener.onCancel(request, durationNanos);
+                } else {
+                    listener.onException(request, ex, durationNanos);
+                }
+            });
+            return new Attempt(exchange, outcome);
+        }
+
+        /**
+         * Same as {@link #send(int, CircuitBreaker.Permit)}, but blocks the calling thread until the response
+         */
+        private HttpResponse<T> sendBlocking(int attempt, CircuitBreaker.Permit permit)
+                throws IOException, InterruptedException {
+            if (listener != null) {
+                listener.onAttempt(request, attempt);
+            }
+            long startNanos = System.nanoTime();
+            HttpResponse<T> response = null;
+            try {
+                response = client.send(attemptRequest(), bodyHandler);
+            } catch (IOException ex) {
+                long durationNanos = System.nanoTime() - startNanos;
+                if (permit != null) {
+                    permit.onException(ex, durationNanos);
+                }
+                if (listener != null) {
+                    listener.onException(request, ex, durationNanos);
+                }
+                throw ex;
+            } finally {
+                if (response == null && permit != null) {
+                    // interrupted, the attempt has no outcome
+                    permit.onCancel();
+                }
+            }
+            long durationNanos = System.nanoTime() - startNanos;
+            if (permit != null) {
+                permit.onResponse(response, durationNanos);
+            }
+            if (listener != null) {
+                listener.onResponse(request, response, durationNanos);
+            }
+            return response;
+        }
+
+        /**
+         * @return the request of an attempt, whose timeout is cut down to the time left before the {@link #deadline}
+         */
+        private HttpRequest attemptRequest() {
+            long remainingNanos = remainingNanos();
+            if (remainingNanos == Long.MAX_VALUE
+                    || request.timeout().filter(timeout -> timeout.compareTo(Duration.ofNanos(remainingNanos)) <= 0)
+                    .isPresent()) {
+                return request;
+            }
+            return copy(request).timeout(Duration.ofNanos(Math.max(1, remainingNanos))).build();
+        }
+
+        /**
+         * @return the time left before the {@link #deadline} in nanoseconds, or {@link Long#MAX_VALUE} if there is none
+         */
+        private long remainingNanos() {
+            return deadline != null ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+        }
+
+        /**
+         * @return the subscriber of a body, which fails it if it is not received before the {@link #deadline}
+         */
+        private HttpResponse.BodySubscriber<T> deadlineBodySubscriber(HttpResponse.ResponseInfo info) {
+            return new DeadlineBodySubscriber<>(handler.apply(info), remainingNanos(), () -> deadlineExceeded(null));
+        }
+
+        /**
+         * @param cause the failure of the last attempt, or <b>NULL</b> if none
+         */
+        private DeadlineExceededException deadlineExceeded(Throwable cause) {
+            DeadlineExceededException exception = new DeadlineExceededException(request.uri(), deadline);
+            if (cause != null) {
+                exception.initCause(cause instanceof CompletionException && cause.getCause() != null
+                        ? cause.getCause()
+                        : cause);
+            }
+            return exception;
+        }
+
+        /**
+         * Same as {@link HedgedAttempt}, but blocks the calling thread until the first response
+         */
+        private HttpResponse<T> sendHedgedBlocking(int attempt, CircuitBreaker.Permit permit)
+                throws IOException, InterruptedException {
+            HedgedAttempt hedged = new HedgedAttempt(attempt, permit);
+            try {
+                return hedged.result.get();
+            } catch (InterruptedException ex) {
+                hedged.cancel();
+                throw ex;
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new IOException(ex.getCause());
+            }
+        }
+
         /**
          * It tries to invoke the request again if there is any remaining attempt, or handle the situation
          * when a threshold of maximum attempts was exceeded.
@@ -210,13 +715,74 @@ public class RetryingHTTPClient<T> {
          * of exceeded attempts.
          */
         private CompletableFuture<HttpResponse<T>> attemptRetry(HttpRequest request, HttpResponse<T> response, Throwable throwable) {
-            if (attemptsRemains()) {
-                log.warn("Retrying: attempt={} path={}", attempts.get() + 1, request.uri());
-                return CompletableFuture.supplyAsync(this::invoke, delayedExecutor)
-                        .thenCompose(Function.identity());
-            } else {
+            Duration delay = prepareRetry(response);
+            if (delay == null) {
                 return handleRetryExceeded(response, throwable);
             }
+
+            Executor delayedExecutor = CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(this::invoke, delayedExecutor)
+                    .thenCompose(Function.identity());
+        }
+
+        /**
+         * Decides if the request could be retried, as per the remaining attempts, the {@link #circuitBreaker}, the
+         * {@link #deadline} and the {@link #retryBudget}, and if so releases the failed response and decides the delay
+         * before the next attempt. The retry is not made if the delay and another attempt as long as the last one
+         * would not fit in the time left before the deadline.
+         *
+         * @param response a failed response or <b>NULL</b>.
+         * @return the delay before the next attempt, or <b>NULL</b> if the request should not be retried
+         */
+        private Duration prepareRetry(HttpResponse<T> response) {
+            if (!attemptsRemains()) {
+                return null;
+            }
+            if (circuitBreaker != null && circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+                // the retry would fail fast, so the failure is handed over right away instead
+                log.warn("Circuit breaker open, not retrying: attempt={} path={}", attempts.get(), request.uri());
+                return null;
+            }
+            Duration delay = retryDelay(response);
+            if (deadline != null
+                    && delay.toNanos() + (System.nanoTime() - attemptStartNanos) >= remainingNanos()) {
+                log.warn("Deadline too close, not retrying: attempt={} delay={} path={}", attempts.get(), delay,
+                        request.uri());
+                this.deadlineTooClose = true;
+                return null;
+            }
+            if (retryBudget != null && !retryBudget.tryRetry()) {
+                log.warn("Retry budget exhausted: attempt={} path={}", attempts.get(), request.uri());
+                return null;
+            }
+
+            this.previousDelay = delay;
+            discard(response);
+            log.warn("Retrying: attempt={} delay={} path={}", attempts.get() + 1, delay, request.uri());
+            if (listener != null) {
+                listener.onRetry(request, attempts.get() + 1, delay);
+            }
+            return delay;
+        }
+
+        /**
+         * The delay decided by the {@link #backoff}, unless a TOO MANY REQUESTS or SERVICE UNAVAILABLE response asks
+         * for a longer one with its Retry-After header. The latter is limited to {@link #maxRetryAfter}.
+         *
+         * @param response a failed response or <b>NULL</b>.
+         * @return the delay before the next attempt
+         */
+        private Duration retryDelay(HttpResponse<T> response) {
+            Duration delay = backoff.nextDelay(attempts.get(), this.previousDelay);
+            if (response == null
+                    || (response.statusCode() != TOO_MANY_REQUESTS && response.statusCode() != SERVICE_UNAVAILABLE)) {
+                return delay;
+            }
+
+            return RetryAfter.of(response)
+                    .map(retryAfter -> retryAfter.compareTo(maxRetryAfter) > 0 ? maxRetryAfter : retryAfter)
+                    .filter(retryAfter -> retryAfter.compareTo(delay) > 0)
+                    .orElse(delay);
         }
 
         /**
@@ -228,6 +794,8 @@ public class RetryingHTTPClient<T> {
          *     <li><b>FALSE</b> when {@link #maxAttempts} is exceeded then the latest {@link HttpResponse}
          *     is returned</li>
          * </ul>
+         * If the retry was not made as the {@link #deadline} is too close, the exception thrown is a
+         * {@link DeadlineExceededException}.
          *
          * @param response the very latest response object
          * @return a new completable future with a completed or failed state
@@ -236,17 +804,42 @@ public class RetryingHTTPClient<T> {
         private CompletableFuture<HttpResponse<T>> handleRetryExceeded(
                 HttpResponse<T> response, Throwable throwable) {
 
-            if (throwable != null || throwWhenRetryOnResponseExceeded) {
-                Throwable ex = throwable == null
-                        ? new RuntimeException("Retries exceeded: status-code=" + response.statusCode())
-                        : throwable;
-
-                return CompletableFuture.failedFuture(ex);
+            if (deadlineTooClose && (throwable != null || throwWhenRetryOnResponseExceeded)) {
+                discard(response);
+                return CompletableFuture.failedFuture(deadlineExceeded(throwable));
+            } else if (throwable != null) {
+                return CompletableFuture.failedFuture(throwable);
+            } else if (throwWhenRetryOnResponseExceeded) {
+                return CompletableFuture.failedFuture(retriesExceeded(response));
             } else {
                 return CompletableFuture.completedFuture(response);
             }
         }
 
+        /**
+         * Releases the response which exceeded the retries and returns the exception to be thrown instead
+         */
+        private RuntimeException retriesExceeded(HttpResponse<T> response) {
+            discard(response);
+            return new RuntimeException("Retries exceeded: status-code=" + response.statusCode());
+        }
+
+        /**
+         * Releases the body of a response which is not handed over to the caller, i.e. the streamed bodies are closed
+         * so that the underlying connection could be reused.
+         *
+         * @param response a failed response or <b>NULL</b>.
+         */
+        private void discard(HttpResponse<T> response) {
+            if (response != null && response.body() instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) response.body()).close();
+                } catch (Exception ex) {
+                    log.debug("Exception while discarding response of {}", response.uri(), ex);
+                }
+            }
+        }
+
         /**
          * Returns <b>TRUE</b> if the number of retries has not exceeded the predefined
          * {@link #maxAttempts} value.
@@ -256,5 +849,94 @@ public class RetryingHTTPClient<T> {
         private boolean attemptsRemains() {
             return attempts.get() < maxAttempts;
         }
+
+        /**
+         * An attempt in flight. Its exchange could be cancelled, while its outcome completes once the listeners were
+         * notified.
+         */
+        private final class Attempt {
+            private final CompletableFuture<HttpResponse<T>> exchange;
+            private final CompletableFuture<HttpResponse<T>> outcome;
+
+            private Attempt(CompletableFuture<HttpResponse<T>> exchange, CompletableFuture<HttpResponse<T>> outcome) {
+                this.exchange = exchange;
+                this.outcome = outcome;
+            }
+        }
+
+        /**
+         * An attempt which is hedged after the delay of the {@link #hedgingPolicy}, if it has not answered yet, the
+         * budget allows it and the {@link #circuitBreaker} is closed. The result is the first response of the two, and
+         * the other attempt is cancelled (which aborts its exchange from Java 16 on), or its response is discarded if
+         * it came too. The result fails only if both attempts failed, with the exception of the first one.
+         */
+        private final class HedgedAttempt {
+            private final CompletableFuture<HttpResponse<T>> result;
+            private final List<Attempt> sent;
+            private int failed;
+            private Throwable failure;
+
+            private HedgedAttempt(int attempt, CircuitBreaker.Permit permit) {
+                this.result = new CompletableFuture<>();
+                this.sent = new ArrayList<>(2);
+                add(send(attempt, permit));
+                CompletableFuture.delayedExecutor(hedgingPolicy.delayNanos(), TimeUnit.NANOSECONDS)
+                        .execute(() -> hedge(attempt));
+            }
+
+            private void hedge(int attempt) {
+                if (this.result.isDone()
+                        || remainingNanos() <= 0
+                        || (circuitBreaker != null && circuitBreaker.getState() != CircuitBreaker.State.CLOSED)
+                        || !hedgingPolicy.tryHedge()) {
+                    return;
+                }
+                CircuitBreaker.Permit permit = circuitBreaker != null ? circuitBreaker.tryAcquirePermit() : null;
+                if (circuitBreaker != null && permit == null) {
+                    return;
+                }
+                log.debug("Hedging: attempt={} path={}", attempt, request.uri());
+                if (listener != null) {
+                    listener.onHedge(request, attempt);
+                }
+                Attempt hedge = send(attempt, permit);
+                synchronized (this) {
+                    if (this.result.isDone()) {
+                        hedge.exchange.cancel(true);
+                    }
+                    add(hedge);
+                }
+            }
+
+            private synchronized void add(Attempt attempt) {
+                this.sent.add(attempt);
+                attempt.outcome.whenComplete((resp, ex) -> complete(attempt, resp, ex));
+            }
+
+            private synchronized void complete(Attempt attempt, HttpResponse<T> response, Throwable exception) {
+                if (this.result.isDone()) {
+                    discard(response);
+                    return;
+                }
+                if (exception == null) {
+                    this.result.complete(response);
+                    cancel();
+                    return;
+                }
+                if (this.failure == null) {
+                    this.failure = exception instanceof CompletionException ? exception : new CompletionException(exception);
+                }
+                if (++this.failed == this.sent.size()) {
+                    this.result.completeExceptionally(this.failure);
+                }
+            }
+
+            /**
+             * Cancels the attempts which have not completed
+             */
+            private synchronized void cancel() {
+                this.sent.forEach(attempt -> attempt.exchange.cancel(true));
+            }
+        }
     }
 }
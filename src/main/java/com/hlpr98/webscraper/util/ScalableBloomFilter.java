@@ -0,0 +1,137 @@
+package com.hlpr98.webscraper.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A <a href="https://doi.org/10.1016/j.ipl.2006.10.007">scalable Bloom filter</a> of strings. It is a series of Bloom
+ * filters, each one twice as large as the previous one and with a tighter false positive rate, so that it grows with
+ * the number of values put into it while keeping the overall false positive rate under the configured one.
+ * <p>
+ * The memory consumed is about {@code -ln(p) / ln(2)^2} bits per value, i.e. about 4 bytes per value for a false
+ * positive rate of one in a million, independent of the length of the values.
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final List<BloomFilter> filters;
+    private final double falsePositiveRate;
+    private long size;
+
+    /**
+     * @param initialCapacity   the number of values the first filter holds, before the next one is added
+     * @param falsePositiveRate the maximum probability of a value never put being reported as present
+     */
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Initial capacity should be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate should be between 0 and 1");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.filters = new ArrayList<>();
+        this.filters.add(new BloomFilter(initialCapacity, falsePositiveRate * (1 - TIGHTENING_RATIO)));
+    }
+
+    /**
+     * @return true if the value might have been put, false if it was definitely never put
+     */
+    public synchronized boolean mightContain(CharSequence value) {
+        return mightContain(Hashing.fnv1a64(value));
+    }
+
+    /**
+     * Puts the value into the filter
+     *
+     * @return true if the value was not present, false if it might have been put before
+     */
+    public synchronized boolean put(CharSequence value) {
+        long hash = Hashing.fnv1a64(value);
+        if (mightContain(hash)) {
+            return false;
+        }
+
+        BloomFilter current = this.filters.get(this.filters.size() - 1);
+        if (current.size >= current.capacity) {
+            current = new BloomFilter(current.capacity * GROWTH_FACTOR, current.falsePositiveRate * TIGHTENING_RATIO);
+            this.filters.add(current);
+        }
+        current.put(hash);
+        this.size++;
+        return true;
+    }
+
+    /**
+     * @return the number of values put, not counting the ones reported as present
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of bits allocated by the filters
+     */
+    public synchronized long bitSize() {
+        return this.filters.stream().mapToLong(filter -> filter.bits).sum();
+    }
+
+    public double getFalsePositiveRate() {
+        return this.falsePositiveRate;
+    }
+
+    private boolean mightContain(long hash) {
+        for (BloomFilter filter : this.filters) {
+            if (filter.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A plain Bloom filter, sized for its capacity and false positive rate. The bits of a value are picked by double
+     * hashing of its hash.
+     */
+    private static class BloomFilter {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bits;
+        private final int hashCount;
+        private final long[] words;
+        private long size;
+
+        BloomFilter(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            double bitsPerValue = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            this.words = new long[Math.toIntExact(Math.max(1, (long) Math.ceil(capacity * bitsPerValue / Long.SIZE)))];
+            this.bits = (long) this.words.length * Long.SIZE;
+            this.hashCount = Math.max(1, (int) Math.round(bitsPerValue * Math.log(2)));
+        }
+
+        boolean mightContain(long hash) {
+            long h1 = Hashing.mix64(hash);
+            long h2 = Hashing.mix64(h1) | 1;
+            for (int i = 0; i < this.hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, this.bits);
+                if ((this.words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long hash) {
+            long h1 = Hashing.mix64(hash);
+            long h2 = Hashing.mix64(h1) | 1;
+            for (int i = 0; i < this.hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, this.bits);
+                this.words[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            this.size++;
+        }
+    }
+}
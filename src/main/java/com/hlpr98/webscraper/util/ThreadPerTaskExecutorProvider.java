@@ -0,0 +1,30 @@
+package com.hlpr98.webscraper.util;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Provides the executors which start a new thread for each task, i.e. the virtual thread executors.
+ * <p>
+ * The provider is looked up with the {@link ServiceLoader}, as its implementation needs Java 21 and is only built with
+ * the <code>java21</code> Maven profile (see <code>src/main/java21</code>).
+ */
+public interface ThreadPerTaskExecutorProvider {
+
+    /**
+     * @param name the prefix of the names of the threads
+     * @return the executor
+     */
+    ExecutorService newThreadPerTaskExecutor(String name);
+
+    /**
+     * @return the provider
+     * @throws UnsupportedOperationException if the application is not built with the <code>java21</code> profile
+     */
+    static ThreadPerTaskExecutorProvider load() {
+        return ServiceLoader.load(ThreadPerTaskExecutorProvider.class)
+                .findFirst()
+                .orElseThrow(() -> new UnsupportedOperationException(
+                        "Virtual threads need the build of the java21 profile, i.e. mvn -Pjava21 package"));
+    }
+}
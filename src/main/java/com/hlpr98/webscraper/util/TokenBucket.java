@@ -0,0 +1,51 @@
+package com.hlpr98.webscraper.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket rate limiter. The bucket is refilled at a constant rate of {@code permitsPerSecond} and holds at most
+ * {@code burst} tokens, so that up to {@code burst} permits could be acquired at once after a period of inactivity.
+ * <p>
+ * It never blocks, instead it tells the caller how long it has to wait for the next permit.
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private final LongSupplier nanoClock;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Permits per second should be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.nanoClock = nanoClock;
+        this.tokens = this.capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Tries to acquire a single permit
+     *
+     * @return 0 if the permit was acquired, else the nanoseconds to wait for before a permit would be available
+     */
+    public synchronized long tryAcquire() {
+        long now = this.nanoClock.getAsLong();
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefillNanos) * this.permitsPerNano);
+        this.lastRefillNanos = now;
+
+        if (this.tokens >= 1) {
+            this.tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - this.tokens) / this.permitsPerNano));
+    }
+}
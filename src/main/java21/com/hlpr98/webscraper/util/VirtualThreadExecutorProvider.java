@@ -0,0 +1,15 @@
+package com.hlpr98.webscraper.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides the virtual thread per task executors
+ */
+public class VirtualThreadExecutorProvider implements ThreadPerTaskExecutorProvider {
+
+    @Override
+    public ExecutorService newThreadPerTaskExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}
@@ -1,7 +1,10 @@
 package com.hlpr98.webscraper;
 
+import com.hlpr98.webscraper.input.URLDeduplicator;
+import com.hlpr98.webscraper.input.URLSource;
 import com.hlpr98.webscraper.model.domain.WebScrapingResult;
 import com.hlpr98.webscraper.model.entities.EntityWithTitle;
+import com.hlpr98.webscraper.pipeline.ScrapePipeline;
 import joptsimple.internal.Strings;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -13,11 +16,11 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.http.HttpClient;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockserver.model.HttpRequest.request;
@@ -79,7 +82,7 @@ public class WebScraperTest {
     }
 
     @Test
-    public void testScrapeUrlsSuccess() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    public void testScrapeUrlsSuccess() throws MalformedURLException, InterruptedException {
         List<Pair<String, String>> entityIds = new ArrayList<>();
         List<Pair<String, String>> productIds = new ArrayList<>();
         List<String> urls = new ArrayList<>();
@@ -120,10 +123,7 @@ public class WebScraperTest {
                         .respond(response().withBody(getProductResponse(slugId, uuid)).withStatusCode(200));
             }
 
-            Method method = WebScraper.class.getDeclaredMethod("scrapeURLs", List.class);
-            method.setAccessible(true);
-
-            result = (Map<String, WebScrapingResult>) method.invoke(null, urls);
+            result = scrapeURLs(urls);
         }
 
         assertNotNull(result);
@@ -161,7 +161,7 @@ public class WebScraperTest {
     }
 
     @Test
-    public void testScrapeUrlsWithException() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    public void testScrapeUrlsWithException() throws MalformedURLException, InterruptedException {
         String uuid1 = String.valueOf(UUID.randomUUID());
         String uuid2 = String.valueOf(UUID.randomUUID());
         String uuid3 = String.valueOf(UUID.randomUUID());
@@ -190,11 +190,7 @@ public class WebScraperTest {
             mockClient.when(request().withMethod("GET").withPath(pathWithSuccessfulResponse))
                     .respond(response().withBody(getEntityResponse(uuid3)).withStatusCode(200));
 
-
-            Method method = WebScraper.class.getDeclaredMethod("scrapeURLs", List.class);
-            method.setAccessible(true);
-
-            result = (Map<String, WebScrapingResult>) method.invoke(null, urls);
+            result = scrapeURLs(urls);
 
             // uriWithEmptyResponse
             assertTrue(result.containsKey(uriWithEmptyResponse));
@@ -209,8 +205,9 @@ public class WebScraperTest {
             result1 = result.get(uriWithTooManyRequests);
             assertNull(result1.getParsedEntity());
             assertNotNull(result1.getException());
-            assertInstanceOf(IllegalArgumentException.class, result1.getException().getCause());
-            mockClient.verify(request().withPath(pathWithTooManyRequests), VerificationTimes.exactly(1));
+            assertInstanceOf(RuntimeException.class, result1.getException().getCause());
+            assertTrue(result1.getException().getCause().getMessage().contains("Retries exceeded: status-code=429"));
+            mockClient.verify(request().withPath(pathWithTooManyRequests), VerificationTimes.exactly(5));
 
             // uriWithServerError
             assertTrue(result.containsKey(uriWithServerError));
@@ -233,20 +230,23 @@ public class WebScraperTest {
     }
 
     @Test
-    public void testScrapeUrlsFailure() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    public void testScrapeUrlsFailure() {
         String uriWithMalformedURL = "malformed-url";
         String uriWithNonExistentURL = "https://non-existing";
 
-        Method method = WebScraper.class.getDeclaredMethod("scrapeURLs", List.class);
-        method.setAccessible(true);
-
-        InvocationTargetException ex =
-                assertThrows(InvocationTargetException.class, () -> method.invoke(null, List.of(uriWithMalformedURL)));
-        assertInstanceOf(MalformedURLException.class, ex.getCause());
-
-        ex = assertThrows(InvocationTargetException.class, () -> method.invoke(null, List.of(uriWithNonExistentURL)));
-        assertInstanceOf(IllegalStateException.class, ex.getCause());
+        assertThrows(MalformedURLException.class, () -> scrapeURLs(List.of(uriWithMalformedURL)));
+        assertThrows(IllegalStateException.class, () -> scrapeURLs(List.of(uriWithNonExistentURL)));
+    }
 
+    /**
+     * Scrapes the urls through a pipeline, as the command line does, and captures their results
+     */
+    private Map<String, WebScrapingResult> scrapeURLs(List<String> urls)
+            throws MalformedURLException, InterruptedException {
+        Map<String, WebScrapingResult> result = new ConcurrentHashMap<>();
+        new ScrapePipeline(new WebScraperWorkerFactory(HttpClient.newHttpClient()), urls.size())
+                .run(URLSource.fromList(urls).deduplicated(URLDeduplicator.exact()), result::put);
+        return result;
     }
 
     private String getEntityPath(String slugId, String uuid) {
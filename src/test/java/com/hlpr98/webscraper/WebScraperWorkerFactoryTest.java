@@ -0,0 +1,211 @@
+package com.hlpr98.webscraper;
+
+import com.hlpr98.webscraper.WebScraperWorkerFactory.HTTPClientConfiguration;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.parser.ResponseParserFactory;
+import com.hlpr98.webscraper.util.ThreadPerTaskExecutorProvider;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ServiceLoader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebScraperWorkerFactoryTest {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    public void testOneWorkerPerDomain() throws MalformedURLException {
+        WebScraperWorkerFactory factory = new WebScraperWorkerFactory(httpClient);
+
+        IWebScraperWorker worker = factory.getWorker("https://www.example.com/entity-a-b.json");
+        assertInstanceOf(WebScraperWorker.class, worker);
+        assertSame(worker, factory.getWorker("https://www.example.com/product-a.html"));
+        assertNotSame(worker, factory.getWorker("https://shop.example.com/product-a.html"));
+        assertEquals(2, factory.getAllWorkers().size());
+    }
+
+    @Test
+    public void testURLRejectedByURI() throws Exception {
+        byte[] body = "{\"title\":\"Title\"}".getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            WebScraperWorkerFactory factory = new WebScraperWorkerFactory(httpClient,
+                    HTTPClientConfiguration.builder()
+                            .domain("127.0.0.1")
+                            .maxAttempts(1)
+                            .maxConcurrentRequests(1)
+                            .build());
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/entity-a-b.json";
+            String invalid = "http://127.0.0.1:" + server.getAddress().getPort() + "/entity-a b.json";
+
+            assertThrows(MalformedURLException.class, () -> factory.getWorker(invalid));
+
+            // the worker fails such an url on its own, and gives its slot to the next one
+            IWebScraperWorker worker = factory.getWorker(url);
+            WebScrapingResult failed = worker.submit(invalid, ResponseParserFactory.getParser(url))
+                    .get(5, TimeUnit.SECONDS);
+            assertInstanceOf(IllegalArgumentException.class, failed.getException().getCause());
+            WebScrapingResult scraped = worker.submit(url, ResponseParserFactory.getParser(url))
+                    .get(5, TimeUnit.SECONDS);
+            assertNull(scraped.getException());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testConfigurationIsValidatedOnceBuilt() {
+        assertEquals(5, HTTPClientConfiguration.builder().domain("a.com").build().getMaxAttempts());
+
+        assertThrows(IllegalArgumentException.class, () -> HTTPClientConfiguration.builder().build());
+        assertThrows(IllegalArgumentException.class,
+                () -> HTTPClientConfiguration.builder().domain("a.com").maxAttempts(0).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> HTTPClientConfiguration.builder().domain("a.com").circuitBreakerFailureRate(1.5).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> HTTPClientConfiguration.builder().domain("a.com").hedgePercentile(1).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> HTTPClientConfiguration.builder().domain("a.com").retryDelay(Duration.ofSeconds(-1)).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> HTTPClientConfiguration.builder().domain("a.com").requestTimeout(Duration.ZERO).build());
+    }
+
+    @Test
+    public void testVirtualThreadsEngine() throws MalformedURLException {
+        boolean supported = ServiceLoader.load(ThreadPerTaskExecutorProvider.class).findFirst().isPresent();
+        if (!supported) {
+            // not built with the java21 profile
+            assertThrows(UnsupportedOperationException.class,
+                    () -> WebScraperWorkerFactory.builder(httpClient)
+                            .withEngine(WebScraperWorkerFactory.Engine.VIRTUAL_THREADS)
+                            .build());
+            return;
+        }
+
+        WebScraperWorkerFactory factory = WebScraperWorkerFactory.builder(httpClient)
+                .withEngine(WebScraperWorkerFactory.Engine.VIRTUAL_THREADS)
+                .build();
+        assertInstanceOf(BlockingWebScraperWorker.class, factory.getWorker("https://www.example.com/entity-a-b.json"));
+    }
+
+    @Test
+    public void testHttpClientPerSettings() {
+        WebScraperWorkerFactory factory = new WebScraperWorkerFactory(httpClient);
+
+        assertSame(httpClient, factory.getHttpClient(HTTPClientConfiguration.builder().domain("a.com").build()));
+
+        HttpClient http11 = factory.getHttpClient(HTTPClientConfiguration.builder()
+                .domain("b.com")
+                .version(HttpClient.Version.HTTP_1_1)
+                .build());
+        assertNotSame(httpClient, http11);
+        assertEquals(HttpClient.Version.HTTP_1_1, http11.version());
+        assertSame(http11, factory.getHttpClient(HTTPClientConfiguration.builder()
+                .domain("c.com")
+                .version(HttpClient.Version.HTTP_1_1)
+                .maxConcurrentRequests(8)
+                .build()));
+
+        HttpClient withConnectTimeout = factory.getHttpClient(HTTPClientConfiguration.builder()
+                .domain("d.com")
+                .connectTimeout(Duration.ofSeconds(3))
+                .build());
+        assertNotSame(http11, withConnectTimeout);
+        assertEquals(httpClient.version(), withConnectTimeout.version());
+        assertEquals(Duration.ofSeconds(3), withConnectTimeout.connectTimeout().orElseThrow());
+    }
+
+    @Test
+    public void testRequestTimeout() throws IOException {
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            WebScraperWorkerFactory factory = new WebScraperWorkerFactory(httpClient,
+                    HTTPClientConfiguration.builder()
+                            .domain("127.0.0.1")
+                            .maxAttempts(1)
+                            .retryDelay(Duration.ofMillis(10))
+                            .requestTimeout(Duration.ofMillis(200))
+                            .build());
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/entity-a-b.json";
+
+            WebScrapingResult result = factory.getWorker(url)
+                    .submit(url, ResponseParserFactory.getParser(url))
+                    .join();
+
+            assertNull(result.getParsedEntity());
+            Throwable cause = result.getException();
+            while (cause != null && !(cause instanceof HttpTimeoutException)) {
+                cause = cause.getCause();
+            }
+            assertInstanceOf(HttpTimeoutException.class, cause, String.valueOf(result.getException()));
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDefaultRetryDelay() throws IOException {
+        AtomicInteger served = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            if (served.incrementAndGet() == 1) {
+                exchange.sendResponseHeaders(503, -1);
+            } else {
+                byte[] body = "{\"title\":\"Title\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            // no retry delay, the default one is capped by the maximum
+            WebScraperWorkerFactory factory = new WebScraperWorkerFactory(httpClient,
+                    HTTPClientConfiguration.builder()
+                            .domain("127.0.0.1")
+                            .maxAttempts(2)
+                            .maxRetryDelay(Duration.ofMillis(10))
+                            .build());
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/entity-a-b.json";
+
+            WebScrapingResult result = factory.getWorker(url)
+                    .submit(url, ResponseParserFactory.getParser(url))
+                    .join();
+
+            assertNull(result.getException());
+            assertEquals(2, served.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.hlpr98.webscraper.cache;
+
+import com.hlpr98.webscraper.model.entities.EntityWithTitle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidatorCacheTest {
+
+    private static final String URL = "https://www.example.com/entity-1.json";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        try (ValidatorCache cache = ValidatorCache.open(directory.resolve("cache.ndjson"))) {
+            assertNull(cache.get(URL));
+
+            cache.put(URL, "\"v1\"", null, new EntityWithTitle("1", "Title"));
+            ValidatorCache.Entry entry = cache.get(URL);
+
+            assertEquals("\"v1\"", entry.getETag());
+            assertNull(entry.getLastModified());
+            assertEquals(new EntityWithTitle("1", "Title"), cache.getEntity(entry));
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path path = directory.resolve("cache.ndjson");
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            cache.put(URL, null, "Wed, 21 Oct 2015 07:28:00 GMT", new EntityWithTitle("1", "Title"));
+            cache.put("https://www.example.com/entity-2.json", "\"v2\"", null, new EntityWithTitle("2", "Other"));
+        }
+
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            assertEquals(2, cache.size());
+            ValidatorCache.Entry entry = cache.get(URL);
+            assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", entry.getLastModified());
+            assertEquals(new EntityWithTitle("1", "Title"), cache.getEntity(entry));
+        }
+    }
+
+    @Test
+    public void testReplacedEntriesAreCompacted() throws IOException {
+        Path path = directory.resolve("cache.ndjson");
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            for (int i = 0; i < 5; i++) {
+                cache.put(URL, "\"v" + i + "\"", null, new EntityWithTitle("1", "Title " + i));
+            }
+        }
+
+        assertEquals(1, Files.readAllLines(path).size());
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            ValidatorCache.Entry entry = cache.get(URL);
+            assertEquals("\"v4\"", entry.getETag());
+            assertEquals(new EntityWithTitle("1", "Title 4"), cache.getEntity(entry));
+        }
+    }
+
+    @Test
+    public void testReplacedEntriesAreCompactedWhileOpen() throws IOException {
+        Path path = directory.resolve("cache.ndjson");
+        String title = "T".repeat(10_000);
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            cache.put("https://www.example.com/entity-2.json", "\"v2\"", null, new EntityWithTitle("2", "Other"));
+            ValidatorCache.Entry before = cache.get("https://www.example.com/entity-2.json");
+
+            for (int i = 0; i < 300; i++) {
+                cache.put(URL, "\"v" + i + "\"", null, new EntityWithTitle("1", title + i));
+                assertTrue(Files.size(path) < 2 << 20, "size: " + Files.size(path));
+            }
+
+            assertEquals(new EntityWithTitle("1", title + 299), cache.getEntity(cache.get(URL)));
+            assertEquals(new EntityWithTitle("2", "Other"), cache.getEntity(before));
+            cache.put("https://www.example.com/entity-2.json", "\"v3\"", null, new EntityWithTitle("2", "Third"));
+        }
+
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            assertEquals(2, cache.size());
+            assertEquals(new EntityWithTitle("1", title + 299), cache.getEntity(cache.get(URL)));
+            assertEquals(new EntityWithTitle("2", "Third"),
+                    cache.getEntity(cache.get("https://www.example.com/entity-2.json")));
+        }
+    }
+
+    @Test
+    public void testTruncatedEntryIsSkipped() throws IOException {
+        Path path = directory.resolve("cache.ndjson");
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            cache.put(URL, "\"v1\"", null, new EntityWithTitle("1", "Title"));
+        }
+        Files.write(path, "{\"url\":\"https://www.example.com/entity-2.json\",\"eTag\":".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            assertEquals(1, cache.size());
+            assertEquals(new EntityWithTitle("1", "Title"), cache.getEntity(cache.get(URL)));
+            cache.put("https://www.example.com/entity-3.json", "\"v3\"", null, new EntityWithTitle("3", "Third"));
+        }
+
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            assertEquals(2, cache.size());
+            assertEquals(new EntityWithTitle("3", "Third"),
+                    cache.getEntity(cache.get("https://www.example.com/entity-3.json")));
+        }
+    }
+
+    @Test
+    public void testRemovedEntryStaysRemoved() throws IOException {
+        Path path = directory.resolve("cache.ndjson");
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            cache.put(URL, "\"v1\"", null, new EntityWithTitle("1", "Title"));
+            cache.put("https://www.example.com/entity-2.json", "\"v2\"", null, new EntityWithTitle("2", "Other"));
+            cache.remove(URL);
+            assertNull(cache.get(URL));
+        }
+
+        try (ValidatorCache cache = ValidatorCache.open(path)) {
+            assertNull(cache.get(URL));
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testOnlyEntitiesOfParsersAreRead() throws IOException {
+        try (ValidatorCache cache = ValidatorCache.open(directory.resolve("cache.ndjson"))) {
+            cache.put(URL, "\"v1\"", null, new StringBuilder("not an entity"));
+
+            IOException exception = assertThrows(IOException.class, () -> cache.getEntity(cache.get(URL)));
+            assertTrue(exception.getMessage().contains("java.lang.StringBuilder"), exception.getMessage());
+        }
+    }
+}
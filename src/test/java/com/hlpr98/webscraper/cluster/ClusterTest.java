@@ -0,0 +1,157 @@
+package com.hlpr98.webscraper.cluster;
+
+import com.hlpr98.webscraper.WebScraperWorkerFactory;
+import com.hlpr98.webscraper.input.URLSource;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.model.entities.EntityWithTitle;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClusterTest {
+
+    private static final int URLS = 300;
+
+    private HttpServer server;
+    private ExecutorService nodeExecutor;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"title\":\"Title\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        nodeExecutor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        nodeExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testURLsAreScrapedOverNodes() throws Exception {
+        try (ClusterCoordinator coordinator = new ClusterCoordinator(new InetSocketAddress("127.0.0.1", 0), 8);
+             ClusterNode first = startNode(coordinator, "node-1");
+             ClusterNode second = startNode(coordinator, "node-2")) {
+            Map<String, WebScrapingResult> results = new ConcurrentHashMap<>();
+            coordinator.scrape(URLSource.fromList(urls()), 50, results::put);
+
+            assertResults(results);
+        }
+    }
+
+    @Test
+    public void testURLsOfLeavingNodeAreScrapedByOthers() throws Exception {
+        try (ClusterCoordinator coordinator = new ClusterCoordinator(new InetSocketAddress("127.0.0.1", 0), 8);
+             ClusterNode first = startNode(coordinator, "node-1");
+             ClusterNode second = startNode(coordinator, "node-2")) {
+            ConsistentHashRing<ClusterNode> ring = new ConsistentHashRing<>();
+            ring.add("node-1", first);
+            ring.add("node-2", second);
+            ClusterNode owner = ring.nodeFor("127.0.0.1");
+
+            Map<String, WebScrapingResult> results = new ConcurrentHashMap<>();
+            coordinator.scrape(URLSource.fromList(urls()), 50, (url, result) -> {
+                if (results.size() == URLS / 3) {
+                    try {
+                        owner.close();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                results.put(url, result);
+            });
+
+            assertResults(results);
+            assertEquals(1, coordinator.getNodeCount());
+        }
+    }
+
+    @Test
+    public void testFailingSinkStopsScraping() throws Exception {
+        try (ClusterCoordinator coordinator = new ClusterCoordinator(new InetSocketAddress("127.0.0.1", 0), 8);
+             ClusterNode node = startNode(coordinator, "node-1")) {
+            AtomicInteger read = new AtomicInteger();
+            Iterator<String> urls = urls().iterator();
+            URLSource source = URLSource.fromIterator(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return urls.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    read.incrementAndGet();
+                    return urls.next();
+                }
+            }, () -> {
+            });
+
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                    () -> coordinator.scrape(source, 10, (url, result) -> {
+                        throw new IllegalStateException("Disk full");
+                    }));
+
+            assertEquals("Disk full", exception.getMessage());
+            assertTrue(read.get() < URLS, "read: " + read.get());
+        }
+    }
+
+    private ClusterNode startNode(ClusterCoordinator coordinator, String id) throws InterruptedException {
+        ClusterNode node = new ClusterNode(coordinator.getAddress(), id,
+                new WebScraperWorkerFactory(HttpClient.newHttpClient()));
+        nodeExecutor.submit(() -> {
+            node.run();
+            return null;
+        });
+        // the nodes join in the background, the coordinator waits for the first one
+        return node;
+    }
+
+    private List<String> urls() {
+        List<String> urls = new ArrayList<>();
+        String[] hosts = {"127.0.0.1", "localhost"};
+        for (int i = 0; i < URLS; i++) {
+            urls.add("http://" + hosts[i % hosts.length] + ":" + server.getAddress().getPort()
+                    + "/entity-slug-" + i + ".json");
+        }
+        return urls;
+    }
+
+    private void assertResults(Map<String, WebScrapingResult> results) {
+        assertEquals(URLS, results.size());
+        results.forEach((url, result) -> {
+            assertNull(result.getException(), url);
+            EntityWithTitle entity = assertInstanceOf(EntityWithTitle.class, result.getParsedEntity());
+            assertTrue(url.endsWith("-" + entity.getId() + ".json"), url + " " + entity.getId());
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.hlpr98.webscraper.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    private static final int DOMAINS = 10_000;
+
+    @Test
+    public void testEmptyRing() {
+        assertNull(new ConsistentHashRing<String>().nodeFor("www.example.com"));
+    }
+
+    @Test
+    public void testDomainsAreSpreadEvenly() {
+        ConsistentHashRing<String> ring = ringOf(4);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < DOMAINS; i++) {
+            counts.merge(ring.nodeFor("www.domain-" + i + ".com"), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertEquals(DOMAINS / 4.0, count, DOMAINS / 4.0 * 0.25, "counts: " + counts));
+    }
+
+    @Test
+    public void testJoiningMovesDomainsOnlyToNewNode() {
+        ConsistentHashRing<String> ring = ringOf(4);
+        Map<String, String> before = assignments(ring);
+
+        ring.add("node-4", "node-4");
+        Map<String, String> after = assignments(ring);
+
+        int moved = 0;
+        for (String domain : before.keySet()) {
+            if (!before.get(domain).equals(after.get(domain))) {
+                assertEquals("node-4", after.get(domain));
+                moved++;
+            }
+        }
+        assertEquals(DOMAINS / 5.0, moved, DOMAINS / 5.0 * 0.25);
+    }
+
+    @Test
+    public void testLeavingMovesOnlyDomainsOfLeavingNode() {
+        ConsistentHashRing<String> ring = ringOf(4);
+        Map<String, String> before = assignments(ring);
+
+        ring.remove("node-2");
+        Map<String, String> after = assignments(ring);
+
+        for (String domain : before.keySet()) {
+            if (!before.get(domain).equals("node-2")) {
+                assertEquals(before.get(domain), after.get(domain));
+            } else {
+                assertNotEquals("node-2", after.get(domain));
+            }
+        }
+
+        // joining again gets back the same domains
+        ring.add("node-2", "node-2");
+        assertEquals(before, assignments(ring));
+    }
+
+    private static ConsistentHashRing<String> ringOf(int nodes) {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+        for (int i = 0; i < nodes; i++) {
+            ring.add("node-" + i, "node-" + i);
+        }
+        return ring;
+    }
+
+    private static Map<String, String> assignments(ConsistentHashRing<String> ring) {
+        Map<String, String> assignments = new HashMap<>();
+        for (int i = 0; i < DOMAINS; i++) {
+            assignments.put("www.domain-" + i + ".com", ring.nodeFor("www.domain-" + i + ".com"));
+        }
+        return assignments;
+    }
+}
@@ -0,0 +1,145 @@
+package com.hlpr98.webscraper.input;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecrawlSchedulerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testIntervalAdaptsToChanges() {
+        RecrawlScheduler scheduler = scheduler();
+        scheduler.add("https://www.example.com/a");
+        assertEquals("https://www.example.com/a", scheduler.poll());
+        assertNull(scheduler.poll());
+
+        // the first content keeps the initial interval of 100s, jittered by 10%
+        scheduler.onScraped("https://www.example.com/a", entity("first"));
+        assertDueWithin(scheduler, 89, 111);
+
+        // unchanged, the interval grows to 150s
+        scheduler.onScraped("https://www.example.com/a", entity("first"));
+        assertDueWithin(scheduler, 134, 166);
+
+        // changed, the interval shrinks to 75s
+        scheduler.onScraped("https://www.example.com/a", entity("second"));
+        assertDueWithin(scheduler, 67, 83);
+    }
+
+    @Test
+    public void testIntervalStaysWithinBounds() {
+        RecrawlScheduler scheduler = scheduler();
+        scheduler.add("https://www.example.com/a");
+        scheduler.poll();
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.onScraped("https://www.example.com/a", entity("content-" + i));
+            clock.addAndGet(200 * SECOND);
+            assertNotNull(scheduler.poll());
+        }
+        scheduler.onScraped("https://www.example.com/a", entity("last"));
+        assertDueWithin(scheduler, 8, 12);
+    }
+
+    @Test
+    public void testFailureKeepsInterval() {
+        RecrawlScheduler scheduler = scheduler();
+        scheduler.add("https://www.example.com/a");
+        scheduler.poll();
+
+        scheduler.onScraped("https://www.example.com/a", entity("first"));
+        assertDueWithin(scheduler, 89, 111);
+        scheduler.onScraped("https://www.example.com/a",
+                WebScrapingResult.builder().exception(new IOException("down")).build());
+        assertDueWithin(scheduler, 89, 111);
+        scheduler.onScraped("https://www.example.com/a", entity("first"));
+        assertDueWithin(scheduler, 134, 166);
+    }
+
+    @Test
+    public void testEarliestDueFirst() {
+        RecrawlScheduler scheduler = scheduler();
+        scheduler.add("https://www.example.com/a");
+        scheduler.add("https://www.example.com/b");
+        scheduler.add("https://www.example.com/c");
+        assertEquals("https://www.example.com/a", scheduler.poll());
+        scheduler.onScraped("https://www.example.com/a", entity("a"));
+
+        clock.addAndGet(SECOND);
+        scheduler.add("https://www.example.com/d");
+        assertEquals(4, scheduler.size());
+        assertNotEquals("https://www.example.com/d", scheduler.poll());
+        assertNotEquals("https://www.example.com/d", scheduler.poll());
+        assertEquals("https://www.example.com/d", scheduler.poll());
+        assertNull(scheduler.poll());
+
+        clock.addAndGet(200 * SECOND);
+        assertEquals("https://www.example.com/a", scheduler.poll());
+    }
+
+    @Test
+    public void testRateLimited() {
+        RecrawlScheduler scheduler = new RecrawlScheduler(Duration.ofSeconds(100), Duration.ofSeconds(10),
+                Duration.ofSeconds(1000), 0.001, null);
+        scheduler.add("https://www.example.com/a");
+        scheduler.add("https://www.example.com/b");
+
+        assertNotNull(scheduler.poll());
+        assertNull(scheduler.poll());
+    }
+
+    @Test
+    public void testSourceWaitsUntilDue() throws Exception {
+        RecrawlScheduler scheduler = new RecrawlScheduler(Duration.ofMillis(200), Duration.ofMillis(100),
+                Duration.ofSeconds(1), 0, null);
+        scheduler.add("https://www.example.com/a");
+        URLSource source = scheduler.source();
+
+        assertTrue(source.hasNext());
+        assertEquals("https://www.example.com/a", source.next());
+        long startNanos = System.nanoTime();
+        scheduler.onScraped("https://www.example.com/a", entity("a"));
+        assertEquals("https://www.example.com/a", source.next());
+        assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(170));
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                source.close();
+            } catch (InterruptedException | IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }).start();
+        assertFalse(source.hasNext());
+    }
+
+    private RecrawlScheduler scheduler() {
+        return new RecrawlScheduler(Duration.ofSeconds(100), Duration.ofSeconds(10), Duration.ofSeconds(1000), 0,
+                null, clock::get);
+    }
+
+    private static WebScrapingResult entity(String content) {
+        return WebScrapingResult.builder().parsedEntity(content).build();
+    }
+
+    /**
+     * Asserts that the only url is due within the bounds in seconds from now, and takes it at the upper bound
+     */
+    private void assertDueWithin(RecrawlScheduler scheduler, long fromSeconds, long toSeconds) {
+        long now = clock.get();
+        clock.set(now + fromSeconds * SECOND);
+        assertNull(scheduler.poll());
+        clock.set(now + toSeconds * SECOND);
+        assertNotNull(scheduler.poll());
+    }
+}
@@ -0,0 +1,51 @@
+package com.hlpr98.webscraper.input;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class URLCanonicalizerTest {
+
+    @Test
+    public void testTriviallyDifferentFormsAreSame() {
+        List<String> urls = List.of(
+                "https://www.example.com/a/b.json?x=1&y=2",
+                "HTTPS://WWW.Example.COM/a/b.json?x=1&y=2",
+                "https://www.example.com:443/a/b.json?x=1&y=2",
+                "https://www.example.com./a/b.json?x=1&y=2",
+                "https://www.example.com/a/b.json?y=2&x=1",
+                "https://www.example.com/a/b.json?x=1&&y=2&",
+                "https://www.example.com/a/b.json?x=1&y=2#details",
+                "https://www.example.com/a/./c/../b.json?x=1&y=2",
+                "  https://www.example.com/a/b.json?x=1&y=2 "
+        );
+
+        for (String url : urls) {
+            assertEquals("https://www.example.com/a/b.json?x=1&y=2", URLCanonicalizer.canonicalize(url), url);
+        }
+    }
+
+    @Test
+    public void testMeaningfulDifferencesAreKept() {
+        assertEquals("http://www.example.com:8080/A.json", URLCanonicalizer.canonicalize("http://www.example.com:8080/A.json"));
+        assertEquals("http://www.example.com/", URLCanonicalizer.canonicalize("http://www.example.com:80"));
+        assertEquals("https://www.example.com:80/", URLCanonicalizer.canonicalize("https://www.example.com:80/"));
+        assertEquals("https://user@[::1]:8080/a", URLCanonicalizer.canonicalize("https://user@[::1]:8080/a"));
+        // the values of a repeated parameter keep their order
+        assertEquals("https://www.example.com/?a=2&a=1&b=0", URLCanonicalizer.canonicalize("https://www.example.com/?b=0&a=2&a=1"));
+    }
+
+    @Test
+    public void testPercentEncodingIsUpperCased() {
+        assertEquals("https://www.example.com/a%2Fb?q=%C3%A9", URLCanonicalizer.canonicalize("https://www.example.com/a%2fb?q=%c3%a9"));
+    }
+
+    @Test
+    public void testUnparseableURLsAreKept() {
+        assertEquals("malformed-url", URLCanonicalizer.canonicalize("malformed-url"));
+        assertEquals("https://www.example.com/a b", URLCanonicalizer.canonicalize("https://www.example.com/a b"));
+        assertEquals("mailto:someone@example.com", URLCanonicalizer.canonicalize("mailto:someone@example.com"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.hlpr98.webscraper.input;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class URLDeduplicatorTest {
+
+    @Test
+    public void testExact() {
+        URLDeduplicator deduplicator = URLDeduplicator.exact();
+
+        assertTrue(deduplicator.add("https://www.example.com/a"));
+        assertTrue(deduplicator.add("https://www.example.com/b"));
+        assertFalse(deduplicator.add("https://www.example.com/a"));
+    }
+
+    @Test
+    public void testBloom() {
+        URLDeduplicator deduplicator = URLDeduplicator.bloom(100, 1e-6);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(deduplicator.add("https://www.example.com/entity-" + i + ".json"));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(deduplicator.add("https://www.example.com/entity-" + i + ".json"));
+        }
+    }
+
+    @Test
+    public void testAdaptiveKeepsDuplicatesAcrossTheSwitch() {
+        URLDeduplicator deduplicator = URLDeduplicator.adaptive(100, 1e-6);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(deduplicator.add("https://www.example.com/entity-" + i + ".json"), "url " + i);
+        }
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(deduplicator.add("https://www.example.com/entity-" + i + ".json"), "url " + i);
+        }
+    }
+}
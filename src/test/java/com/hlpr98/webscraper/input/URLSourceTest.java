@@ -0,0 +1,93 @@
+package com.hlpr98.webscraper.input;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class URLSourceTest {
+
+    private static final String URLS = "https://www.example.com/a\n\n  https://www.example.com/b  \r\nhttps://www.example.com/c\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadsPlainFileFromDisk() throws IOException {
+        Path file = tempDir.resolve("urls.txt");
+        Files.writeString(file, URLS);
+
+        try (URLSource source = URLSource.fromPath(file.toString())) {
+            assertEquals(List.of("https://www.example.com/a", "https://www.example.com/b", "https://www.example.com/c"),
+                    readAll(source));
+            assertFalse(source.hasNext());
+        }
+    }
+
+    @Test
+    public void testReadsGzippedFileFromDisk() throws IOException {
+        Path file = tempDir.resolve("urls.txt.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(URLS.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (URLSource source = URLSource.fromPath(file.toString())) {
+            assertEquals(3, readAll(source).size());
+        }
+    }
+
+    @Test
+    public void testReadsStream() throws IOException {
+        try (URLSource source = URLSource.fromStream(new ByteArrayInputStream(URLS.getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals("https://www.example.com/a", source.next());
+            assertEquals("https://www.example.com/b", source.next());
+            assertEquals("https://www.example.com/c", source.next());
+            assertFalse(source.hasNext());
+        }
+    }
+
+    @Test
+    public void testMissingFile() {
+        assertThrows(NoSuchFileException.class, () -> URLSource.fromPath(tempDir.resolve("missing.txt").toString()));
+    }
+
+    @Test
+    public void testDeduplicated() throws IOException {
+        String urls = "https://www.example.com/a\nHTTPS://www.example.com:443/a#top\nhttps://www.example.com/b?y=2&x=1\n"
+                + "https://www.example.com/b?x=1&y=2\n";
+
+        try (URLSource source = URLSource.fromStream(new ByteArrayInputStream(urls.getBytes(StandardCharsets.UTF_8)))
+                .deduplicated(URLDeduplicator.exact())) {
+            assertEquals(List.of("https://www.example.com/a", "https://www.example.com/b?x=1&y=2"), readAll(source));
+            assertEquals(2, source.getDuplicates());
+        }
+    }
+
+    @Test
+    public void testSkipping() throws IOException {
+        try (URLSource source = URLSource.fromStream(new ByteArrayInputStream(URLS.getBytes(StandardCharsets.UTF_8)))
+                .skipping("https://www.example.com/b"::equals)) {
+            assertEquals(List.of("https://www.example.com/a", "https://www.example.com/c"), readAll(source));
+            assertEquals(1, source.getSkipped());
+        }
+    }
+
+    private static List<String> readAll(URLSource source) {
+        List<String> urls = new ArrayList<>();
+        while (source.hasNext()) {
+            urls.add(source.next());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,100 @@
+package com.hlpr98.webscraper.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    public void testSameIdSameMetric() {
+        Counter counter = registry.counter("requests_total", "domain", "a.com");
+        counter.increment();
+        registry.counter("requests_total", "domain", "a.com").add(2);
+
+        assertSame(counter, registry.counter("requests_total", "domain", "a.com"));
+        assertNotSame(counter, registry.counter("requests_total", "domain", "b.com"));
+        assertEquals(3, counter.get());
+    }
+
+    @Test
+    public void testTypeMismatch() {
+        registry.counter("requests_total");
+
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("requests_total"));
+        assertThrows(IllegalArgumentException.class, () -> registry.gauge("requests_total", () -> 1));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("requests_total", "domain"));
+    }
+
+    @Test
+    public void testPrometheusText() {
+        AtomicLong inFlight = new AtomicLong(7);
+        registry.counter("requests_total", "domain", "b.com").add(2);
+        registry.counter("requests_total", "domain", "a.\"com\"").increment();
+        registry.gauge("in_flight", inFlight::get, "domain", "a.com");
+        registry.timer("duration_seconds", "domain", "a.com").record(1_500_000_000L);
+        inFlight.set(3);
+
+        String text = PrometheusExporter.toText(registry);
+
+        assertEquals("# TYPE duration_seconds summary\n" +
+                "duration_seconds{domain=\"a.com\",quantile=\"0.5\"} 1.5\n" +
+                "duration_seconds{domain=\"a.com\",quantile=\"0.9\"} 1.5\n" +
+                "duration_seconds{domain=\"a.com\",quantile=\"0.99\"} 1.5\n" +
+                "duration_seconds{domain=\"a.com\",quantile=\"0.999\"} 1.5\n" +
+                "duration_seconds_sum{domain=\"a.com\"} 1.5\n" +
+                "duration_seconds_count{domain=\"a.com\"} 1\n" +
+                "# TYPE in_flight gauge\n" +
+                "in_flight{domain=\"a.com\"} 3\n" +
+                "# TYPE requests_total counter\n" +
+                "requests_total{domain=\"a.\\\"com\\\"\"} 1\n" +
+                "requests_total{domain=\"b.com\"} 2\n", text);
+    }
+
+    @Test
+    public void testFileExport(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("metrics.prom");
+        Counter counter = registry.counter("requests_total");
+
+        Closeable exporter = PrometheusExporter.toFile(registry, file, Duration.ofHours(1));
+        counter.increment();
+        exporter.close();
+
+        assertEquals("# TYPE requests_total counter\nrequests_total 1\n", Files.readString(file));
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        registry.counter("requests_total", "domain", "a.com").add(5);
+        registry.timer("duration_seconds", "domain", "a.com").record(2_000_000_000L);
+
+        ObjectName name = JmxMetrics.register(registry);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            TabularData values = (TabularData) server.getAttribute(name, "Values");
+            assertEquals(5L, values.get(new Object[]{"requests_total{domain=\"a.com\"}"}).get("value"));
+
+            TabularData histograms = (TabularData) server.getAttribute(name, "Histograms");
+            CompositeData summary = (CompositeData) histograms.get(new Object[]{"duration_seconds{domain=\"a.com\"}"}).get("value");
+            assertEquals(1L, summary.get("count"));
+            assertEquals(2.0, (double) summary.get("max"), 1e-9);
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.hlpr98.webscraper.model.net;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseTest {
+
+    @Test
+    public void testStreamResponseKeepsBodyAndCharset() throws IOException {
+        Response response = Response.fromHTTPStreamResponse(
+                streamResponse("  {\"title\":\"My Title\"}", "application/json; charset=\"ISO-8859-1\""));
+
+        assertEquals("https://www.example.com/entity.json", response.getUrl().toString());
+        assertEquals(StandardCharsets.ISO_8859_1, response.getCharset());
+        assertNull(response.getResponse());
+        assertEquals("  {\"title\":\"My Title\"}", new String(response.bodyStream().readAllBytes(), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testBlankStreamResponse() {
+        assertThrows(IllegalArgumentException.class, () -> Response.fromHTTPStreamResponse(streamResponse("", null)));
+        assertThrows(IllegalArgumentException.class, () -> Response.fromHTTPStreamResponse(streamResponse(" \r\n\t ", null)));
+    }
+
+    @Test
+    public void testCharsetOf() {
+        assertEquals(StandardCharsets.UTF_8, Response.charsetOf("text/html; charset=utf-8"));
+        assertEquals(StandardCharsets.UTF_8, Response.charsetOf("text/html;Charset=\"UTF-8\";q=1"));
+        assertNull(Response.charsetOf("text/html"));
+        assertNull(Response.charsetOf("text/html; charset=not-a-charset"));
+    }
+
+    @Test
+    public void testBodyStreamOfStringResponse() throws IOException {
+        Response response = Response.builder().response("My Title é").build();
+
+        assertEquals("My Title é", new String(response.bodyStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private HttpResponse<InputStream> streamResponse(String body, String contentType) {
+        Map<String, List<String>> headers = contentType == null ? Map.of() : Map.of("Content-Type", List.of(contentType));
+
+        return new HttpResponse<>() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpRequest request() {
+                return HttpRequest.newBuilder(uri()).build();
+            }
+
+            @Override
+            public Optional<HttpResponse<InputStream>> previousResponse() {
+                return Optional.empty();
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(headers, (name, value) -> true);
+            }
+
+            @Override
+            public InputStream body() {
+                return new ByteArrayInputStream(body.getBytes(StandardCharsets.ISO_8859_1));
+            }
+
+            @Override
+            public Optional<SSLSession> sslSession() {
+                return Optional.empty();
+            }
+
+            @Override
+            public URI uri() {
+                return URI.create("https://www.example.com/entity.json");
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+}
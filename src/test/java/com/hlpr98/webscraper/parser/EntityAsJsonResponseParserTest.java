@@ -1,13 +1,18 @@
 package com.hlpr98.webscraper.parser;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.hlpr98.webscraper.model.entities.EntityWithTitle;
 import com.hlpr98.webscraper.model.net.Response;
 import org.junit.Assert;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -52,4 +57,69 @@ public class EntityAsJsonResponseParserTest {
         assertEquals("uuid-12312-123123", entity.getId());
         assertEquals("My Title", entity.getTitle());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseStreamedBody() throws IOException {
+        String response = "{\"title\":\"My Title \u00e9\",\"unused\":[1,2,3]}";
+
+        EntityWithTitle entity = parser.parse(
+                Response.builder()
+                        .url(new URL("https://www.example.com/sub-path-1/entity-slug12312-uuid-12312-123123.json"))
+                        .body(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)))
+                        .build()
+        );
+
+        assertNotNull(entity);
+        assertEquals("uuid-12312-123123", entity.getId());
+        assertEquals("My Title \u00e9", entity.getTitle());
+    }
+
+    @Test
+    public void testParseSkipsFields() throws IOException {
+        String response = "{\"title\":\"My Title\",\"gallery\":{\"images\":[{\"title\":\"Image\"}]}}";
+        EntityJsonPageParser skippingParser = new EntityJsonPageParser() {
+            @Override
+            protected Set<String> skippedFields() {
+                return Set.of("gallery");
+            }
+        };
+
+        EntityWithTitle entity = skippingParser.parse(
+                Response.builder()
+                        .url(new URL("https://www.example.com/sub-path-1/entity-slug12312-uuid-12312-123123.json"))
+                        .body(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)))
+                        .build()
+        );
+
+        assertEquals("uuid-12312-123123", entity.getId());
+        assertEquals("My Title", entity.getTitle());
+    }
+
+    @Test
+    public void testParseTreeWithSkippedFields() throws IOException {
+        String response = "{\"title\":\"My Title\",\"description\":\"Long description\",\"tags\":[\"a\",{\"description\":\"b\"}]}";
+        JsonNode[] tree = new JsonNode[1];
+        JsonResponseParser<EntityWithTitle> treeParser = new JsonResponseParser<>(EntityWithTitle.class) {
+            @Override
+            protected Set<String> skippedFields() {
+                return Set.of("description");
+            }
+
+            @Override
+            protected EntityWithTitle convertValue(Response rawResponse, JsonNode parsedResponse) throws IOException {
+                tree[0] = parsedResponse;
+                return super.convertValue(rawResponse, parsedResponse);
+            }
+
+            @Override
+            public Pattern pathPattern() {
+                return Pattern.compile(".*");
+            }
+        };
+
+        EntityWithTitle entity = treeParser.parse(Response.builder().response(response).build());
+
+        assertEquals("My Title", entity.getTitle());
+        assertEquals("{\"title\":\"My Title\",\"tags\":[\"a\",{}]}", tree[0].toString());
+    }
+}
@@ -0,0 +1,79 @@
+package com.hlpr98.webscraper.parser;
+
+import com.hlpr98.webscraper.metrics.Gauge;
+import com.hlpr98.webscraper.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParseExecutorTest {
+
+    @Test
+    public void testTasksRunOffSubmittingThread() {
+        try (ParseExecutor executor = new ParseExecutor(2, null)) {
+            List<CompletableFuture<String>> threads = IntStream.range(0, 50)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor))
+                    .collect(Collectors.toList());
+
+            threads.forEach(thread -> assertTrue(thread.join().startsWith("parser-"), thread.join()));
+            assertEquals(50, executor.getQueueWait().snapshot().getCount());
+        }
+    }
+
+    @Test
+    public void testBusyPoolNeverRunsOnSubmittingThread() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ParseExecutor executor = new ParseExecutor(1, null)) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            List<CompletableFuture<String>> threads = IntStream.range(0, 10)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor))
+                    .collect(Collectors.toList());
+            assertEquals(1, executor.getBusyThreads());
+            assertEquals(10, executor.getQueuedTasks());
+            release.countDown();
+
+            for (CompletableFuture<String> thread : threads) {
+                assertEquals("parser-1", thread.get(5, TimeUnit.SECONDS));
+            }
+
+            executor.close();
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+            }));
+        }
+    }
+
+    @Test
+    public void testMetricsAreRegistered() {
+        MetricsRegistry registry = new MetricsRegistry();
+        try (ParseExecutor executor = new ParseExecutor(3, registry)) {
+            CompletableFuture.runAsync(() -> {
+            }, executor).join();
+
+            Map<String, Object> metrics = registry.getMetrics().entrySet().stream()
+                    .collect(Collectors.toMap(entry -> entry.getKey().getName(), Map.Entry::getValue));
+            assertEquals(3, ((Gauge) metrics.get("webscraper_parse_pool_threads")).get());
+            assertTrue(metrics.containsKey("webscraper_parse_pool_busy_threads"));
+            assertTrue(metrics.containsKey("webscraper_parse_queued_tasks"));
+            assertSame(executor.getQueueWait(), metrics.get("webscraper_parse_queue_wait_seconds"));
+            assertEquals(1, executor.getQueueWait().snapshot().getCount());
+        }
+    }
+}
@@ -5,9 +5,12 @@ import com.hlpr98.webscraper.model.net.Response;
 import org.junit.Assert;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -56,4 +59,115 @@ public class ProductAsHTMLResponseParserTest {
         assertEquals("0614a3a0-5716-4690-8bde-9a60177b5946", entity.getId());
         assertEquals("My Product Title", entity.getTitle());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseStreamedBodyWithCharset() throws IOException {
+        String response = "<html><body>" +
+                "<h1 class=\"product-title\" data-id=\"0614a3a0-5716-4690-8bde-9a60177b5946\">Caf\u00e9 Title</h1>" +
+                "</body></html>";
+
+        EntityWithTitle entity = parser.parse(
+                Response.builder()
+                        .url(new URL("https://www.example.com/sub-path1/subpath-2/product-slug12312.html"))
+                        .body(new ByteArrayInputStream(response.getBytes(StandardCharsets.ISO_8859_1)))
+                        .charset(StandardCharsets.ISO_8859_1)
+                        .build()
+        );
+
+        assertNotNull(entity);
+        assertEquals("0614a3a0-5716-4690-8bde-9a60177b5946", entity.getId());
+        assertEquals("Caf\u00e9 Title", entity.getTitle());
+    }
+
+    @Test
+    public void testParseStopsAtTitle() throws IOException {
+        StringBuilder response = new StringBuilder("<html><body>" +
+                "<h1 class=\"product-title\" data-id=\"0614a3a0-5716-4690-8bde-9a60177b5946\">My <b>Product</b> Title</h1>");
+        while (response.length() < 1_000_000) {
+            response.append("<p>Description of the product</p>");
+        }
+        response.append("</body></html>");
+        TrackingInputStream body = new TrackingInputStream(response.toString().getBytes(StandardCharsets.UTF_8));
+
+        EntityWithTitle entity = parser.parse(
+                Response.builder()
+                        .url(new URL("https://www.example.com/product-slug12312.html"))
+                        .body(body)
+                        .charset(StandardCharsets.UTF_8)
+                        .build()
+        );
+
+        assertNotNull(entity);
+        assertEquals("0614a3a0-5716-4690-8bde-9a60177b5946", entity.getId());
+        assertEquals("My Product Title", entity.getTitle());
+        assertTrue(body.read < 100_000, "bytes read: " + body.read);
+        assertTrue(body.closed);
+    }
+
+    @Test
+    public void testParseWithoutTitle() throws IOException {
+        String response = "<html><body><h1 class=\"other-title\">Other</h1><p>Text</p></body></html>";
+        TrackingInputStream body = new TrackingInputStream(response.getBytes(StandardCharsets.UTF_8));
+
+        EntityWithTitle entity = parser.parse(
+                Response.builder()
+                        .url(new URL("https://www.example.com/product-slug12312.html"))
+                        .body(body)
+                        .build()
+        );
+
+        assertNull(entity);
+        assertEquals(0, body.available());
+    }
+
+    @Test
+    public void testParseStreamedBodyWithCharsetInPage() throws IOException {
+        String response = "<html><head><meta charset=\"ISO-8859-1\"></head><body>" +
+                "<h1 class=\"product-title\" data-id=\"0614a3a0-5716-4690-8bde-9a60177b5946\">Caf\u00e9 Title</h1>" +
+                "</body></html>";
+
+        EntityWithTitle entity = parser.parse(
+                Response.builder()
+                        .url(new URL("https://www.example.com/product-slug12312.html"))
+                        .body(new BufferedInputStream(
+                                new ByteArrayInputStream(response.getBytes(StandardCharsets.ISO_8859_1))))
+                        .build()
+        );
+
+        assertNotNull(entity);
+        assertEquals("Caf\u00e9 Title", entity.getTitle());
+    }
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+        private int read;
+        private boolean closed;
+
+        TrackingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read() {
+            int b = super.read();
+            if (b != -1) {
+                read++;
+            }
+            return b;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
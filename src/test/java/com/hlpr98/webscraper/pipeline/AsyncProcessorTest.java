@@ -0,0 +1,140 @@
+package com.hlpr98.webscraper.pipeline;
+
+import com.hlpr98.webscraper.input.URLSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncProcessorTest {
+
+    @Test
+    public void testItemsAreTransformed() throws Exception {
+        List<String> items = IntStream.range(0, 1000).mapToObj(i -> "item-" + i).collect(Collectors.toList());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AsyncProcessor<String, String> processor = new AsyncProcessor<>(
+                    item -> CompletableFuture.supplyAsync(() -> item.toUpperCase(Locale.ROOT), executor), 8);
+            CollectingSubscriber subscriber = new CollectingSubscriber(1);
+            processor.subscribe(subscriber);
+            new URLPublisher(URLSource.fromList(items)).subscribe(processor);
+
+            subscriber.done.get(10, TimeUnit.SECONDS);
+            assertEquals(items.stream().map(item -> item.toUpperCase(Locale.ROOT)).collect(Collectors.toSet()),
+                    Set.copyOf(subscriber.received));
+            assertEquals(items.size(), subscriber.received.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSlowDownstreamThrottlesUpstream() throws Exception {
+        List<String> items = IntStream.range(0, 1000).mapToObj(i -> "item-" + i).collect(Collectors.toList());
+        AtomicInteger transformed = new AtomicInteger();
+        AsyncProcessor<String, String> processor = new AsyncProcessor<>(item -> {
+            transformed.incrementAndGet();
+            return CompletableFuture.completedFuture(item);
+        }, 10);
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        processor.subscribe(subscriber);
+        new URLPublisher(URLSource.fromList(items)).subscribe(processor);
+
+        Thread.sleep(200);
+        assertEquals(10, transformed.get());
+        assertTrue(subscriber.received.isEmpty());
+
+        subscriber.subscription.request(5);
+        Thread.sleep(200);
+        assertEquals(5, subscriber.received.size());
+        assertEquals(15, transformed.get());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.done.get(10, TimeUnit.SECONDS);
+        assertEquals(items, subscriber.received);
+    }
+
+    @Test
+    public void testFailedTransformIsSignalled() throws Exception {
+        AsyncProcessor<String, String> processor = new AsyncProcessor<>(item -> {
+            if (item.equals("b")) {
+                throw new IllegalStateException("No transform for " + item);
+            }
+            return CompletableFuture.completedFuture(item);
+        }, 4);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        new URLPublisher(URLSource.fromList(List.of("a", "b", "c"))).subscribe(processor);
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> subscriber.done.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+    }
+
+    @Test
+    public void testItemsNeverEmittedAreDiscarded() throws Exception {
+        CompletableFuture<String> late = new CompletableFuture<>();
+        List<String> discarded = new CopyOnWriteArrayList<>();
+        AsyncProcessor<String, String> processor = new AsyncProcessor<>(item -> {
+            if (item.equals("c")) {
+                throw new IllegalStateException("No transform for " + item);
+            }
+            return item.equals("b") ? late : CompletableFuture.completedFuture(item);
+        }, 4, discarded::add);
+        // the downstream doesn't request, hence "a" is held when the stage fails
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        processor.subscribe(subscriber);
+        new URLPublisher(URLSource.fromList(List.of("a", "b", "c"))).subscribe(processor);
+
+        assertThrows(ExecutionException.class, () -> subscriber.done.get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("a"), discarded);
+
+        late.complete("b");
+        assertEquals(List.of("a", "b"), discarded);
+        assertTrue(subscriber.received.isEmpty());
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<String> {
+
+        private final long initialRequest;
+        private final List<String> received = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+
+        private CollectingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(String item) {
+            received.add(item);
+            if (initialRequest == 1) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.hlpr98.webscraper.pipeline;
+
+import com.hlpr98.webscraper.WebScraperWorkerFactory;
+import com.hlpr98.webscraper.input.URLSource;
+import com.hlpr98.webscraper.metrics.Gauge;
+import com.hlpr98.webscraper.metrics.MetricId;
+import com.hlpr98.webscraper.metrics.MetricsRegistry;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.model.entities.EntityWithTitle;
+import com.hlpr98.webscraper.parser.ParseExecutor;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScrapePipelineTest {
+
+    private static final int URLS = 200;
+
+    private HttpServer server;
+    private final AtomicInteger served = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/", exchange -> {
+            served.incrementAndGet();
+            byte[] body = "{\"title\":\"Title\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testURLsAreScraped() throws Exception {
+        Map<String, WebScrapingResult> results = new ConcurrentHashMap<>();
+        new ScrapePipeline(new WebScraperWorkerFactory(HttpClient.newHttpClient()), 50)
+                .run(URLSource.fromList(urls()), results::put);
+
+        assertEquals(URLS, results.size());
+        results.forEach((url, result) -> {
+            assertNull(result.getException(), url);
+            EntityWithTitle entity = assertInstanceOf(EntityWithTitle.class, result.getParsedEntity());
+            assertTrue(url.endsWith("-" + entity.getId() + ".json"), url + " " + entity.getId());
+        });
+    }
+
+    @Test
+    public void testSlowSinkThrottlesFetching() throws Exception {
+        int maxInFlight = 8;
+        int parseCapacity = 4;
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        AtomicInteger maxQueued = new AtomicInteger();
+        try (ParseExecutor parseExecutor = new ParseExecutor(2, null)) {
+            new ScrapePipeline(WebScraperWorkerFactory.builder(HttpClient.newHttpClient())
+                    .withParseExecutor(parseExecutor)
+                    .build(), maxInFlight, parseCapacity)
+                    .run(URLSource.fromList(urls()), (url, result) -> {
+                        maxAhead.accumulateAndGet(served.get() - accepted.get(), Math::max);
+                        maxQueued.accumulateAndGet((int) parseExecutor.getQueuedTasks(), Math::max);
+                        try {
+                            Thread.sleep(2);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        accepted.incrementAndGet();
+                    });
+        }
+
+        assertEquals(URLS, accepted.get());
+        // the url being accepted is held by neither the fetch stage nor the parse stage
+        assertTrue(maxAhead.get() <= maxInFlight + parseCapacity + 1, "ahead of the sink: " + maxAhead.get());
+        assertTrue(maxQueued.get() <= parseCapacity, "queued for parsing: " + maxQueued.get());
+    }
+
+    @Test
+    public void testMalformedURLStopsPipeline() {
+        List<String> urls = new ArrayList<>(urls());
+        urls.add(10, "malformed-url");
+
+        assertThrows(MalformedURLException.class,
+                () -> new ScrapePipeline(new WebScraperWorkerFactory(HttpClient.newHttpClient()), 4)
+                        .run(URLSource.fromList(urls), (url, result) -> {
+                        }));
+    }
+
+    @Test
+    public void testFailingSinkStopsPipeline() {
+        AtomicInteger accepted = new AtomicInteger();
+
+        UncheckedIOException exception = assertThrows(UncheckedIOException.class,
+                () -> new ScrapePipeline(new WebScraperWorkerFactory(HttpClient.newHttpClient()), 4)
+                        .run(URLSource.fromList(urls()), (url, result) -> {
+                            if (accepted.incrementAndGet() == 5) {
+                                throw new UncheckedIOException(new IOException("Disk full"));
+                            }
+                        }));
+
+        assertEquals("Disk full", exception.getCause().getMessage());
+        assertEquals(5, accepted.get());
+        assertTrue(served.get() < URLS, "served: " + served.get());
+    }
+
+    @Test
+    public void testFailedPipelineGivesBackSlots() throws Exception {
+        List<String> urls = new ArrayList<>(urls());
+        urls.add(10, "malformed-url");
+        MetricsRegistry registry = new MetricsRegistry();
+        WebScraperWorkerFactory factory = WebScraperWorkerFactory.builder(HttpClient.newHttpClient())
+                .withMetricsRegistry(registry)
+                .build();
+
+        // the urls fetched once the pipeline failed are never parsed
+        assertThrows(MalformedURLException.class, () -> new ScrapePipeline(factory, 50)
+                .run(URLSource.fromList(urls), (url, result) -> {
+                }));
+
+        Gauge inFlight = (Gauge) registry.getMetrics()
+                .get(new MetricId("webscraper_worker_in_flight_requests", "domain", "127.0.0.1"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight.get() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, inFlight.get());
+
+        // the worker of the domain admits urls as before
+        Map<String, WebScrapingResult> results = new ConcurrentHashMap<>();
+        new ScrapePipeline(factory, 50).run(URLSource.fromList(urls()), results::put);
+        assertEquals(URLS, results.size());
+    }
+
+    private List<String> urls() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < URLS; i++) {
+            urls.add("http://127.0.0.1:" + server.getAddress().getPort() + "/entity-slug-" + i + ".json");
+        }
+        return urls;
+    }
+}
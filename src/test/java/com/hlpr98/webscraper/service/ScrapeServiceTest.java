@@ -0,0 +1,249 @@
+package com.hlpr98.webscraper.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hlpr98.webscraper.WebScraperWorkerFactory;
+import com.hlpr98.webscraper.parser.ParseExecutor;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScrapeServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer origin;
+    private volatile boolean stalled;
+    private ScrapeService service;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        origin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        origin.setExecutor(Executors.newCachedThreadPool());
+        origin.createContext("/", exchange -> {
+            try {
+                if (stalled) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                byte[] body = "{\"title\":\"Title\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException | IOException e) {
+                // the request was given up
+            } finally {
+                exchange.close();
+            }
+        });
+        origin.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        if (service != null) {
+            service.close();
+        }
+        origin.stop(0);
+    }
+
+    @Test
+    public void testResultsAreStreamed() throws Exception {
+        // a buffer smaller than the job makes the job wait for the stream
+        service = service(100, 10);
+
+        HttpResponse<String> submitted = submit(urls(0, 50));
+        assertEquals(202, submitted.statusCode());
+        JsonNode status = objectMapper.readTree(submitted.body());
+        String id = status.get("id").asText();
+        assertEquals(50, status.get("urls").asInt());
+        assertEquals("/jobs/" + id, submitted.headers().firstValue("Location").orElseThrow());
+
+        Set<String> urls = new HashSet<>();
+        HttpResponse<InputStream> results = client.send(request("/jobs/" + id + "/results").build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, results.statusCode());
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(results.body(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                JsonNode result = objectMapper.readTree(line);
+                assertEquals("Title", result.get("entity").get("title").asText(), line);
+                assertNull(result.get("error"), line);
+                urls.add(result.get("url").asText());
+            }
+        }
+        assertEquals(new HashSet<>(urls(0, 50)), urls);
+
+        status = objectMapper.readTree(client.send(request("/jobs/" + id).build(),
+                HttpResponse.BodyHandlers.ofString()).body());
+        assertEquals("DONE", status.get("state").asText());
+        assertEquals(50, status.get("scraped").asInt());
+        assertEquals(50, status.get("succeeded").asInt());
+        assertEquals(50, status.get("streamed").asInt());
+        assertEquals(0, service.getQueuedURLs());
+    }
+
+    @Test
+    public void testQueuedURLsAreLimited() throws Exception {
+        stalled = true;
+        service = service(10, 100);
+
+        assertEquals(413, submit(urls(0, 11)).statusCode());
+        assertEquals(202, submit(urls(0, 8)).statusCode());
+        HttpResponse<String> refused = submit(urls(8, 11));
+        assertEquals(429, refused.statusCode());
+        assertTrue(refused.headers().firstValue("Retry-After").isPresent());
+        assertEquals(202, submit(urls(8, 10)).statusCode());
+        assertEquals(10, service.getQueuedURLs());
+
+        release.countDown();
+        awaitQueuedURLs(0);
+        assertEquals(202, submit(urls(0, 10)).statusCode());
+    }
+
+    @Test
+    public void testJobIsCancelled() throws Exception {
+        stalled = true;
+        service = service(100, 100);
+
+        String id = objectMapper.readTree(submit(urls(0, 20)).body()).get("id").asText();
+        HttpResponse<String> cancelled = client.send(request("/jobs/" + id).DELETE().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, cancelled.statusCode());
+        assertEquals("CANCELLED", objectMapper.readTree(cancelled.body()).get("state").asText());
+
+        release.countDown();
+        awaitQueuedURLs(0);
+        HttpResponse<String> results = client.send(request("/jobs/" + id + "/results").build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals("", results.body());
+    }
+
+    @Test
+    public void testUnstreamedJobHoldsNoSharedThread() throws Exception {
+        try (ParseExecutor parseExecutor = new ParseExecutor(1, null)) {
+            service = new ScrapeService(new InetSocketAddress("127.0.0.1", 0),
+                    WebScraperWorkerFactory.builder(HttpClient.newHttpClient())
+                            .withParseExecutor(parseExecutor)
+                            .build(),
+                    2, 100, 8, 2, Duration.ofMinutes(1));
+
+            // the buffer of the first job fills up, while its client never streams it
+            String unstreamed = objectMapper.readTree(submit(urls(0, 20)).body()).get("id").asText();
+            awaitStatus(unstreamed, status -> status.get("scraped").asInt() >= 2);
+
+            // the urls in flight of the first job hold the slots of their domain, hence another domain
+            String id = objectMapper.readTree(submit(urls("localhost", 20, 40)).body()).get("id").asText();
+            HttpResponse<String> results = client.send(request("/jobs/" + id + "/results").build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(20, results.body().lines().count());
+            assertEquals("RUNNING", status(unstreamed).get("state").asText());
+        }
+    }
+
+    @Test
+    public void testUnstreamedJobIsCancelled() throws Exception {
+        service = service(100, 5, Duration.ofMillis(200));
+
+        String id = objectMapper.readTree(submit(urls(0, 20)).body()).get("id").asText();
+        awaitStatus(id, status -> status.get("state").asText().equals("CANCELLED"));
+        awaitQueuedURLs(0);
+        assertTrue(status(id).get("scraped").asInt() < 20);
+    }
+
+    @Test
+    public void testInvalidRequests() throws Exception {
+        service = service(100, 100);
+
+        assertEquals(400, submit(Set.of("malformed-url")).statusCode());
+        assertEquals(400, submit(Set.of()).statusCode());
+        // accepted by URL but not by URI
+        assertEquals(400, submit(Set.of("http://127.0.0.1:" + origin.getAddress().getPort() + "/entity-a b.json"))
+                .statusCode());
+        assertEquals(404, client.send(request("/jobs/results").build(), HttpResponse.BodyHandlers.ofString())
+                .statusCode());
+        assertEquals(404, client.send(request("/jobs/unknown").build(), HttpResponse.BodyHandlers.ofString())
+                .statusCode());
+        assertEquals(405, client.send(request("/jobs").build(), HttpResponse.BodyHandlers.ofString())
+                .statusCode());
+        assertEquals(0, service.getQueuedURLs());
+    }
+
+    private ScrapeService service(long maxQueuedURLs, int bufferCapacity) throws IOException {
+        return service(maxQueuedURLs, bufferCapacity, Duration.ofMinutes(1));
+    }
+
+    private ScrapeService service(long maxQueuedURLs, int bufferCapacity, Duration idleTimeout) throws IOException {
+        return new ScrapeService(new InetSocketAddress("127.0.0.1", 0),
+                new WebScraperWorkerFactory(HttpClient.newHttpClient()), 2, maxQueuedURLs, 8, bufferCapacity,
+                idleTimeout);
+    }
+
+    private JsonNode status(String id) throws IOException, InterruptedException {
+        return objectMapper.readTree(client.send(request("/jobs/" + id).build(),
+                HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private void awaitStatus(String id, Predicate<JsonNode> expected) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!expected.test(status(id)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(expected.test(status(id)), String.valueOf(status(id)));
+    }
+
+    private HttpResponse<String> submit(Set<String> urls) throws IOException, InterruptedException {
+        return client.send(request("/jobs")
+                        .POST(HttpRequest.BodyPublishers.ofString(String.join("\n", urls)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void awaitQueuedURLs(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getQueuedURLs() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, service.getQueuedURLs());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + service.getAddress().getPort() + path));
+    }
+
+    private Set<String> urls(int from, int to) {
+        return urls("127.0.0.1", from, to);
+    }
+
+    private Set<String> urls(String host, int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> "http://" + host + ":" + origin.getAddress().getPort() + "/entity-slug-" + i + ".json")
+                .collect(Collectors.toSet());
+    }
+}
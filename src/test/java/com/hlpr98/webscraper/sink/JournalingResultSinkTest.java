@@ -0,0 +1,103 @@
+package com.hlpr98.webscraper.sink;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.model.entities.EntityWithTitle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalingResultSinkTest {
+
+    private static final WebScrapingResult SUCCESS = WebScrapingResult.builder()
+            .parsedEntity(EntityWithTitle.builder().id("uuid").title("My Title").build())
+            .build();
+    private static final WebScrapingResult FAILURE = WebScrapingResult.builder()
+            .exception(new IllegalArgumentException("Response body is empty"))
+            .build();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testJournalsEachURLWithItsOutcome() throws IOException {
+        Path journal = tempDir.resolve("journal");
+        List<String> accepted = new ArrayList<>();
+
+        try (ResultSink sink = new JournalingResultSink(journal, (url, result) -> accepted.add(url), false)) {
+            sink.accept("https://www.example.com/a", SUCCESS);
+            sink.accept("https://www.example.com/b", FAILURE);
+        }
+
+        assertEquals(List.of("https://www.example.com/a", "https://www.example.com/b"), accepted);
+        assertEquals(List.of("+https://www.example.com/a", "-https://www.example.com/b"), Files.readAllLines(journal));
+    }
+
+    @Test
+    public void testResumeSkipsOnlySucceededURLs() throws IOException {
+        Path journal = tempDir.resolve("journal");
+        try (ResultSink sink = new JournalingResultSink(journal, (url, result) -> {
+        }, false)) {
+            sink.accept("https://www.example.com/a", SUCCESS);
+            sink.accept("https://www.example.com/b", FAILURE);
+            sink.accept("https://www.example.com/é", SUCCESS);
+        }
+        // a crash while writing the last line
+        Files.write(journal, "+https://www.example.com/c".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (JournalingResultSink sink = new JournalingResultSink(journal, (url, result) -> {
+        }, true)) {
+            assertTrue(sink.isSucceeded("https://www.example.com/a"));
+            assertTrue(sink.isSucceeded("https://www.example.com/é"));
+            assertFalse(sink.isSucceeded("https://www.example.com/b"));
+            assertFalse(sink.isSucceeded("https://www.example.com/c"));
+
+            sink.accept("https://www.example.com/b", SUCCESS);
+        }
+
+        assertEquals(List.of("+https://www.example.com/a", "-https://www.example.com/b", "+https://www.example.com/é",
+                "+https://www.example.com/b"), Files.readAllLines(journal));
+    }
+
+    @Test
+    public void testResultsArePersistedBeforeJournaled() throws IOException {
+        Path journal = tempDir.resolve("journal");
+        Path output = tempDir.resolve("results.ndjson");
+        int count = 2_000;
+
+        try (ResultSink sink = new JournalingResultSink(journal, new NdjsonFileResultSink(output, false, 8, 4), false, 8, 4)) {
+            for (int i = 0; i < count; i++) {
+                sink.accept("https://www.example.com/" + i, SUCCESS);
+            }
+        }
+
+        assertEquals(count, Files.readAllLines(journal).size());
+        assertEquals(count, Files.readAllLines(output).size());
+    }
+
+    @Test
+    public void testLargeJournalLoads() throws IOException {
+        Path journal = tempDir.resolve("journal");
+        StringBuilder lines = new StringBuilder();
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            lines.append(i % 10 == 0 ? '-' : '+').append("https://www.example.com/entity-").append(i).append(".json\n");
+        }
+        Files.writeString(journal, lines);
+
+        try (JournalingResultSink sink = new JournalingResultSink(journal, (url, result) -> {
+        }, true)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(i % 10 != 0, sink.isSucceeded("https://www.example.com/entity-" + i + ".json"));
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.hlpr98.webscraper.sink;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.hlpr98.webscraper.model.entities.EntityWithTitle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NdjsonFileResultSinkTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testWritesOneObjectPerLine() throws IOException {
+        Path output = tempDir.resolve("results.ndjson");
+
+        try (ResultSink sink = new NdjsonFileResultSink(output)) {
+            sink.accept("https://www.example.com/entity-slug-uuid.json", WebScrapingResult.builder()
+                    .parsedEntity(EntityWithTitle.builder().id("uuid").title("My Title").build())
+                    .build());
+            sink.accept("https://www.example.com/product-slug.html", WebScrapingResult.builder()
+                    .exception(new IllegalArgumentException("Response body is empty"))
+                    .build());
+        }
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(2, lines.size());
+
+        JsonNode success = objectMapper.readTree(lines.get(0));
+        assertEquals("https://www.example.com/entity-slug-uuid.json", success.get("url").asText());
+        assertEquals("uuid", success.get("entity").get("id").asText());
+        assertEquals("My Title", success.get("entity").get("title").asText());
+        assertFalse(success.has("error"));
+
+        JsonNode failure = objectMapper.readTree(lines.get(1));
+        assertEquals("https://www.example.com/product-slug.html", failure.get("url").asText());
+        assertFalse(failure.has("entity"));
+        assertTrue(failure.get("error").asText().contains("Response body is empty"));
+    }
+
+    @Test
+    public void testConcurrentWritesWithSmallQueue() throws Exception {
+        Path output = tempDir.resolve("results.ndjson");
+        int count = 5_000;
+
+        try (ResultSink sink = new NdjsonFileResultSink(output, 8, 4)) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < count; i++) {
+                String url = "https://www.example.com/entity-" + i + ".json";
+                executor.execute(() -> sink.accept(url, WebScrapingResult.builder().parsedEntity("entity").build()));
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        assertEquals(count, Files.readAllLines(output).size());
+    }
+
+    @Test
+    public void testAcceptAfterClose() throws IOException {
+        ResultSink sink = new NdjsonFileResultSink(tempDir.resolve("results.ndjson"));
+        sink.close();
+
+        assertThrows(IllegalStateException.class,
+                () -> sink.accept("https://www.example.com", WebScrapingResult.builder().build()));
+        assertThrows(IllegalStateException.class, sink::flush);
+    }
+
+    @Test
+    public void testCloseWhileAccepting() throws Exception {
+        Path output = tempDir.resolve("results.ndjson");
+        AtomicInteger accepted = new AtomicInteger();
+        ResultSink sink = new NdjsonFileResultSink(output, 2, 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                try {
+                    for (int j = 0; ; j++) {
+                        sink.accept("https://www.example.com/entity-" + j + ".json",
+                                WebScrapingResult.builder().parsedEntity("entity").build());
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException e) {
+                    // closed
+                }
+            });
+        }
+        Thread.sleep(50);
+        sink.close();
+        executor.shutdown();
+
+        // the accepts which raced with the close either failed or were written, none is left blocked
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(accepted.get(), Files.readAllLines(output).size());
+    }
+
+    @Test
+    public void testAppendAfterTruncatedLine() throws IOException {
+        Path output = tempDir.resolve("results.ndjson");
+        Files.writeString(output, "{\"url\":\"https://www.example.com/a\"}\n{\"url\":\"https://www.exa");
+
+        try (ResultSink sink = new NdjsonFileResultSink(output, true)) {
+            sink.accept("https://www.example.com/b", WebScrapingResult.builder().build());
+            sink.flush();
+            assertEquals(3, Files.readAllLines(output).size());
+        }
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals("https://www.example.com/b", objectMapper.readTree(lines.get(2)).get("url").asText());
+    }
+}
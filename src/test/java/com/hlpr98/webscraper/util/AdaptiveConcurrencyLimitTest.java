@@ -0,0 +1,146 @@
+package com.hlpr98.webscraper.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final HttpRequest REQUEST = HttpRequest.newBuilder(URI.create("https://www.example.com/")).build();
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testSlowStartUpToMaximum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 10, clock::get);
+
+        attempts(limit, 4);
+        responses(limit, 1, LATENCY);
+        assertEquals(5, limit.getLimit());
+        responses(limit, 3, LATENCY);
+
+        for (int i = 0; i < 5; i++) {
+            int inFlight = limit.getLimit();
+            attempts(limit, inFlight);
+            responses(limit, inFlight, LATENCY);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    public void testNotIncreasedWhileMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 64, clock::get);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onAttempt(REQUEST, 1);
+            limit.onResponse(REQUEST, response(200), LATENCY);
+        }
+
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    public void testDecreasedOncePerRoundTripOnOverload() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 64, clock::get);
+        limit.onAttempt(REQUEST, 1);
+        limit.onResponse(REQUEST, response(200), LATENCY);
+
+        attempts(limit, 3);
+        limit.onResponse(REQUEST, response(429), LATENCY);
+        assertEquals(18, limit.getLimit());
+
+        // the failures of the same round trip are due to the same overload
+        limit.onResponse(REQUEST, response(503), LATENCY);
+        limit.onException(REQUEST, new HttpTimeoutException("timed out"), LATENCY);
+        assertEquals(18, limit.getLimit());
+
+        clock.addAndGet(2 * LATENCY);
+        limit.onAttempt(REQUEST, 1);
+        limit.onException(REQUEST, new HttpTimeoutException("timed out"), LATENCY);
+        assertEquals(16, limit.getLimit());
+    }
+
+    @Test
+    public void testDecreasedOnLatencyGrowth() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 64, clock::get);
+        limit.onAttempt(REQUEST, 1);
+        limit.onResponse(REQUEST, response(200), LATENCY);
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(20 * LATENCY);
+            attempts(limit, 20);
+            responses(limit, 20, 10 * LATENCY);
+        }
+
+        assertTrue(limit.getLimit() < 20, "limit: " + limit.getLimit());
+    }
+
+    private static void attempts(AdaptiveConcurrencyLimit limit, int attempts) {
+        for (int i = 0; i < attempts; i++) {
+            limit.onAttempt(REQUEST, 1);
+        }
+    }
+
+    private static void responses(AdaptiveConcurrencyLimit limit, int responses, long latency) {
+        for (int i = 0; i < responses; i++) {
+            limit.onResponse(REQUEST, response(200), latency);
+        }
+    }
+
+    static HttpResponse<Void> response(int statusCode) {
+        return new HttpResponse<>() {
+            @Override
+            public int statusCode() {
+                return statusCode;
+            }
+
+            @Override
+            public HttpRequest request() {
+                return REQUEST;
+            }
+
+            @Override
+            public Optional<HttpResponse<Void>> previousResponse() {
+                return Optional.empty();
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(Map.of(), (name, value) -> true);
+            }
+
+            @Override
+            public Void body() {
+                return null;
+            }
+
+            @Override
+            public Optional<SSLSession> sslSession() {
+                return Optional.empty();
+            }
+
+            @Override
+            public URI uri() {
+                return REQUEST.uri();
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.hlpr98.webscraper.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackoffStrategyTest {
+
+    @Test
+    public void testFixed() {
+        BackoffStrategy backoff = BackoffStrategy.fixed(Duration.ofMillis(100));
+
+        assertEquals(Duration.ofMillis(100), backoff.nextDelay(1, Duration.ZERO));
+        assertEquals(Duration.ofMillis(100), backoff.nextDelay(4, Duration.ofMillis(100)));
+    }
+
+    @Test
+    public void testExponential() {
+        BackoffStrategy backoff = BackoffStrategy.exponential(Duration.ofMillis(100), 2);
+
+        assertEquals(Duration.ofMillis(100), backoff.nextDelay(1, Duration.ZERO));
+        assertEquals(Duration.ofMillis(200), backoff.nextDelay(2, Duration.ZERO));
+        assertEquals(Duration.ofMillis(800), backoff.nextDelay(4, Duration.ZERO));
+    }
+
+    @Test
+    public void testCapped() {
+        BackoffStrategy backoff = BackoffStrategy.exponential(Duration.ofMillis(100), 2).capped(Duration.ofMillis(500));
+
+        assertEquals(Duration.ofMillis(400), backoff.nextDelay(3, Duration.ZERO));
+        assertEquals(Duration.ofMillis(500), backoff.nextDelay(4, Duration.ZERO));
+        assertEquals(Duration.ofMillis(500), backoff.nextDelay(100, Duration.ZERO));
+    }
+
+    @Test
+    public void testDecorrelatedJitterStaysWithinBounds() {
+        Duration base = Duration.ofMillis(100);
+        Duration max = Duration.ofSeconds(2);
+        BackoffStrategy backoff = BackoffStrategy.decorrelatedJitter(base, max);
+
+        Duration previous = Duration.ZERO;
+        for (int attempt = 1; attempt <= 50; attempt++) {
+            Duration delay = backoff.nextDelay(attempt, previous);
+            assertTrue(delay.compareTo(base) >= 0, "delay " + delay + " below base");
+            assertTrue(delay.compareTo(max) <= 0, "delay " + delay + " over max");
+            assertTrue(delay.toMillis() <= Math.max(base.toMillis(), previous.toMillis() * 3));
+            previous = delay;
+        }
+    }
+}
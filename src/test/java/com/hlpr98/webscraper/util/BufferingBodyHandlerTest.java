@@ -0,0 +1,81 @@
+package com.hlpr98.webscraper.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferingBodyHandlerTest {
+
+    private static final byte[] BODY = "<p>Some repeated text</p>".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private HttpServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/fixed", exchange -> {
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(BODY);
+            }
+        });
+        server.createContext("/chunked", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < BODY.length; i += 1000) {
+                    out.write(BODY, i, Math.min(1000, BODY.length - i));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // the body was given up
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testBodyIsReceivedWhole() throws Exception {
+        for (String path : new String[]{"/fixed", "/chunked"}) {
+            HttpResponse<InputStream> response = httpClient.send(request(path),
+                    new BufferingBodyHandler(BODY.length));
+
+            assertEquals(BODY.length, response.body().available(), path);
+            try (InputStream body = response.body()) {
+                assertArrayEquals(BODY, body.readAllBytes(), path);
+            }
+        }
+    }
+
+    @Test
+    public void testLargerBodyFails() {
+        for (String path : new String[]{"/fixed", "/chunked"}) {
+            IOException exception = assertThrows(IOException.class,
+                    () -> httpClient.send(request(path), new BufferingBodyHandler(BODY.length - 1)));
+            assertTrue(String.valueOf(exception.getMessage()).contains("exceeds the maximum of " + (BODY.length - 1)),
+                    path + ": " + exception);
+        }
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path)).build();
+    }
+}
@@ -0,0 +1,198 @@
+package com.hlpr98.webscraper.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker breaker = breaker(0.5, 0);
+
+        for (int i = 0; i < 9; i++) {
+            permit(breaker).onException(new IOException("down"), FAST);
+            permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(503), FAST);
+        permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(429), FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquirePermit());
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        CircuitBreaker breaker = breaker(0.5, 0.8);
+
+        for (int i = 0; i < 16; i++) {
+            permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(200), SLOW);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        permit(breaker).onException(new HttpTimeoutException("timed out"), SLOW);
+        permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testProbesWhenHalfOpen() {
+        CircuitBreaker breaker = breaker(0.5, 0);
+        open(breaker);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        CircuitBreaker.Permit first = permit(breaker);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        CircuitBreaker.Permit second = permit(breaker);
+        assertNull(breaker.tryAcquirePermit());
+
+        first.onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        second.onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertNotNull(breaker.tryAcquirePermit());
+    }
+
+    @Test
+    public void testCancelledProbeIsGivenBack() {
+        CircuitBreaker breaker = breaker(0.5, 0);
+        open(breaker);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        CircuitBreaker.Permit cancelled = permit(breaker);
+        CircuitBreaker.Permit second = permit(breaker);
+        assertNull(breaker.tryAcquirePermit());
+
+        cancelled.onCancel();
+        cancelled.onCancel();
+        CircuitBreaker.Permit third = permit(breaker);
+        assertNull(breaker.tryAcquirePermit());
+        second.onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        third.onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testUnansweredProbeOpensAgain() {
+        CircuitBreaker breaker = breaker(0.5, 0);
+        open(breaker);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        CircuitBreaker.Permit lost = permit(breaker);
+        permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        assertNull(breaker.tryAcquirePermit());
+
+        // the probe never answers, the breaker probes the origin anew after another open duration
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertNull(breaker.tryAcquirePermit());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertNotNull(breaker.tryAcquirePermit());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // nor does its late answer count as the outcome of the new probes
+        lost.onResponse(AdaptiveConcurrencyLimitTest.response(500), FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testOutcomesBeforeOpeningAreNotProbes() {
+        CircuitBreaker breaker = breaker(0.5, 0);
+        CircuitBreaker.Permit beforeOpening = permit(breaker);
+        open(breaker);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        CircuitBreaker.Permit probe = permit(breaker);
+        beforeOpening.onException(new IOException("down"), FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        probe.onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(200), FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testFailedProbeOpensAgain() {
+        CircuitBreaker breaker = breaker(0.5, 0);
+        open(breaker);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        permit(breaker).onResponse(AdaptiveConcurrencyLimitTest.response(500), FAST);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquirePermit());
+    }
+
+    @Test
+    public void testOpenBreakerFailsFastWithoutRetries() throws IOException {
+        AtomicInteger served = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            served.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            CircuitBreaker breaker = new CircuitBreaker("127.0.0.1", 0.5, 0, null, 4, Duration.ofMinutes(1), 1);
+            RetryingHTTPClient<Void> client = RetryingHTTPClient.builder()
+                    .withMaxAttempts(10)
+                    .withRetryDelay(Duration.ofMillis(10))
+                    .withCircuitBreaker(breaker)
+                    .build();
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/")).build();
+
+            // the breaker opens after the 4th attempt, which is not retried
+            CompletionException exception = assertThrows(CompletionException.class,
+                    () -> client.execute(request).join());
+            assertEquals(4, served.get(), String.valueOf(exception.getCause()));
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+            exception = assertThrows(CompletionException.class, () -> client.execute(request).join());
+            assertInstanceOf(CircuitBreakerOpenException.class, exception.getCause());
+            assertEquals(4, served.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private CircuitBreaker breaker(double failureRate, double slowCallRate) {
+        return new CircuitBreaker("www.example.com", failureRate, slowCallRate, Duration.ofSeconds(1), 20,
+                Duration.ofSeconds(30), 2, clock::get);
+    }
+
+    private static CircuitBreaker.Permit permit(CircuitBreaker breaker) {
+        CircuitBreaker.Permit permit = breaker.tryAcquirePermit();
+        assertNotNull(permit);
+        return permit;
+    }
+
+    private static void open(CircuitBreaker breaker) {
+        for (int i = 0; i < 20; i++) {
+            permit(breaker).onException(new IOException("down"), FAST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
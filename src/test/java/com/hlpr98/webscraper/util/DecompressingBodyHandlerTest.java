@@ -0,0 +1,164 @@
+package com.hlpr98.webscraper.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DecompressingBodyHandlerTest {
+
+    private static final String BODY = "<html><body>" + "<p>Some repeated text</p>".repeat(1000) + "</body></html>";
+
+    private HttpServer server;
+    private final Map<String, String> acceptEncodings = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        respond("/gzip", "gzip", gzip(BODY.getBytes(StandardCharsets.UTF_8)));
+        respond("/zlib", "deflate", deflate(BODY.getBytes(StandardCharsets.UTF_8), false));
+        respond("/raw-deflate", "deflate", deflate(BODY.getBytes(StandardCharsets.UTF_8), true));
+        respond("/identity", null, BODY.getBytes(StandardCharsets.UTF_8));
+        respond("/empty", "gzip", new byte[0]);
+        respond("/unsupported", "compress", new byte[]{1, 2, 3});
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testEncodedBodiesAreDecoded() throws Exception {
+        AtomicLong decodedBytes = new AtomicLong();
+        RetryingHTTPClient<InputStream> client = RetryingHTTPClient
+                .decompressingBuilder(HttpResponse.BodyHandlers.ofInputStream(), Long.MAX_VALUE,
+                        decodedBytes::addAndGet)
+                .build();
+
+        for (String path : new String[]{"/gzip", "/zlib", "/raw-deflate", "/identity"}) {
+            assertEquals(BODY, read(client, path), path);
+            assertEquals(DecompressingBodyHandler.ACCEPT_ENCODING, acceptEncodings.get(path), path);
+        }
+        assertEquals(4L * BODY.length(), decodedBytes.get());
+    }
+
+    @Test
+    public void testEmptyEncodedBody() throws Exception {
+        RetryingHTTPClient<InputStream> client = RetryingHTTPClient
+                .decompressingBuilder(HttpResponse.BodyHandlers.ofInputStream(), Long.MAX_VALUE, null)
+                .build();
+
+        assertEquals("", read(client, "/empty"));
+    }
+
+    @Test
+    public void testRequestedEncodingIsKept() throws Exception {
+        RetryingHTTPClient<InputStream> client = RetryingHTTPClient
+                .decompressingBuilder(HttpResponse.BodyHandlers.ofInputStream(), Long.MAX_VALUE, null)
+                .build();
+
+        HttpResponse<InputStream> response = client.execute(HttpRequest.newBuilder(uri("/identity"))
+                        .header("Accept-Encoding", "identity")
+                        .build())
+                .get(5, TimeUnit.SECONDS);
+        response.body().close();
+
+        assertEquals("identity", acceptEncodings.get("/identity"));
+    }
+
+    @Test
+    public void testUnsupportedEncodingFailsOnRead() throws Exception {
+        RetryingHTTPClient<InputStream> client = RetryingHTTPClient
+                .decompressingBuilder(HttpResponse.BodyHandlers.ofInputStream(), Long.MAX_VALUE, null)
+                .build();
+
+        IOException exception = assertThrows(IOException.class, () -> read(client, "/unsupported"));
+        assertTrue(exception.getMessage().contains("compress"), exception.getMessage());
+    }
+
+    @Test
+    public void testLargerDecodedBodyFailsOnRead() throws Exception {
+        AtomicLong decodedBytes = new AtomicLong();
+        RetryingHTTPClient<InputStream> client = RetryingHTTPClient
+                .decompressingBuilder(HttpResponse.BodyHandlers.ofInputStream(), BODY.length() - 1,
+                        decodedBytes::addAndGet)
+                .build();
+
+        for (String path : new String[]{"/gzip", "/raw-deflate", "/identity"}) {
+            IOException exception = assertThrows(IOException.class, () -> read(client, path), path);
+            assertTrue(exception.getMessage().contains("exceeds the maximum of " + (BODY.length() - 1)),
+                    path + ": " + exception.getMessage());
+        }
+        assertTrue(decodedBytes.get() < 3L * BODY.length(), String.valueOf(decodedBytes.get()));
+    }
+
+    private String read(RetryingHTTPClient<InputStream> client, String path) throws Exception {
+        HttpResponse<InputStream> response = client.execute(HttpRequest.newBuilder(uri(path)).build())
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        try (InputStream body = response.body()) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private void respond(String path, String encoding, byte[] body) {
+        server.createContext(path, exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null) {
+                acceptEncodings.put(path, acceptEncoding);
+            }
+            if (encoding != null) {
+                exchange.getResponseHeaders().add("Content-Encoding", encoding);
+            }
+            exchange.sendResponseHeaders(200, body.length > 0 ? body.length : -1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+            deflate.write(bytes);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+}
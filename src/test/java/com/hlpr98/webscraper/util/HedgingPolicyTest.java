@@ -0,0 +1,157 @@
+package com.hlpr98.webscraper.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgingPolicyTest {
+
+    private HttpServer server;
+    private final AtomicInteger served = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        // the first request of each path is a straggler
+        server.createContext("/", exchange -> {
+            int request = served.incrementAndGet();
+            try {
+                if (request == 1) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                byte[] body = ("response-" + request).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException | IOException e) {
+                // the straggler was cancelled
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testStragglerIsHedged() {
+        CountingListener listener = new CountingListener();
+        RetryingHTTPClient<String> client = RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofString())
+                .withHedging(HedgingPolicy.fixedDelay(Duration.ofMillis(100), 0.5))
+                .withListener(listener)
+                .build();
+
+        long startNanos = System.nanoTime();
+        HttpResponse<String> response = client.execute(request()).join();
+
+        assertEquals("response-2", response.body());
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, listener.hedges.get());
+        assertEquals(2, listener.attempts.get());
+    }
+
+    @Test
+    public void testStragglerIsHedgedWhenBlocking() throws Exception {
+        RetryingHTTPClient<String> client = RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofString())
+                .withHedging(HedgingPolicy.fixedDelay(Duration.ofMillis(100), 0.5))
+                .build();
+
+        assertEquals("response-2", client.send(request()).body());
+    }
+
+    @Test
+    public void testHedgesAreLimitedByBudget() {
+        HedgingPolicy policy = HedgingPolicy.fixedDelay(Duration.ofMillis(100), 0.1);
+
+        int hedges = 0;
+        while (policy.tryHedge()) {
+            hedges++;
+        }
+        assertEquals(10, hedges);
+
+        for (int i = 0; i < 9; i++) {
+            policy.onRequest();
+        }
+        assertFalse(policy.tryHedge());
+        policy.onRequest();
+        assertTrue(policy.tryHedge());
+    }
+
+    @Test
+    public void testDelayOfPercentile() {
+        HedgingPolicy policy = HedgingPolicy.percentile(0.9, Duration.ofMillis(1), 0.1);
+        assertTrue(policy.delayNanos() < 0);
+
+        for (int i = 1; i <= 100; i++) {
+            policy.onLatency(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(policy.delayNanos());
+        assertTrue(delayMillis >= 85 && delayMillis <= 96, "delay: " + delayMillis);
+    }
+
+    @Test
+    public void testPostIsNotHedged() {
+        CountingListener listener = new CountingListener();
+        RetryingHTTPClient<String> client = RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofString())
+                .withHedging(HedgingPolicy.fixedDelay(Duration.ofMillis(100), 0.5))
+                .withListener(listener)
+                .build();
+
+        release.countDown();
+        HttpResponse<String> response = client.execute(HttpRequest.newBuilder(uri())
+                        .POST(HttpRequest.BodyPublishers.ofString("body"))
+                        .build())
+                .join();
+
+        assertEquals("response-1", response.body());
+        assertEquals(0, listener.hedges.get());
+    }
+
+    private HttpRequest request() {
+        return HttpRequest.newBuilder(uri()).build();
+    }
+
+    private URI uri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    private static class CountingListener implements RetryingHTTPClient.Listener {
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicInteger hedges = new AtomicInteger();
+
+        @Override
+        public void onAttempt(HttpRequest request, int attempt) {
+            attempts.incrementAndGet();
+        }
+
+        @Override
+        public void onHedge(HttpRequest request, int attempt) {
+            hedges.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.hlpr98.webscraper.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetryAfterTest {
+
+    private static final Instant NOW = Instant.parse("2024-10-21T07:28:00Z");
+
+    @Test
+    public void testDeltaSeconds() {
+        assertEquals(Optional.of(Duration.ofSeconds(120)), RetryAfter.parse("120", NOW));
+        assertEquals(Optional.of(Duration.ZERO), RetryAfter.parse(" 0 ", NOW));
+    }
+
+    @Test
+    public void testHttpDate() {
+        assertEquals(Optional.of(Duration.ofSeconds(30)), RetryAfter.parse("Mon, 21 Oct 2024 07:28:30 GMT", NOW));
+        assertEquals(Optional.of(Duration.ZERO), RetryAfter.parse("Mon, 21 Oct 2024 07:27:00 GMT", NOW));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertEquals(Optional.empty(), RetryAfter.parse("-1", NOW));
+        assertEquals(Optional.empty(), RetryAfter.parse("soon", NOW));
+    }
+}
@@ -0,0 +1,180 @@
+package com.hlpr98.webscraper.util;
+
+import com.hlpr98.webscraper.model.domain.WebScrapingResult;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetryingHTTPClientDeadlineTest {
+
+    private HttpServer server;
+    private final AtomicInteger served = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/unavailable", exchange -> {
+            served.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.createContext("/stalled", exchange -> {
+            served.incrementAndGet();
+            await();
+            exchange.close();
+        });
+        server.createContext("/ok", exchange -> {
+            served.incrementAndGet();
+            byte[] body = "whole body".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/trickled", exchange -> {
+            served.incrementAndGet();
+            try (OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, 0);
+                out.write("first bytes".getBytes());
+                out.flush();
+                await();
+            } catch (IOException e) {
+                // the reader gave up
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testNoRetryPastDeadline() {
+        RetryingHTTPClient<Void> client = RetryingHTTPClient.builder()
+                .withMaxAttempts(10)
+                .withRetryDelay(Duration.ofMillis(600))
+                .withDeadline(Duration.ofSeconds(1))
+                .build();
+
+        long startNanos = System.nanoTime();
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> client.execute(request("/unavailable")).join());
+
+        assertInstanceOf(DeadlineExceededException.class, exception.getCause());
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, served.get());
+    }
+
+    @Test
+    public void testAttemptTimeoutIsCutDownToDeadline() {
+        RetryingHTTPClient<Void> client = RetryingHTTPClient.builder()
+                .withMaxAttempts(10)
+                .withRetryDelay(Duration.ofMillis(10))
+                .withRequestTimeout(Duration.ofSeconds(30))
+                .withDeadline(Duration.ofMillis(300))
+                .build();
+
+        long startNanos = System.nanoTime();
+        IOException exception = assertThrows(IOException.class, () -> client.send(request("/stalled")));
+
+        assertInstanceOf(DeadlineExceededException.class, exception);
+        assertInstanceOf(HttpTimeoutException.class, exception.getCause());
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, served.get());
+    }
+
+    @Test
+    public void testTrickledBodyFailsAtDeadline() throws Exception {
+        RetryingHTTPClient<InputStream> client = RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofInputStream())
+                .withDeadline(Duration.ofSeconds(1))
+                .build();
+
+        HttpResponse<InputStream> response = client.send(request("/trickled"));
+        long startNanos = System.nanoTime();
+        IOException exception = assertThrows(IOException.class, () -> {
+            try (InputStream body = response.body()) {
+                body.readAllBytes();
+            }
+        });
+
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(3));
+        assertTrue(WebScrapingResult.builder().exception(new CompletionException(exception)).build().isTimedOut(),
+                String.valueOf(exception));
+    }
+
+    @Test
+    public void testDeadlineStopsOnceBodyIsReceived() throws Exception {
+        RetryingHTTPClient<InputStream> client = RetryingHTTPClient.builder(new BufferingBodyHandler(1024))
+                .withDeadline(Duration.ofMillis(300))
+                .build();
+
+        int pendingTimeouts = DeadlineBodySubscriber.pendingTimeouts();
+        List<HttpResponse<InputStream>> responses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            responses.add(client.send(request("/ok")));
+        }
+        assertTrue(DeadlineBodySubscriber.pendingTimeouts() <= pendingTimeouts);
+
+        // a body waiting to be read past the deadline, ex: in the parse queue, is not failed
+        Thread.sleep(500);
+        for (HttpResponse<InputStream> response : responses) {
+            try (InputStream body = response.body()) {
+                assertEquals("whole body", new String(body.readAllBytes()));
+            }
+        }
+    }
+
+    @Test
+    public void testFailureIsNotTimeout() {
+        RetryingHTTPClient<Void> client = RetryingHTTPClient.builder()
+                .withMaxAttempts(2)
+                .withRetryDelay(Duration.ofMillis(10))
+                .withDeadline(Duration.ofSeconds(10))
+                .build();
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> client.execute(request("/unavailable")).join());
+
+        assertEquals("Retries exceeded: status-code=503", exception.getCause().getMessage());
+        assertFalse(WebScrapingResult.builder().exception(exception).build().isTimedOut());
+    }
+
+    private void await() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path)).build();
+    }
+}
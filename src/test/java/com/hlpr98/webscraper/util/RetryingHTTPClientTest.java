@@ -16,6 +16,8 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -117,6 +119,92 @@ public class RetryingHTTPClientTest {
 
     }
 
+    @Test
+    public void successfulBlockingRetry() throws Exception {
+        try (MockServerClient mockClient = new MockServerClient(CONTAINER.getHost(), CONTAINER.getServerPort())) {
+
+            mockClient.when(request().withMethod("GET").withPath(PATH), Times.exactly(2))
+                    .respond(response().withStatusCode(500));
+
+            mockClient.when(request().withMethod("GET").withPath(PATH))
+                    .respond(response().withStatusCode(200).withBody("Body"));
+
+            HttpResponse<String> response =
+                    RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofString())
+                            .withMaxAttempts(3)
+                            .withRetryDelay(Duration.ofMillis(100))
+                            .build()
+                            .send(getRequest(CONTAINER));
+
+            assertEquals(200, response.statusCode());
+            assertEquals("Body", response.body());
+            mockClient.verify(request().withPath(PATH), VerificationTimes.exactly(3));
+        }
+    }
+
+    @Test
+    public void attemptsExceededOnResponseThrowExceptionBlocking() {
+        try (MockServerClient mockClient = new MockServerClient(CONTAINER.getHost(), CONTAINER.getServerPort())) {
+
+            mockClient.when(request().withMethod("GET").withPath(PATH))
+                    .respond(response().withStatusCode(500));
+
+            Executable executable =
+                    () -> RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofString())
+                            .withMaxAttempts(3)
+                            .withRetryDelay(Duration.ofMillis(100))
+                            .withThrowWhenRetryOnResponseExceeded(true)
+                            .build()
+                            .send(getRequest(CONTAINER));
+
+            RuntimeException ex = assertThrows(RuntimeException.class, executable);
+            assertEquals("Retries exceeded: status-code=500", ex.getMessage());
+            mockClient.verify(request().withPath(PATH), VerificationTimes.exactly(3));
+        }
+    }
+
+    @Test
+    public void listenerSeesAttemptsAndRetries() throws Exception {
+        try (MockServerClient mockClient = new MockServerClient(CONTAINER.getHost(), CONTAINER.getServerPort())) {
+
+            mockClient.when(request().withMethod("GET").withPath(PATH), Times.exactly(1))
+                    .respond(response().withStatusCode(503));
+
+            mockClient.when(request().withMethod("GET").withPath(PATH))
+                    .respond(response().withStatusCode(200).withBody("Body"));
+
+            List<String> events = new CopyOnWriteArrayList<>();
+            RetryingHTTPClient.Listener listener = new RetryingHTTPClient.Listener() {
+                @Override
+                public void onAttempt(HttpRequest request, int attempt) {
+                    events.add("attempt-" + attempt);
+                }
+
+                @Override
+                public void onResponse(HttpRequest request, HttpResponse<?> response, long durationNanos) {
+                    events.add("response-" + response.statusCode());
+                }
+
+                @Override
+                public void onRetry(HttpRequest request, int nextAttempt, Duration delay) {
+                    events.add("retry-" + nextAttempt);
+                }
+            };
+
+            HttpResponse<String> response =
+                    RetryingHTTPClient.builder(HttpResponse.BodyHandlers.ofString())
+                            .withMaxAttempts(3)
+                            .withRetryDelay(Duration.ofMillis(100))
+                            .withListener(listener)
+                            .build()
+                            .execute(getRequest(CONTAINER))
+                            .get(10, TimeUnit.SECONDS);
+
+            assertEquals(200, response.statusCode());
+            assertEquals(List.of("attempt-1", "response-503", "retry-2", "attempt-2", "response-200"), events);
+        }
+    }
+
     @Test
     public void attemptsExceededOnResponseThrowException() {
         try (MockServerClient mockClient = new MockServerClient(CONTAINER.getHost(), CONTAINER.getServerPort())) {
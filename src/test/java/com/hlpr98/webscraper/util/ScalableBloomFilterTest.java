@@ -0,0 +1,52 @@
+package com.hlpr98.webscraper.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScalableBloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("https://www.example.com/" + i);
+        }
+
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(filter.mightContain("https://www.example.com/" + i));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateHoldsWhileGrowing() {
+        double falsePositiveRate = 0.01;
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, falsePositiveRate);
+        int added = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.put("https://www.example.com/" + i)) {
+                added++;
+            }
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("https://www.example.org/" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < probes * falsePositiveRate, "false positives: " + falsePositives);
+        assertEquals(added, filter.size());
+        // a few bytes per value, i.e. far less than the values themselves
+        assertTrue(filter.bitSize() / 8 < 100_000 * 4, "bytes: " + filter.bitSize() / 8);
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(100, 1));
+    }
+}